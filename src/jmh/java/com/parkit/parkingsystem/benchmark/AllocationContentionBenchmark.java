@@ -0,0 +1,95 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.allocation.SpotAllocationStrategy;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two car gates and two bike gates sharing the strategy of their lot, each taking a spot and freeing an
+ * earlier one per operation, in a lot kept half full.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AllocationContentionBenchmark {
+
+    @Param({"lowest-number", "nearest", "level-balancing", "lru"})
+    private String strategyName;
+
+    @Param({"10000"})
+    private int spots;
+
+    private SpotAllocationStrategy strategy;
+    //spots taken in the setup, shared out among the gates
+    private final ConcurrentLinkedQueue<Integer> carsParked = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Integer> bikesParked = new ConcurrentLinkedQueue<>();
+
+    @State(Scope.Thread)
+    public static class Gate {
+        private int[] taken;
+        private int next;
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for(int number = 1; number <= spots; number++){
+            ParkingSpot parkingSpot = new ParkingSpot(number, (number % 2 == 0) ? ParkingType.CAR : ParkingType.BIKE, true);
+            parkingSpot.setLevel(number % 8);
+            parkingSpot.setDistance(random.nextInt(1000));
+            parkingSpots.add(parkingSpot);
+        }
+        strategy = SpotAllocationStrategy.forName(strategyName);
+        strategy.load(parkingSpots);
+        for(int i = 0; i < spots / 4; i++){
+            carsParked.add(strategy.take(ParkingType.CAR, null));
+            bikesParked.add(strategy.take(ParkingType.BIKE, null));
+        }
+    }
+
+    private int takeAndRelease(Gate gate, ParkingType parkingType, ConcurrentLinkedQueue<Integer> parked) {
+        if(gate.taken == null){
+            //two gates per type
+            gate.taken = new int[spots / 8];
+            for(int i = 0; i < gate.taken.length; i++){
+                gate.taken[i] = parked.poll();
+            }
+        }
+        strategy.release(gate.taken[gate.next]);
+        int parkingNumber = strategy.take(parkingType, null);
+        gate.taken[gate.next] = parkingNumber;
+        gate.next = (gate.next + 1) % gate.taken.length;
+        return parkingNumber;
+    }
+
+    @Benchmark
+    @Group("gates")
+    @GroupThreads(2)
+    public int carGate(Gate gate) {
+        return takeAndRelease(gate, ParkingType.CAR, carsParked);
+    }
+
+    @Benchmark
+    @Group("gates")
+    @GroupThreads(2)
+    public int bikeGate(Gate gate) {
+        return takeAndRelease(gate, ParkingType.BIKE, bikesParked);
+    }
+}
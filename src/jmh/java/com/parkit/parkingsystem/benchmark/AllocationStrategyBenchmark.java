@@ -0,0 +1,65 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.allocation.SpotAllocationStrategy;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One spot taken and an earlier one freed per operation, in a lot kept half full.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AllocationStrategyBenchmark {
+
+    @Param({"lowest-number", "nearest", "level-balancing", "lru"})
+    private String strategyName;
+
+    @Param({"10000"})
+    private int spots;
+
+    private SpotAllocationStrategy strategy;
+    private int[] taken;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for(int number = 1; number <= spots; number++){
+            ParkingSpot parkingSpot = new ParkingSpot(number, ParkingType.CAR, true);
+            parkingSpot.setLevel(number % 8);
+            parkingSpot.setDistance(random.nextInt(1000));
+            parkingSpots.add(parkingSpot);
+        }
+        strategy = SpotAllocationStrategy.forName(strategyName);
+        strategy.load(parkingSpots);
+        taken = new int[spots / 2];
+        for(int i = 0; i < taken.length; i++){
+            taken[i] = strategy.take(ParkingType.CAR, null);
+        }
+    }
+
+    @Benchmark
+    public int takeAndRelease() {
+        //the oldest taken spot leaves, a new vehicle takes a spot in its slot
+        strategy.release(taken[next]);
+        int parkingNumber = strategy.take(ParkingType.CAR, null);
+        taken[next] = parkingNumber;
+        next = (next + 1) % taken.length;
+        return parkingNumber;
+    }
+}
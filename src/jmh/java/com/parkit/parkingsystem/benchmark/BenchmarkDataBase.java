@@ -0,0 +1,65 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Embedded H2 database in MySQL mode with the schema of resources/Data.sql and the SchemaMigrator
+ * migrations, so the DAOs can be benchmarked without a MySQL server.
+ */
+public class BenchmarkDataBase {
+
+    private static final String USER = "sa";
+    private static final String PASSWORD = "";
+
+    public static DataBaseConfig create(String name, int carSpots, int bikeSpots) throws SQLException {
+        return create(name, carSpots, bikeSpots, true);
+    }
+
+    /**
+     * @param migrated false leaves the tables as created by Data.sql, without the migrations,
+     *                 plus the empty archive tables the queries refer to
+     */
+    public static DataBaseConfig create(String name, int carSpots, int bikeSpots, boolean migrated) throws SQLException {
+        String url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try (Connection con = DriverManager.getConnection(url, USER, PASSWORD);
+             Statement statement = con.createStatement()) {
+            statement.execute("drop table if exists ticket_archive");
+            statement.execute("drop table if exists plate_visits");
+            statement.execute("drop table if exists reservation");
+            statement.execute("drop table if exists ticket");
+            statement.execute("drop table if exists parking");
+            statement.execute("drop table if exists schema_version");
+            statement.execute("create table parking(PARKING_NUMBER int PRIMARY KEY, AVAILABLE bool NOT NULL, TYPE varchar(10) NOT NULL)");
+            statement.execute("create table ticket(ID int PRIMARY KEY AUTO_INCREMENT, PARKING_NUMBER int NOT NULL,"
+                    + " VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME,"
+                    + " FOREIGN KEY (PARKING_NUMBER) REFERENCES parking(PARKING_NUMBER))");
+            try (PreparedStatement ps = con.prepareStatement("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)")) {
+                for(int number = 1; number <= carSpots + bikeSpots; number++){
+                    ps.setInt(1, number);
+                    ps.setString(2, number <= carSpots ? "CAR" : "BIKE");
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+        if(!migrated){
+            try (Connection con = DriverManager.getConnection(url, USER, PASSWORD);
+                 Statement statement = con.createStatement()) {
+                statement.execute(SchemaMigrator.CREATE_TICKET_ARCHIVE);
+                statement.execute(SchemaMigrator.CREATE_PLATE_VISITS);
+            }
+        }
+        DataBaseConfig dataBaseConfig = new DataBaseConfig(url, USER, PASSWORD);
+        if(migrated && !new SchemaMigrator(dataBaseConfig).migrate()){
+            throw new SQLException("Benchmark database could not be migrated");
+        }
+        return dataBaseConfig;
+    }
+}
@@ -0,0 +1,55 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.journal.EventJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends gate events from four threads, with the journal forced to disk every second as in App.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class EventJournalBenchmark {
+
+    private File file;
+    private EventJournal eventJournal;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("journal", ".bin");
+        Files.delete(file.toPath());
+        eventJournal = new EventJournal(file.getPath(), 1000);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        eventJournal.close();
+        Files.delete(file.toPath());
+    }
+
+    @Benchmark
+    public long entry() {
+        return eventJournal.entry("BENCH", 1, ParkingType.CAR, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public long exit() {
+        long now = System.currentTimeMillis();
+        return eventJournal.exit("BENCH", 1, ParkingType.CAR, now - 3600000L, now, 1500, false);
+    }
+}
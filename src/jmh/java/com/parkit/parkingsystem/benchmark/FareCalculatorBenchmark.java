@@ -0,0 +1,65 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.FareEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FareCalculatorBenchmark {
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private final FareEngine fareEngine = FareEngine.defaultEngine();
+    private Ticket carTicket;
+    private Ticket bikeTicket;
+    private long inMillis;
+    private long outMillis;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        carTicket = newTicket(ParkingType.CAR, now - (3 * 60 * 60 * 1000), now);
+        bikeTicket = newTicket(ParkingType.BIKE, now - (45 * 60 * 1000), now);
+        inMillis = now - (3 * 60 * 60 * 1000);
+        outMillis = now;
+    }
+
+    private static Ticket newTicket(ParkingType parkingType, long inTime, long outTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setVehicleRegNumber("BENCH");
+        ticket.setInTime(new Date(inTime));
+        ticket.setOutTime(new Date(outTime));
+        return ticket;
+    }
+
+    @Benchmark
+    public double carFare() {
+        fareCalculatorService.calculateFare(carTicket);
+        return carTicket.getPrice();
+    }
+
+    @Benchmark
+    public double discountedBikeFare() {
+        fareCalculatorService.calculateFare(bikeTicket, true);
+        return bikeTicket.getPrice();
+    }
+
+    @Benchmark
+    public long carFareInMinorUnits() {
+        return fareEngine.calculate(ParkingType.CAR, inMillis, outMillis, true);
+    }
+}
@@ -0,0 +1,111 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.service.FareEngine;
+import com.parkit.parkingsystem.service.FareRecalculationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-prices a whole ticket history after every price was reset to 0, so each ticket is corrected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class FareRecalculationBenchmark {
+
+    private static final int PLATES = 100000;
+    private static final int CAR_SPOTS = 500;
+    private static final int BIKE_SPOTS = 100;
+
+    @Param({"1000000"})
+    public int tickets;
+
+    @Param({"1", "4"})
+    public int writers;
+
+    private DataBaseConfig dataBaseConfig;
+    private FareRecalculationService fareRecalculationService;
+    private Date from;
+    private Date to;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, ClassNotFoundException {
+        dataBaseConfig = BenchmarkDataBase.create("recalculation_" + tickets, CAR_SPOTS, BIKE_SPOTS);
+        long start = System.currentTimeMillis() - tickets * 60000L;
+        Connection connection = dataBaseConfig.getConnection();
+        try (PreparedStatement ps = connection.prepareStatement(DBConstants.SAVE_TICKET)) {
+            connection.setAutoCommit(false);
+            for(int i = 0; i < tickets; i++){
+                Timestamp inTime = new Timestamp(start + i * 60000L);
+                ps.setInt(1, 1 + (i % (CAR_SPOTS + BIKE_SPOTS)));
+                ps.setString(2, "P" + (i % PLATES));
+                ps.setDouble(3, 0);
+                ps.setTimestamp(4, inTime);
+                ps.setTimestamp(5, new Timestamp(inTime.getTime() + (i % 300) * 60000L));
+                ps.addBatch();
+                if(i % 10000 == 9999){
+                    ps.executeBatch();
+                    connection.commit();
+                }
+            }
+            ps.executeBatch();
+            connection.commit();
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+        from = new Date(0);
+        to = new Date(System.currentTimeMillis() + 24 * 3600000L);
+        fareRecalculationService = new FareRecalculationService(dataBaseConfig, FareEngine.defaultEngine(),
+                ForkJoinPool.commonPool(), FareRecalculationService.DEFAULT_FETCH_SIZE,
+                FareRecalculationService.DEFAULT_BATCH_SIZE, writers);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPrices() throws SQLException, ClassNotFoundException {
+        Connection connection = dataBaseConfig.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("update ticket set PRICE = 0");
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataBaseConfig.shutdown();
+    }
+
+    @Benchmark
+    public long recalculate() {
+        FareRecalculationService.Summary summary = fareRecalculationService.recalculate(from, to, null);
+        if(!summary.isCompleted()){
+            throw new IllegalStateException("Recalculation failed: " + summary);
+        }
+        return summary.getTicketsCorrected();
+    }
+}
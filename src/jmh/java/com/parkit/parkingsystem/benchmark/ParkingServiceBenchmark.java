@@ -0,0 +1,113 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.store.MappedFileStore;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One vehicle entering then leaving through the InteractiveShell prompts on ParkingService, console output discarded.
+ * The jdbc backend runs the DAOs against H2, the memory backend the in-memory repositories
+ * and the file backend a MappedFileStore in a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParkingServiceBenchmark {
+
+    private static class ScriptedInputReaderUtil extends InputReaderUtil {
+        private int plateSequence;
+        private String vehicleRegNumber;
+
+        void nextVehicle() {
+            vehicleRegNumber = "V" + (plateSequence++ % 100000);
+        }
+
+        @Override
+        public int readSelection() {
+            return 1;
+        }
+
+        @Override
+        public String readVehicleRegistrationNumber() {
+            return vehicleRegNumber;
+        }
+    }
+
+    @Param({"jdbc", "memory", "file"})
+    public String backend;
+
+    private final ScriptedInputReaderUtil inputReaderUtil = new ScriptedInputReaderUtil();
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+    private MappedFileStore store;
+    private File storeDirectory;
+    private ParkingService parkingService;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() throws SQLException, IOException {
+        if("memory".equals(backend)){
+            parkingService = new ParkingService(new InMemoryParkingSpotRepository(500, 100), new InMemoryTicketRepository());
+        }else if("file".equals(backend)){
+            storeDirectory = Files.createTempDirectory("store").toFile();
+            store = new MappedFileStore(storeDirectory.getPath(), 500, 100);
+            parkingService = new ParkingService(store.getParkingSpotRepository(), store.getTicketRepository());
+        }else {
+            parkingSpotDAO = new ParkingSpotDAO();
+            ticketDAO = new TicketDAO();
+            parkingSpotDAO.dataBaseConfig = BenchmarkDataBase.create("service", 500, 100);
+            ticketDAO.dataBaseConfig = parkingSpotDAO.dataBaseConfig;
+            parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+        }
+        console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(console);
+        if(parkingSpotDAO != null){
+            parkingSpotDAO.dataBaseConfig.shutdown();
+        }
+        if(store != null){
+            store.close();
+            for(File file : storeDirectory.listFiles()){
+                file.delete();
+            }
+            storeDirectory.delete();
+        }
+    }
+
+    @Benchmark
+    public void entryExitCycle() {
+        inputReaderUtil.nextVehicle();
+        InteractiveShell.processIncomingVehicle(parkingService, inputReaderUtil);
+        InteractiveShell.processExitingVehicle(parkingService, inputReaderUtil);
+    }
+}
@@ -0,0 +1,52 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParkingSpotDAOBenchmark {
+
+    private ParkingSpotDAO parkingSpotDAO;
+
+    @Setup
+    public void setUp() throws SQLException {
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = BenchmarkDataBase.create("spots", 500, 100);
+        parkingSpotDAO.loadFreeSpotIndex();
+    }
+
+    @TearDown
+    public void tearDown() {
+        parkingSpotDAO.dataBaseConfig.shutdown();
+    }
+
+    @Benchmark
+    public int nextAvailableSlot() {
+        return parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+    }
+
+    @Benchmark
+    public int countAvailableSpots() {
+        return parkingSpotDAO.countAvailable(ParkingType.CAR);
+    }
+
+    @Benchmark
+    public boolean claimAndReleaseSlot() {
+        int parkingNumber = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+        return parkingSpotDAO.updateParking(new ParkingSpot(parkingNumber, ParkingType.CAR, true));
+    }
+}
@@ -0,0 +1,107 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.service.ReportingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hourly CSV report over a ticket history of about two years, the CSV discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class ReportingBenchmark {
+
+    private static final int PLATES = 100000;
+    private static final int CAR_SPOTS = 500;
+    private static final int BIKE_SPOTS = 100;
+
+    @Param({"1000000"})
+    public int tickets;
+
+    private DataBaseConfig dataBaseConfig;
+    private ReportingService reportingService;
+    private Date from;
+    private Date to;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, ClassNotFoundException {
+        dataBaseConfig = BenchmarkDataBase.create("reporting_" + tickets, CAR_SPOTS, BIKE_SPOTS);
+        long start = System.currentTimeMillis() - tickets * 60000L;
+        Connection connection = dataBaseConfig.getConnection();
+        try (PreparedStatement ps = connection.prepareStatement(DBConstants.SAVE_TICKET)) {
+            connection.setAutoCommit(false);
+            for(int i = 0; i < tickets; i++){
+                Timestamp inTime = new Timestamp(start + i * 60000L);
+                ps.setInt(1, 1 + (i % (CAR_SPOTS + BIKE_SPOTS)));
+                ps.setString(2, "P" + (i % PLATES));
+                ps.setDouble(3, (i % 300) * 0.025);
+                ps.setTimestamp(4, inTime);
+                ps.setTimestamp(5, new Timestamp(inTime.getTime() + (i % 300) * 60000L));
+                ps.addBatch();
+                if(i % 10000 == 9999){
+                    ps.executeBatch();
+                    connection.commit();
+                }
+            }
+            ps.executeBatch();
+            connection.commit();
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+        from = new Date(0);
+        to = new Date(System.currentTimeMillis() + 24 * 3600000L);
+        reportingService = new ReportingService(dataBaseConfig, ZoneOffset.UTC);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataBaseConfig.shutdown();
+    }
+
+    @Benchmark
+    public long hourlyCsvReport() {
+        long ticketsRead = reportingService.writeCsv(from, to, ReportingService.Granularity.HOUR, new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        if(ticketsRead < 0){
+            throw new IllegalStateException("Report failed");
+        }
+        return ticketsRead;
+    }
+}
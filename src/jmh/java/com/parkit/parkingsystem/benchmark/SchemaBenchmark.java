@@ -0,0 +1,130 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the lookup queries of DBConstants against a ticket table of growing size, with and without
+ * the SchemaMigrator indexes. With them the query time should stay flat as the history grows,
+ * e.g. -p tickets=100000,1000000,5000000 -p migrated=true
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SchemaBenchmark {
+
+    private static final int PLATES = 100000;
+    //open tickets stay at this count whatever the history size
+    private static final int OPEN_TICKETS = 500;
+    private static final int CAR_SPOTS = 500;
+
+    @Param({"10000", "1000000"})
+    public int tickets;
+
+    @Param({"false", "true"})
+    public boolean migrated;
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private int plateSequence;
+
+    @Setup
+    public void setUp() throws SQLException, ClassNotFoundException {
+        dataBaseConfig = BenchmarkDataBase.create("schema_" + tickets + "_" + migrated, CAR_SPOTS, 100, migrated);
+        connection = dataBaseConfig.getConnection();
+        connection.setAutoCommit(false);
+        long start = System.currentTimeMillis() - tickets * 60000L;
+        try (PreparedStatement ps = connection.prepareStatement(DBConstants.SAVE_TICKET)) {
+            for(int i = 0; i < tickets; i++){
+                boolean open = i >= tickets - OPEN_TICKETS;
+                Timestamp inTime = new Timestamp(start + i * 60000L);
+                ps.setInt(1, 1 + (i % CAR_SPOTS));
+                ps.setString(2, plate(i));
+                ps.setDouble(3, open ? 0 : 1.5);
+                ps.setTimestamp(4, inTime);
+                ps.setTimestamp(5, open ? null : new Timestamp(inTime.getTime() + 3600000L));
+                ps.addBatch();
+                if(i % 10000 == 9999){
+                    ps.executeBatch();
+                    connection.commit();
+                }
+            }
+            ps.executeBatch();
+            connection.commit();
+        }
+        connection.setAutoCommit(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataBaseConfig.closeConnection(connection);
+        dataBaseConfig.shutdown();
+    }
+
+    private static String plate(int ticket) {
+        return "P" + (ticket % PLATES);
+    }
+
+    private String nextPlate() {
+        plateSequence = (plateSequence + 7919) % Math.min(tickets, PLATES);
+        return plate(plateSequence);
+    }
+
+    private int query(String sql, String parameter) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            if(parameter != null){
+                ps.setString(1, parameter);
+            }
+            int rows = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while(rs.next()){
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+
+    @Benchmark
+    public int getTicket() throws SQLException {
+        return query(DBConstants.GET_TICKET, nextPlate());
+    }
+
+    @Benchmark
+    public int countTicket() throws SQLException {
+        return query(DBConstants.COUNT_TICKET, nextPlate());
+    }
+
+    @Benchmark
+    public int getOpenTicketOfPlate() throws SQLException {
+        return query(DBConstants.GET_OPEN_TICKET_FOR_UPDATE, nextPlate());
+    }
+
+    @Benchmark
+    public int getOpenTickets() throws SQLException {
+        return query(DBConstants.GET_OPEN_TICKETS, null);
+    }
+
+    @Benchmark
+    public int getNextParkingSpot() throws SQLException {
+        return query(DBConstants.GET_NEXT_PARKING_SPOT, "CAR");
+    }
+}
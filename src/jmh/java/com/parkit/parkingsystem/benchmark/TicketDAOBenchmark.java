@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TicketDAOBenchmark {
+
+    private TicketDAO ticketDAO;
+    private int plateSequence;
+
+    @Setup
+    public void setUp() throws SQLException {
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = BenchmarkDataBase.create("tickets", 500, 100);
+        //one vehicle parked and one that already left, for the lookups
+        ticketDAO.saveTicket(newTicket("INSIDE", 1));
+        Ticket closedTicket = newTicket("LEFT", 2);
+        ticketDAO.saveTicket(closedTicket);
+        closedTicket.setOutTime(new Date());
+        ticketDAO.updateTicket(closedTicket);
+        ticketDAO.getNbTicket("INSIDE");
+    }
+
+    @TearDown
+    public void tearDown() {
+        ticketDAO.dataBaseConfig.shutdown();
+    }
+
+    private static Ticket newTicket(String vehicleRegNumber, int parkingNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        return ticket;
+    }
+
+    @Benchmark
+    public Ticket getTicketOfParkedVehicle() {
+        return ticketDAO.getTicket("INSIDE");
+    }
+
+    @Benchmark
+    public Ticket getTicketOfVehicleThatLeft() {
+        return ticketDAO.getTicket("LEFT");
+    }
+
+    @Benchmark
+    public int getNbTicket() {
+        return ticketDAO.getNbTicket("INSIDE");
+    }
+
+    @Benchmark
+    public boolean saveAndCloseTicket() {
+        Ticket ticket = newTicket("V" + (plateSequence++ % 100000), 3);
+        ticketDAO.saveTicket(ticket);
+        ticket.setOutTime(new Date());
+        ticket.setPrice(1.5);
+        return ticketDAO.updateTicket(ticket);
+    }
+}
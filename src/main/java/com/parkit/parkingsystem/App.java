@@ -1,13 +1,153 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.allocation.SpotAllocationStrategy;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.LotRegistry;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.journal.EventJournal;
+import com.parkit.parkingsystem.metrics.MetricsReporter;
+import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.LotRouter;
+import com.parkit.parkingsystem.service.StartupWarmUp;
+import com.parkit.parkingsystem.service.TicketArchiver;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
     public static void main(String args[]){
         logger.info("Initializing Parking System");
-        InteractiveShell.loadInterface();
+        LotRegistry lotRegistry = loadLotRegistry();
+        if(lotRegistry == null){
+            return;
+        }
+        LotRouter lotRouter = new LotRouter(lotRegistry);
+        for(LotRouter.Lot lot : lotRouter.getLots()){
+            //the ticket queries need the tables and columns of every migration
+            if(!new SchemaMigrator(lot.getDataBaseConfig()).migrate()){
+                logger.error("Database schema of lot " + lot.getLotId() + " could not be migrated, not starting");
+                return;
+            }
+        }
+        //-Dwritebehind.batch=<n> queues ticket writes and commits them n at a time or every -Dwritebehind.delay.millis (100 by default)
+        Integer writeBehindBatch = Integer.getInteger("writebehind.batch");
+        if(writeBehindBatch != null){
+            for(LotRouter.Lot lot : lotRouter.getLots()){
+                lot.getTicketDAO().enableWriteBehind(writeBehindBatch, Long.getLong("writebehind.delay.millis", 100), null);
+            }
+        }
+        //metrics go to the log unless -Dmetrics.file is set, every -Dmetrics.period seconds (60 by default)
+        MetricsReporter metricsReporter = new MetricsReporter(System.getProperty("metrics.file"));
+        metricsReporter.start(Long.getLong("metrics.period", 60), TimeUnit.SECONDS);
+        EventJournal eventJournal = openEventJournal();
+        //-Dwarmup.connections=0 skips the warm-up, the DAOs then load their caches on the first gate event
+        int warmUpConnections = Integer.getInteger("warmup.connections", 4);
+        List<TicketArchiver> ticketArchivers = new ArrayList<>();
+        for(LotRouter.Lot lot : lotRouter.getLots()){
+            if(warmUpConnections > 0){
+                new StartupWarmUp(lot.getParkingSpotDAO(), lot.getTicketDAO(), warmUpConnections).run();
+            }
+            List<ParkingSpot> parkingSpots = lot.getParkingSpotDAO().getParkingSpots();
+            if(!lot.getReservationService().load(parkingSpots)){
+                logger.error("Reservations of lot " + lot.getLotId() + " could not be loaded, entries ignore them");
+            }
+            setAllocationStrategy(lot, parkingSpots);
+            TicketArchiver ticketArchiver = startTicketArchiver(lot.getDataBaseConfig());
+            if(ticketArchiver != null){
+                ticketArchivers.add(ticketArchiver);
+            }
+        }
+        //the shell is the terminal of one lot, -Dlot or the first one listed
+        LotRouter.Lot shellLot = lotRouter.getLot(System.getProperty("lot", lotRegistry.getLotIds().get(0)));
+        shellLot.getParkingService().setEventJournal(eventJournal);
+        InteractiveShell.loadInterface(shellLot.getParkingService());
+        for(TicketArchiver ticketArchiver : ticketArchivers){
+            ticketArchiver.stop();
+        }
+        for(LotRouter.Lot lot : lotRouter.getLots()){
+            //writes out the queued tickets
+            lot.getTicketDAO().disableWriteBehind();
+        }
+        metricsReporter.stop();
+        if(eventJournal != null){
+            try {
+                eventJournal.close();
+            } catch (IOException e) {
+                logger.error("Error closing the event journal", e);
+            }
+        }
+    }
+
+    /**
+     * The lots are read from -Dlots.file, see LotRegistry; without it the app serves a single lot on the default database.
+     */
+    private static LotRegistry loadLotRegistry(){
+        String lotsFile = System.getProperty("lots.file");
+        if(lotsFile == null){
+            return LotRegistry.singleLot();
+        }
+        try {
+            return LotRegistry.load(lotsFile);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Lots file " + lotsFile + " could not be read", e);
+            return null;
+        }
+    }
+
+    /**
+     * Spots are handed out by the strategy named by -Dallocation.strategy, see SpotAllocationStrategy.forName,
+     * and by lowest number without it.
+     */
+    private static void setAllocationStrategy(LotRouter.Lot lot, List<ParkingSpot> parkingSpots){
+        String strategyName = System.getProperty("allocation.strategy");
+        if(strategyName == null){
+            return;
+        }
+        if(parkingSpots == null){
+            logger.error("Spots of lot " + lot.getLotId() + " could not be loaded, allocating the lowest free number");
+            return;
+        }
+        try {
+            SpotAllocationStrategy strategy = SpotAllocationStrategy.forName(strategyName);
+            strategy.load(parkingSpots);
+            lot.getParkingService().setAllocationStrategy(strategy);
+        } catch (IllegalArgumentException e) {
+            logger.error("Allocating the lowest free number", e);
+        }
+    }
+
+    /**
+     * Tickets closed more than -Darchive.after.days ago are archived every -Darchive.period.minutes (60 by default).
+     */
+    private static TicketArchiver startTicketArchiver(DataBaseConfig dataBaseConfig){
+        Integer archiveAfterDays = Integer.getInteger("archive.after.days");
+        if(archiveAfterDays == null){
+            return null;
+        }
+        TicketArchiver ticketArchiver = new TicketArchiver(dataBaseConfig, TimeUnit.DAYS.toMillis(archiveAfterDays));
+        ticketArchiver.start(Long.getLong("archive.period.minutes", 60), TimeUnit.MINUTES);
+        return ticketArchiver;
+    }
+
+    /**
+     * Gate events are journaled when -Djournal.file is set, and forced to disk every -Djournal.force.millis (1000 by default).
+     */
+    private static EventJournal openEventJournal(){
+        String journalFile = System.getProperty("journal.file");
+        if(journalFile == null){
+            return null;
+        }
+        try {
+            return new EventJournal(journalFile, Long.getLong("journal.force.millis", 1000));
+        } catch (IOException e) {
+            logger.error("Event journal " + journalFile + " could not be opened, running without it", e);
+            return null;
+        }
     }
 }
@@ -0,0 +1,40 @@
+package com.parkit.parkingsystem.allocation;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The free spot freed the longest time ago, so the wear is spread over the whole lot.
+ * Spots free since the strategy was loaded come first, lowest number first.
+ */
+public class LeastRecentlyUsedStrategy extends OrderedAllocationStrategy {
+
+    //release sequence of each spot freed since the load, changed under the lock of the spot's type
+    private final Map<Integer, Long> releases = new ConcurrentHashMap<>();
+    private final AtomicLong releaseCount = new AtomicLong();
+
+    @Override
+    protected Comparator<ParkingSpot> order() {
+        return Comparator.comparingLong(this::lastRelease).thenComparingInt(ParkingSpot::getId);
+    }
+
+    private long lastRelease(ParkingSpot parkingSpot) {
+        Long release = releases.get(parkingSpot.getId());
+        return (release == null) ? 0 : release;
+    }
+
+    @Override
+    protected void onLoad() {
+        releases.clear();
+        releaseCount.set(0);
+    }
+
+    @Override
+    protected void onRelease(ParkingSpot parkingSpot) {
+        releases.put(parkingSpot.getId(), releaseCount.incrementAndGet());
+    }
+}
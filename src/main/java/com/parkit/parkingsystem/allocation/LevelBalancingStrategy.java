@@ -0,0 +1,170 @@
+package com.parkit.parkingsystem.allocation;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * A spot on the level of the type with the smallest share of occupied spots, the lowest level among equally
+ * loaded ones, then the lowest free number of that level. The levels of each type are kept in a TreeSet by load,
+ * re-sorted as each spot is taken or freed. Each type has its own lock.
+ */
+public class LevelBalancingStrategy implements SpotAllocationStrategy {
+
+    private static final class Level {
+        private final int number;
+        private final TreeSet<ParkingSpot> freeSpots = new TreeSet<>(Comparator.comparingInt(ParkingSpot::getId));
+        private int spots;
+        private int occupied;
+
+        private Level(int number) {
+            this.number = number;
+        }
+    }
+
+    //occupied / spots compared without division, then the level
+    private static final Comparator<Level> BY_LOAD = (a, b) -> {
+        int byLoad = Long.compare((long) a.occupied * b.spots, (long) b.occupied * a.spots);
+        return (byLoad != 0) ? byLoad : Integer.compare(a.number, b.number);
+    };
+
+    //the levels and spots of one type, guarded by its own monitor
+    private static final class Pool {
+        private final TreeSet<Level> levelsByLoad = new TreeSet<>(BY_LOAD);
+        private final Map<Integer, Level> levels = new HashMap<>();
+        //copies of the loaded spots, isAvailable tells whether a spot is in the free spots of its level
+        private final Map<Integer, ParkingSpot> spots = new HashMap<>();
+    }
+
+    //indexed by ParkingType ordinal
+    private final Pool[] pools = new Pool[ParkingType.values().length];
+
+    public LevelBalancingStrategy() {
+        for(int i = 0; i < pools.length; i++){
+            pools[i] = new Pool();
+        }
+    }
+
+    @Override
+    public synchronized void load(Iterable<ParkingSpot> parkingSpots) {
+        load(parkingSpots, 0);
+    }
+
+    //takes the lock of each type in ordinal order, then replaces the spots of all of them
+    private void load(Iterable<ParkingSpot> parkingSpots, int lockedPools) {
+        if(lockedPools < pools.length){
+            synchronized (pools[lockedPools]) {
+                load(parkingSpots, lockedPools + 1);
+            }
+            return;
+        }
+        for(Pool pool : pools){
+            pool.levelsByLoad.clear();
+            pool.levels.clear();
+            pool.spots.clear();
+        }
+        for(ParkingSpot parkingSpot : parkingSpots){
+            ParkingSpot copy = new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable());
+            copy.setLevel(parkingSpot.getLevel());
+            copy.setZone(parkingSpot.getZone());
+            copy.setDistance(parkingSpot.getDistance());
+            Pool pool = pools[copy.getParkingType().ordinal()];
+            pool.spots.put(copy.getId(), copy);
+            Level level = pool.levels.computeIfAbsent(copy.getLevel(), Level::new);
+            level.spots++;
+            if(copy.isAvailable()){
+                level.freeSpots.add(copy);
+            }else {
+                level.occupied++;
+            }
+        }
+        for(Pool pool : pools){
+            pool.levelsByLoad.addAll(pool.levels.values());
+        }
+    }
+
+    @Override
+    public int peek(ParkingType parkingType) {
+        Pool pool = pools[parkingType.ordinal()];
+        synchronized (pool) {
+            for(Level level : pool.levelsByLoad){
+                if(!level.freeSpots.isEmpty()){
+                    return level.freeSpots.first().getId();
+                }
+            }
+            return 0;
+        }
+    }
+
+    @Override
+    public int take(ParkingType parkingType, IntPredicate allowed) {
+        Pool pool = pools[parkingType.ordinal()];
+        synchronized (pool) {
+            for(Level level : pool.levelsByLoad){
+                Iterator<ParkingSpot> candidates = level.freeSpots.iterator();
+                while(candidates.hasNext()){
+                    ParkingSpot parkingSpot = candidates.next();
+                    if(allowed == null || allowed.test(parkingSpot.getId())){
+                        candidates.remove();
+                        parkingSpot.setAvailable(false);
+                        move(pool.levelsByLoad, level, 1);
+                        return parkingSpot.getId();
+                    }
+                }
+            }
+            return 0;
+        }
+    }
+
+    //the number does not tell the type: it is looked up in each pool, there are as many as parking types
+    @Override
+    public void taken(int parkingNumber) {
+        for(Pool pool : pools){
+            synchronized (pool) {
+                ParkingSpot parkingSpot = pool.spots.get(parkingNumber);
+                if(parkingSpot != null){
+                    if(parkingSpot.isAvailable()){
+                        Level level = pool.levels.get(parkingSpot.getLevel());
+                        level.freeSpots.remove(parkingSpot);
+                        parkingSpot.setAvailable(false);
+                        move(pool.levelsByLoad, level, 1);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void release(int parkingNumber) {
+        for(Pool pool : pools){
+            synchronized (pool) {
+                ParkingSpot parkingSpot = pool.spots.get(parkingNumber);
+                if(parkingSpot != null){
+                    if(!parkingSpot.isAvailable()){
+                        Level level = pool.levels.get(parkingSpot.getLevel());
+                        parkingSpot.setAvailable(true);
+                        level.freeSpots.add(parkingSpot);
+                        move(pool.levelsByLoad, level, -1);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the occupied count of the level, out of the set while its sort key changes.
+     */
+    private static void move(TreeSet<Level> byLoad, Level level, int delta) {
+        byLoad.remove(level);
+        level.occupied += delta;
+        byLoad.add(level);
+    }
+}
@@ -0,0 +1,16 @@
+package com.parkit.parkingsystem.allocation;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.Comparator;
+
+/**
+ * The lowest free parking number, as GET_NEXT_PARKING_SPOT and FreeSpotIndex hand out.
+ */
+public class LowestNumberStrategy extends OrderedAllocationStrategy {
+
+    @Override
+    protected Comparator<ParkingSpot> order() {
+        return Comparator.comparingInt(ParkingSpot::getId);
+    }
+}
@@ -0,0 +1,16 @@
+package com.parkit.parkingsystem.allocation;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.Comparator;
+
+/**
+ * The free spot with the shortest walk from the entrance, the lowest number among equally near ones.
+ */
+public class NearestToEntranceStrategy extends OrderedAllocationStrategy {
+
+    @Override
+    protected Comparator<ParkingSpot> order() {
+        return Comparator.comparingInt(ParkingSpot::getDistance).thenComparingInt(ParkingSpot::getId);
+    }
+}
@@ -0,0 +1,145 @@
+package com.parkit.parkingsystem.allocation;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * The free spots of each type in a TreeSet sorted by the order of the subclass, used as a priority queue
+ * that can also drop a given spot: take and release are O(log n). Each type has its own lock, so the car
+ * and bike gates of a lot do not wait on each other.
+ */
+public abstract class OrderedAllocationStrategy implements SpotAllocationStrategy {
+
+    //the spots of one type, guarded by its own monitor
+    private static final class Pool {
+        private TreeSet<ParkingSpot> freeSpots;
+        //copies of the loaded spots, isAvailable tells whether a spot is in freeSpots
+        private final Map<Integer, ParkingSpot> spots = new HashMap<>();
+    }
+
+    //indexed by ParkingType ordinal
+    private final Pool[] pools = new Pool[ParkingType.values().length];
+
+    protected OrderedAllocationStrategy() {
+        for(int i = 0; i < pools.length; i++){
+            pools[i] = new Pool();
+        }
+    }
+
+    /**
+     * @return the order of preference, ending on the parking number so that no two spots compare equal
+     */
+    protected abstract Comparator<ParkingSpot> order();
+
+    /**
+     * Called before a freed spot goes back into the queue, while it is out of it, under the lock of its type.
+     */
+    protected void onRelease(ParkingSpot parkingSpot) {
+    }
+
+    /**
+     * Called by load before the spots are queued, with the lock of every type held.
+     */
+    protected void onLoad() {
+    }
+
+    @Override
+    public synchronized void load(Iterable<ParkingSpot> parkingSpots) {
+        load(parkingSpots, 0);
+    }
+
+    //takes the lock of each type in ordinal order, then replaces the spots of all of them
+    private void load(Iterable<ParkingSpot> parkingSpots, int lockedPools) {
+        if(lockedPools < pools.length){
+            synchronized (pools[lockedPools]) {
+                load(parkingSpots, lockedPools + 1);
+            }
+            return;
+        }
+        onLoad();
+        for(Pool pool : pools){
+            pool.spots.clear();
+            pool.freeSpots = new TreeSet<>(order());
+        }
+        for(ParkingSpot parkingSpot : parkingSpots){
+            ParkingSpot copy = new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable());
+            copy.setLevel(parkingSpot.getLevel());
+            copy.setZone(parkingSpot.getZone());
+            copy.setDistance(parkingSpot.getDistance());
+            Pool pool = pools[copy.getParkingType().ordinal()];
+            pool.spots.put(copy.getId(), copy);
+            if(copy.isAvailable()){
+                pool.freeSpots.add(copy);
+            }
+        }
+    }
+
+    @Override
+    public int peek(ParkingType parkingType) {
+        Pool pool = pools[parkingType.ordinal()];
+        synchronized (pool) {
+            return (pool.freeSpots == null || pool.freeSpots.isEmpty()) ? 0 : pool.freeSpots.first().getId();
+        }
+    }
+
+    @Override
+    public int take(ParkingType parkingType, IntPredicate allowed) {
+        Pool pool = pools[parkingType.ordinal()];
+        synchronized (pool) {
+            if(pool.freeSpots == null){
+                return 0;
+            }
+            Iterator<ParkingSpot> candidates = pool.freeSpots.iterator();
+            while(candidates.hasNext()){
+                ParkingSpot parkingSpot = candidates.next();
+                if(allowed == null || allowed.test(parkingSpot.getId())){
+                    candidates.remove();
+                    parkingSpot.setAvailable(false);
+                    return parkingSpot.getId();
+                }
+            }
+            return 0;
+        }
+    }
+
+    //the number does not tell the type: it is looked up in each pool, there are as many as parking types
+    @Override
+    public void taken(int parkingNumber) {
+        for(Pool pool : pools){
+            synchronized (pool) {
+                ParkingSpot parkingSpot = pool.spots.get(parkingNumber);
+                if(parkingSpot != null){
+                    if(parkingSpot.isAvailable()){
+                        pool.freeSpots.remove(parkingSpot);
+                        parkingSpot.setAvailable(false);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void release(int parkingNumber) {
+        for(Pool pool : pools){
+            synchronized (pool) {
+                ParkingSpot parkingSpot = pool.spots.get(parkingNumber);
+                if(parkingSpot != null){
+                    if(!parkingSpot.isAvailable()){
+                        onRelease(parkingSpot);
+                        parkingSpot.setAvailable(true);
+                        pool.freeSpots.add(parkingSpot);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
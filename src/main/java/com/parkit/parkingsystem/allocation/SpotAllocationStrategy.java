@@ -0,0 +1,55 @@
+package com.parkit.parkingsystem.allocation;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Chooses the spot an entering vehicle gets. An implementation keeps the free spots in memory, ordered by its
+ * own priority, so a choice never scans the lot. It has to see every spot taken and freed: the ParkingServices
+ * of a lot share one instance.
+ */
+public interface SpotAllocationStrategy {
+
+    /**
+     * @param name lowest-number, nearest, level-balancing or lru
+     * @throws IllegalArgumentException for any other name
+     */
+    static SpotAllocationStrategy forName(String name) {
+        switch(name){
+            case "lowest-number": return new LowestNumberStrategy();
+            case "nearest": return new NearestToEntranceStrategy();
+            case "level-balancing": return new LevelBalancingStrategy();
+            case "lru": return new LeastRecentlyUsedStrategy();
+            default: throw new IllegalArgumentException("Unknown allocation strategy " + name);
+        }
+    }
+
+    /**
+     * Replaces the spots known to the strategy, with their layout and availability.
+     */
+    void load(Iterable<ParkingSpot> parkingSpots);
+
+    /**
+     * @return the spot take would choose, left free, or 0 when no spot of the type is free
+     */
+    int peek(ParkingType parkingType);
+
+    /**
+     * Removes the free spot of this type the strategy prefers among the ones allowed accepts.
+     * @param allowed may be null to accept any spot
+     * @return the parking number, or 0 when no free spot of the type is allowed
+     */
+    int take(ParkingType parkingType, IntPredicate allowed);
+
+    /**
+     * Removes a spot claimed without take, such as a booked spot.
+     */
+    void taken(int parkingNumber);
+
+    /**
+     * Puts a freed spot back among the ones to hand out.
+     */
+    void release(int parkingNumber);
+}
@@ -0,0 +1,298 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of JDBC connections. Borrowed connections are proxies: calling close() on them
+ * hands the physical connection back to the pool instead of closing it. When statementCacheSize
+ * is positive, each physical connection also keeps its prepared statements in a StatementCache.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<IdleConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public ConnectionPool(final String url, final String user, final String password, int maxSize,
+                          long maxWaitMillis, long idleTimeoutMillis, int validationTimeoutSeconds) {
+        this(url, user, password, maxSize, maxWaitMillis, idleTimeoutMillis, validationTimeoutSeconds, 0);
+    }
+
+    public ConnectionPool(final String url, final String user, final String password, int maxSize,
+                          long maxWaitMillis, long idleTimeoutMillis, int validationTimeoutSeconds, int statementCacheSize) {
+        this(() -> DriverManager.getConnection(url, user, password),
+                maxSize, maxWaitMillis, idleTimeoutMillis, validationTimeoutSeconds, statementCacheSize);
+    }
+
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long maxWaitMillis,
+                          long idleTimeoutMillis, int validationTimeoutSeconds) {
+        this(connectionFactory, maxSize, maxWaitMillis, idleTimeoutMillis, validationTimeoutSeconds, 0);
+    }
+
+    /**
+     * @param statementCacheSize prepared statements kept per connection, 0 to close them on close() as usual
+     */
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long maxWaitMillis,
+                          long idleTimeoutMillis, int validationTimeoutSeconds, int statementCacheSize) {
+        if(maxSize <= 0){
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(idleTimeoutMillis / 2, 1000);
+        this.evictor.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection borrowConnection() throws SQLException {
+        if(closed){
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if(!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)){
+                throw new SQLException("Timed out after " + maxWaitMillis + " ms waiting for a DB connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a DB connection", e);
+        }
+        try {
+            IdleConnection idle = takeValidIdleConnection();
+            if(idle != null){
+                return wrap(idle.connection, idle.statements);
+            }
+            logger.info("Create DB connection");
+            Connection physical = connectionFactory.create();
+            StatementCache statements = (statementCacheSize > 0) ? new StatementCache(physical, statementCacheSize,
+                    statementCacheHits, statementCacheMisses, statementCacheEvictions) : null;
+            return wrap(physical, statements);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private IdleConnection takeValidIdleConnection() {
+        IdleConnection idle;
+        while((idle = idleConnections.pollFirst()) != null){
+            if(isExpired(idle, System.currentTimeMillis())){
+                closePhysical(idle.connection, idle.statements);
+                continue;
+            }
+            if(isValid(idle.connection)){
+                return idle;
+            }
+            logger.info("Discarding invalid DB connection");
+            closePhysical(idle.connection, idle.statements);
+        }
+        return null;
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean isExpired(IdleConnection idle, long now) {
+        return idleTimeoutMillis > 0 && now - idle.returnedAt >= idleTimeoutMillis;
+    }
+
+    void release(Connection physical, StatementCache statements) {
+        try {
+            boolean reusable = !closed && !physical.isClosed();
+            if(reusable && !physical.getAutoCommit()){
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if(reusable){
+                if(statements != null){
+                    statements.checkInAll();
+                }
+                idleConnections.offerFirst(new IdleConnection(physical, statements, System.currentTimeMillis()));
+            }else{
+                closePhysical(physical, statements);
+            }
+        } catch (SQLException e) {
+            logger.error("Error while returning connection to the pool", e);
+            closePhysical(physical, statements);
+        } finally {
+            permits.release();
+        }
+    }
+
+    void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        Iterator<IdleConnection> iterator = idleConnections.descendingIterator();
+        while(iterator.hasNext()){
+            IdleConnection idle = iterator.next();
+            if(isExpired(idle, now) && idleConnections.removeLastOccurrence(idle)){
+                logger.info("Evicting idle DB connection");
+                closePhysical(idle.connection, idle.statements);
+            }
+        }
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return prepareStatement calls answered from a connection's statement cache
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    /**
+     * @return prepareStatement calls that had to prepare the query on the server
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    public long getStatementCacheEvictions() {
+        return statementCacheEvictions.sum();
+    }
+
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        IdleConnection idle;
+        while((idle = idleConnections.pollFirst()) != null){
+            closePhysical(idle.connection, idle.statements);
+        }
+    }
+
+    private void closePhysical(Connection connection, StatementCache statements) {
+        if(statements != null){
+            statements.closeAll();
+        }
+        try {
+            connection.close();
+            logger.info("Closing DB connection");
+        } catch (SQLException e) {
+            logger.error("Error while closing connection", e);
+        }
+    }
+
+    private Connection wrap(Connection physical, StatementCache statements) {
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new PooledConnectionHandler(physical, statements));
+    }
+
+    private static final class IdleConnection {
+        private final Connection connection;
+        private final StatementCache statements;
+        private final long returnedAt;
+
+        private IdleConnection(Connection connection, StatementCache statements, long returnedAt) {
+            this.connection = connection;
+            this.statements = statements;
+            this.returnedAt = returnedAt;
+        }
+    }
+
+    private final class PooledConnectionHandler implements InvocationHandler {
+        private final Connection physical;
+        private final StatementCache statements;
+        private boolean released;
+
+        private PooledConnectionHandler(Connection physical, StatementCache statements) {
+            this.physical = physical;
+            this.statements = statements;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if("close".equals(name) && method.getParameterCount() == 0){
+                if(!released){
+                    released = true;
+                    release(physical, statements);
+                }
+                return null;
+            }
+            if("isClosed".equals(name) && method.getParameterCount() == 0){
+                return released || physical.isClosed();
+            }
+            if("equals".equals(name) && method.getParameterCount() == 1){
+                return proxy == args[0];
+            }
+            if("hashCode".equals(name) && method.getParameterCount() == 0){
+                return System.identityHashCode(proxy);
+            }
+            if("toString".equals(name) && method.getParameterCount() == 0){
+                return "Pooled[" + physical + "]";
+            }
+            if(released){
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if(statements != null && "prepareStatement".equals(name) && args[0] instanceof String){
+                if(method.getParameterCount() == 1){
+                    return statements.prepare((Connection) proxy, (String) args[0], StatementCache.NO_KEYS_ARGUMENT);
+                }
+                if(method.getParameterCount() == 2 && args[1] instanceof Integer){
+                    return statements.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
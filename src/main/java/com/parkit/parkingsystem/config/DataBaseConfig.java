@@ -4,23 +4,106 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+    private static final int POOL_MAX_SIZE = 10;
+    private static final long POOL_MAX_WAIT_MILLIS = 5000;
+    private static final long POOL_IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final int POOL_VALIDATION_TIMEOUT_SECONDS = 2;
+    //prepared statements kept open per pooled connection, well above the number of DBConstants queries
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    //one pool per data source, shared by every DAO pointing at it
+    private static final ConcurrentMap<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    private static volatile boolean driverRegistered;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    public DataBaseConfig() {
+        this("jdbc:mysql://localhost:3306/prod", "root", "rootroot");
+    }
+
+    public DataBaseConfig(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod","root","rootroot");
+        return getConnectionPool().borrowConnection();
+    }
+
+    public ConnectionPool getConnectionPool() throws ClassNotFoundException {
+        ConnectionPool pool = pools.get(poolKey());
+        if(pool == null){
+            registerDriver();
+            pool = pools.computeIfAbsent(poolKey(), key -> new ConnectionPool(withConnectorOptions(url), user, password,
+                    POOL_MAX_SIZE, POOL_MAX_WAIT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS, POOL_VALIDATION_TIMEOUT_SECONDS,
+                    STATEMENT_CACHE_SIZE));
+        }
+        return pool;
+    }
+
+    /**
+     * Loads Connector/J, which registers itself with DriverManager, once per JVM.
+     */
+    public static void registerDriver() throws ClassNotFoundException {
+        if(!driverRegistered){
+            Class.forName("com.mysql.cj.jdbc.Driver");
+            driverRegistered = true;
+        }
+    }
+
+    public void shutdown() {
+        ConnectionPool pool = pools.remove(poolKey());
+        if(pool != null){
+            pool.close();
+        }
+    }
+
+    /**
+     * Connector/J emulates prepared statements on the client unless asked otherwise; cached statements
+     * only save the parse and plan work when they are prepared on the server.
+     * It also reads a whole result set into memory unless cursor fetch is on, and sends batches one
+     * statement at a time unless asked to rewrite them.
+     */
+    private static String withConnectorOptions(String url) {
+        if(!url.startsWith("jdbc:mysql:")){
+            return url;
+        }
+        url = withOption(url, "useServerPrepStmts");
+        url = withOption(url, "useCursorFetch");
+        return withOption(url, "rewriteBatchedStatements");
+    }
+
+    private static String withOption(String url, String option) {
+        if(url.contains(option)){
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + option + "=true";
+    }
+
+    private String poolKey() {
+        return user + "@" + url;
+    }
+
+    public String getUrl() {
+        return url;
     }
 
     public void closeConnection(Connection con){
         if(con!=null){
             try {
                 con.close();
-                logger.info("Closing DB connection");
+                logger.info("Releasing DB connection");
             } catch (SQLException e) {
                 logger.error("Error while closing connection",e);
             }
@@ -0,0 +1,94 @@
+package com.parkit.parkingsystem.config;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The car parks served by this instance and the database of each. The schema has no lot column,
+ * so each lot keeps its spots and tickets in its own database, and two lots may not share one.
+ * <p>
+ * Read from properties such as:
+ * <pre>
+ * lots=north,south
+ * lot.north.url=jdbc:mysql://db-north:3306/prod
+ * lot.north.user=root
+ * lot.north.password=rootroot
+ * </pre>
+ */
+public class LotRegistry {
+
+    public static final String DEFAULT_LOT = "default";
+
+    private final Map<String, DataBaseConfig> lots = new LinkedHashMap<>();
+
+    /**
+     * @return a registry holding DEFAULT_LOT on the database of new DataBaseConfig()
+     */
+    public static LotRegistry singleLot() {
+        LotRegistry registry = new LotRegistry();
+        registry.register(DEFAULT_LOT, new DataBaseConfig());
+        return registry;
+    }
+
+    public static LotRegistry load(String file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        return load(properties);
+    }
+
+    public static LotRegistry load(Properties properties) {
+        String lotIds = properties.getProperty("lots");
+        if(lotIds == null || lotIds.trim().isEmpty()){
+            throw new IllegalArgumentException("No lots listed in the lots property");
+        }
+        LotRegistry registry = new LotRegistry();
+        for(String lotId : lotIds.split(",")){
+            lotId = lotId.trim();
+            String url = properties.getProperty("lot." + lotId + ".url");
+            if(url == null){
+                throw new IllegalArgumentException("No lot." + lotId + ".url for lot " + lotId);
+            }
+            registry.register(lotId, new DataBaseConfig(url, properties.getProperty("lot." + lotId + ".user", "root"),
+                    properties.getProperty("lot." + lotId + ".password", "")));
+        }
+        return registry;
+    }
+
+    public synchronized void register(String lotId, DataBaseConfig dataBaseConfig) {
+        if(lotId == null || lotId.trim().isEmpty()){
+            throw new IllegalArgumentException("Invalid lot id");
+        }
+        if(lots.containsKey(lotId)){
+            throw new IllegalArgumentException("Lot " + lotId + " is already registered");
+        }
+        for(Map.Entry<String, DataBaseConfig> lot : lots.entrySet()){
+            if(lot.getValue().getUrl().equals(dataBaseConfig.getUrl())){
+                throw new IllegalArgumentException("Lot " + lotId + " would share the database of lot " + lot.getKey());
+            }
+        }
+        lots.put(lotId, dataBaseConfig);
+    }
+
+    /**
+     * @return the database of the lot, or null if the lot is not registered
+     */
+    public synchronized DataBaseConfig getDataBaseConfig(String lotId) {
+        return lots.get(lotId);
+    }
+
+    /**
+     * @return the lot ids in registration order
+     */
+    public synchronized List<String> getLotIds() {
+        return Collections.unmodifiableList(new ArrayList<>(lots.keySet()));
+    }
+}
@@ -0,0 +1,215 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Brings the schema of resources/Data.sql up to date. Each migration has a version number and is
+ * applied once, in version order; applied versions are recorded in the schema_version table.
+ */
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+    private static final String CREATE_VERSION_TABLE = "create table if not exists schema_version(VERSION int PRIMARY KEY, DESCRIPTION varchar(200) NOT NULL, APPLIED_ON DATETIME NOT NULL)";
+    private static final String GET_VERSION = "select max(VERSION) from schema_version";
+    private static final String SAVE_VERSION = "insert into schema_version(VERSION, DESCRIPTION, APPLIED_ON) values(?,?,?)";
+
+    //closed tickets moved out of ticket by TicketArchiver, and the visits of each plate they account for
+    public static final String CREATE_TICKET_ARCHIVE = "create table if not exists ticket_archive(ID int PRIMARY KEY, PARKING_NUMBER int NOT NULL,"
+            + " VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME NOT NULL)";
+    public static final String CREATE_PLATE_VISITS = "create table if not exists plate_visits(VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,"
+            + " VISITS int NOT NULL, FIRST_IN_TIME DATETIME NOT NULL, LAST_OUT_TIME DATETIME NOT NULL)";
+
+    public static final class Migration {
+        private final int version;
+        private final String description;
+        private final String[] statements;
+
+        public Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+
+    static {
+        MIGRATIONS.add(new Migration(1, "Indexes for spot allocation and ticket lookups",
+                //GET_NEXT_PARKING_SPOT: min(PARKING_NUMBER) read from the index alone
+                "create index IDX_PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER)",
+                //GET_TICKET, COUNT_TICKET and the open ticket of a plate (VEHICLE_REG_NUMBER=? and OUT_TIME is null)
+                "create index IDX_TICKET_VEHICLE_OPEN on ticket(VEHICLE_REG_NUMBER, OUT_TIME, IN_TIME)",
+                //GET_OPEN_TICKETS: the OUT_TIME is null range, already in IN_TIME order
+                "create index IDX_TICKET_OPEN on ticket(OUT_TIME, IN_TIME)"));
+        MIGRATIONS.add(new Migration(2, "Ticket archive and per-plate visit rollup",
+                CREATE_TICKET_ARCHIVE,
+                CREATE_PLATE_VISITS,
+                //reports over archived periods
+                "create index IDX_TICKET_ARCHIVE_OUT on ticket_archive(OUT_TIME)"));
+        MIGRATIONS.add(new Migration(3, "Spot reservations",
+                "create table if not exists reservation(ID int PRIMARY KEY AUTO_INCREMENT, PARKING_NUMBER int NOT NULL,"
+                        + " VEHICLE_REG_NUMBER varchar(10) NOT NULL, START_TIME DATETIME NOT NULL, END_TIME DATETIME NOT NULL,"
+                        + " FOREIGN KEY (PARKING_NUMBER) REFERENCES parking(PARKING_NUMBER))",
+                //GET_RESERVATIONS_ENDING_AFTER at startup
+                "create index IDX_RESERVATION_END on reservation(END_TIME)"));
+        MIGRATIONS.add(new Migration(4, "Spot layout for the allocation strategies",
+                "alter table parking add column LEVEL_NUMBER int NOT NULL DEFAULT 0",
+                "alter table parking add column ZONE varchar(10) NOT NULL DEFAULT ''",
+                //metres from the entrance
+                "alter table parking add column DISTANCE int NOT NULL DEFAULT 0"));
+    }
+
+    public DataBaseConfig dataBaseConfig;
+
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+        this(dataBaseConfig, MIGRATIONS);
+    }
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig, List<Migration> migrations) {
+        this.dataBaseConfig = dataBaseConfig;
+        List<Migration> sorted = new ArrayList<>(migrations);
+        sorted.sort((a, b) -> Integer.compare(a.version, b.version));
+        this.migrations = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Applies the migrations newer than the current schema version.
+     * @return false if one of them failed; the ones before it stay applied
+     */
+    public boolean migrate() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            int currentVersion = getCurrentVersion(con);
+            for(Migration migration : migrations){
+                if(migration.version > currentVersion){
+                    apply(con, migration);
+                    currentVersion = migration.version;
+                }
+            }
+            logger.info("Database schema is at version " + currentVersion);
+            return true;
+        }catch (Exception ex){
+            logger.error("Error migrating database schema", ex);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    public int getCurrentVersion() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            return getCurrentVersion(con);
+        }catch (Exception ex){
+            logger.error("Error reading database schema version", ex);
+            return -1;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    public int getLatestVersion() {
+        return migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version;
+    }
+
+    private int getCurrentVersion(Connection con) throws SQLException {
+        try (Statement statement = con.createStatement()) {
+            statement.execute(CREATE_VERSION_TABLE);
+            try (ResultSet rs = statement.executeQuery(GET_VERSION)) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private void apply(Connection con, Migration migration) throws SQLException {
+        logger.info("Applying schema migration " + migration.version + ": " + migration.description);
+        //MySQL commits DDL implicitly, the version row is what marks the migration as done
+        try (Statement statement = con.createStatement()) {
+            for(String sql : migration.statements){
+                if((isCreateIndex(sql) && indexExists(con, sql)) || (isAddColumn(sql) && columnExists(con, sql))){
+                    continue;
+                }
+                statement.execute(sql);
+            }
+        }
+        try (PreparedStatement ps = con.prepareStatement(SAVE_VERSION)) {
+            ps.setInt(1, migration.version);
+            ps.setString(2, migration.description);
+            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            ps.execute();
+        }
+    }
+
+    private static boolean isCreateIndex(String sql) {
+        return sql.regionMatches(true, 0, "create index ", 0, 13);
+    }
+
+    private static boolean isAddColumn(String sql) {
+        return sql.regionMatches(true, 0, "alter table ", 0, 12) && sql.toLowerCase().contains(" add column ");
+    }
+
+    /**
+     * Lets a migration that failed halfway be run again: indexes it already created are skipped.
+     */
+    private static boolean indexExists(Connection con, String createIndex) throws SQLException {
+        String[] words = createIndex.split("\\s+|\\(");
+        String indexName = words[2];
+        String tableName = words[4];
+        DatabaseMetaData metaData = con.getMetaData();
+        for(String table : new String[]{tableName, tableName.toUpperCase()}){
+            try (ResultSet rs = metaData.getIndexInfo(con.getCatalog(), null, table, false, false)) {
+                while(rs.next()){
+                    if(indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))){
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as indexExists for the columns a migration already added.
+     */
+    private static boolean columnExists(Connection con, String addColumn) throws SQLException {
+        String[] words = addColumn.split("\\s+");
+        String tableName = words[2];
+        String columnName = words[5];
+        DatabaseMetaData metaData = con.getMetaData();
+        for(String table : new String[]{tableName, tableName.toUpperCase()}){
+            try (ResultSet rs = metaData.getColumns(con.getCatalog(), null, table, null)) {
+                while(rs.next()){
+                    if(columnName.equalsIgnoreCase(rs.getString("COLUMN_NAME"))){
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
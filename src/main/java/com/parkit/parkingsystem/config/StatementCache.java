@@ -0,0 +1,228 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of the prepared statements of one physical connection, keyed by SQL text.
+ * The statements handed out are proxies: close() clears their parameters and keeps them for the
+ * next prepareStatement of the same query on this connection, so the query is parsed and planned once.
+ */
+final class StatementCache {
+
+    private static final Logger logger = LogManager.getLogger("StatementCache");
+
+    //prepareStatement(sql) as opposed to prepareStatement(sql, autoGeneratedKeys)
+    static final int NO_KEYS_ARGUMENT = -1;
+
+    private static final class Key {
+        private final String sql;
+        private final int autoGeneratedKeys;
+
+        private Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)){
+                return false;
+            }
+            Key other = (Key) o;
+            return autoGeneratedKeys == other.autoGeneratedKeys && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + autoGeneratedKeys;
+        }
+    }
+
+    private static final class CachedStatement {
+        private final PreparedStatement statement;
+        private StatementHandler checkedOutBy;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private final Connection physical;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LinkedHashMap<Key, CachedStatement> statements;
+
+    StatementCache(Connection physical, int maxSize, LongAdder hits, LongAdder misses, LongAdder evictions) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.statements = new LinkedHashMap<Key, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest) {
+                if(size() <= StatementCache.this.maxSize){
+                    return false;
+                }
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param pooledConnection the connection the caller sees, returned by getConnection() of the statement
+     */
+    synchronized PreparedStatement prepare(Connection pooledConnection, String sql, int autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        CachedStatement cached = statements.get(key);
+        if(cached != null && cached.checkedOutBy == null){
+            hits.increment();
+            return checkOut(cached, pooledConnection);
+        }
+        misses.increment();
+        PreparedStatement statement = (autoGeneratedKeys == NO_KEYS_ARGUMENT)
+                ? physical.prepareStatement(sql) : physical.prepareStatement(sql, autoGeneratedKeys);
+        if(cached != null){
+            //the same query is still open on this connection: this second statement is not cached
+            return statement;
+        }
+        cached = new CachedStatement(statement);
+        statements.put(key, cached);
+        return checkOut(cached, pooledConnection);
+    }
+
+    private PreparedStatement checkOut(CachedStatement cached, Connection pooledConnection) {
+        StatementHandler handler = new StatementHandler(cached, pooledConnection);
+        cached.checkedOutBy = handler;
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    private synchronized void checkIn(CachedStatement cached) {
+        cached.checkedOutBy = null;
+        if(cached.evicted){
+            closeStatement(cached.statement);
+            return;
+        }
+        try {
+            cached.statement.clearParameters();
+        } catch (SQLException e) {
+            logger.error("Discarding cached statement that could not be reset", e);
+            statements.values().remove(cached);
+            closeStatement(cached.statement);
+        }
+    }
+
+    private void evict(CachedStatement cached) {
+        evictions.increment();
+        cached.evicted = true;
+        if(cached.checkedOutBy == null){
+            closeStatement(cached.statement);
+        }
+    }
+
+    /**
+     * Takes back the statements the borrower did not close before returning the connection.
+     */
+    synchronized void checkInAll() {
+        List<CachedStatement> checkedOut = new ArrayList<>();
+        for(CachedStatement cached : statements.values()){
+            if(cached.checkedOutBy != null){
+                checkedOut.add(cached);
+            }
+        }
+        for(CachedStatement cached : checkedOut){
+            cached.checkedOutBy.closed = true;
+            checkIn(cached);
+        }
+    }
+
+    synchronized void closeAll() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while(iterator.hasNext()){
+            CachedStatement cached = iterator.next();
+            if(cached.checkedOutBy != null){
+                cached.checkedOutBy.closed = true;
+            }
+            closeStatement(cached.statement);
+            iterator.remove();
+        }
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    private static void closeStatement(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing cached statement", e);
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection pooledConnection;
+        private volatile boolean closed;
+
+        private StatementHandler(CachedStatement cached, Connection pooledConnection) {
+            this.cached = cached;
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if("close".equals(name) && method.getParameterCount() == 0){
+                if(!closed){
+                    closed = true;
+                    checkIn(cached);
+                }
+                return null;
+            }
+            if("isClosed".equals(name) && method.getParameterCount() == 0){
+                return closed;
+            }
+            if("getConnection".equals(name) && method.getParameterCount() == 0){
+                return pooledConnection;
+            }
+            if("equals".equals(name) && method.getParameterCount() == 1){
+                return proxy == args[0];
+            }
+            if("hashCode".equals(name) && method.getParameterCount() == 0){
+                return System.identityHashCode(proxy);
+            }
+            if("toString".equals(name) && method.getParameterCount() == 0){
+                return "Cached[" + cached.statement + "]";
+            }
+            if(closed){
+                throw new SQLException("Statement has already been closed");
+            }
+            try {
+                return method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
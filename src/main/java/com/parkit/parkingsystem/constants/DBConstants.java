@@ -4,9 +4,41 @@ public class DBConstants {
 
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String CLAIM_PARKING_SPOT = "update parking set available = false where PARKING_NUMBER = ? and AVAILABLE = true";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, AVAILABLE, TYPE from parking";
+    public static final String GET_PARKING_SPOT_LAYOUT = "select PARKING_NUMBER, AVAILABLE, TYPE, LEVEL_NUMBER, ZONE, DISTANCE from parking";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
+    //entry: the open ticket is inserted only if the plate has none yet, served by IDX_TICKET_VEHICLE_OPEN
+    public static final String SAVE_OPEN_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) select ?, ?, ?, ?, null from dual where not exists (select 1 from ticket where VEHICLE_REG_NUMBER = ? and OUT_TIME is null)";
     public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
     public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME  limit 1";
-    public static final String COUNT_TICKET = "select count(*) from ticket where VEHICLE_REG_NUMBER = ?";
+    public static final String GET_OPEN_TICKETS = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, t.VEHICLE_REG_NUMBER from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME is null order by t.IN_TIME";
+    //tickets still in the table plus the ones archived into the plate_visits rollup; the plate is set twice
+    public static final String COUNT_TICKET = "select (select count(*) from ticket where VEHICLE_REG_NUMBER = ?) + coalesce((select VISITS from plate_visits where VEHICLE_REG_NUMBER = ?), 0)";
+
+    //exit: lock the open ticket and count the visits in one query, then close the ticket and free its spot
+    public static final String GET_OPEN_TICKET_FOR_UPDATE = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, (select count(*) from ticket c where c.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER) + coalesce((select v.VISITS from plate_visits v where v.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER), 0) from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? and t.OUT_TIME is null order by t.IN_TIME limit 1 for update";
+    public static final String CLOSE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=? and OUT_TIME is null";
+    public static final String RELEASE_PARKING_SPOT = "update parking set available = true where PARKING_NUMBER = ?";
+
+    //bulk re-pricing: the tickets closed in [?, ?), with whether the plate had parked before
+    public static final String GET_CLOSED_TICKETS = "select t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, (exists(select 1 from ticket c where c.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and c.IN_TIME < t.IN_TIME) or exists(select 1 from plate_visits v where v.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and v.FIRST_IN_TIME < t.IN_TIME)) from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME >= ? and t.OUT_TIME < ?";
+    public static final String UPDATE_TICKET_PRICE = "update ticket set PRICE=? where ID=?";
+
+    //reporting: the tickets closed in [?, ?) in exit order, served by IDX_TICKET_OPEN
+    public static final String GET_CLOSED_TICKETS_BY_OUT_TIME = "select t.IN_TIME, t.OUT_TIME, t.PRICE, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME >= ? and t.OUT_TIME < ? order by t.OUT_TIME";
+    public static final String GET_ARCHIVED_TICKETS_BY_OUT_TIME = "select t.IN_TIME, t.OUT_TIME, t.PRICE, p.TYPE from ticket_archive t,parking p where p.parking_number = t.parking_number and t.OUT_TIME >= ? and t.OUT_TIME < ? order by t.OUT_TIME";
+    public static final String COUNT_PARKING_SPOTS_BY_TYPE = "select TYPE, count(*) from parking group by TYPE";
+
+    //archival: the oldest tickets closed before ?, at most ? of them, moved to ticket_archive and counted in plate_visits
+    public static final String GET_TICKETS_TO_ARCHIVE = "select ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME from ticket where OUT_TIME < ? order by OUT_TIME limit ? for update";
+    public static final String ARCHIVE_TICKET = "insert into ticket_archive(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?,?)";
+    public static final String ADD_PLATE_VISITS = "insert into plate_visits(VEHICLE_REG_NUMBER, VISITS, FIRST_IN_TIME, LAST_OUT_TIME) values(?,?,?,?) on duplicate key update VISITS = VISITS + values(VISITS), FIRST_IN_TIME = least(FIRST_IN_TIME, values(FIRST_IN_TIME)), LAST_OUT_TIME = greatest(LAST_OUT_TIME, values(LAST_OUT_TIME))";
+    public static final String DELETE_TICKET = "delete from ticket where ID = ?";
+
+    //reservations: loaded once into ReservationIndex, then written through
+    public static final String SAVE_RESERVATION = "insert into reservation(PARKING_NUMBER, VEHICLE_REG_NUMBER, START_TIME, END_TIME) values(?,?,?,?)";
+    public static final String DELETE_RESERVATION = "delete from reservation where ID = ?";
+    public static final String GET_RESERVATIONS_ENDING_AFTER = "select r.ID, r.PARKING_NUMBER, p.TYPE, r.VEHICLE_REG_NUMBER, r.START_TIME, r.END_TIME from reservation r,parking p where p.parking_number = r.parking_number and r.END_TIME > ?";
 }
@@ -3,4 +3,7 @@ package com.parkit.parkingsystem.constants;
 public class Fare {
     public static final double BIKE_RATE_PER_HOUR = 1.0;
     public static final double CAR_RATE_PER_HOUR = 1.5;
+    //stays up to this long are not charged
+    public static final int FREE_PERIOD_MINUTES = 30;
+    public static final int RECURRING_USER_DISCOUNT_PERCENT = 5;
 }
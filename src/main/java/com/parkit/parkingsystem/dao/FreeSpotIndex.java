@@ -0,0 +1,220 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntPredicate;
+
+/**
+ * In-memory view of the free spots of each ParkingType, one bit per parking number.
+ * The type of each spot is taken from the parking table when the index is built.
+ * Bits are flipped with compare-and-set so concurrent gates never get the same spot.
+ * Each flip also moves the free spot counter of the type, so the occupancy is read without scanning the bits.
+ */
+public class FreeSpotIndex {
+
+    private final Map<ParkingType, AtomicLongArray> freeSpots = new EnumMap<>(ParkingType.class);
+    private final Map<Integer, ParkingType> spotTypes = new HashMap<>();
+    //by ParkingType ordinal
+    private final AtomicIntegerArray availableCounts = new AtomicIntegerArray(ParkingType.values().length);
+    private final int[] spotCounts = new int[ParkingType.values().length];
+    private final List<ParkingSpotRepository.OccupancyListener> listeners;
+
+    public FreeSpotIndex(Iterable<ParkingSpot> parkingSpots) {
+        this(parkingSpots, new CopyOnWriteArrayList<ParkingSpotRepository.OccupancyListener>());
+    }
+
+    /**
+     * @param listeners notified of every change of the free spot counts; a repository that rebuilds its index
+     *                  passes the same list to the new one
+     */
+    public FreeSpotIndex(Iterable<ParkingSpot> parkingSpots, CopyOnWriteArrayList<ParkingSpotRepository.OccupancyListener> listeners) {
+        this.listeners = listeners;
+        int maxNumber = 0;
+        for(ParkingSpot parkingSpot : parkingSpots){
+            if(spotTypes.put(parkingSpot.getId(), parkingSpot.getParkingType()) == null){
+                spotCounts[parkingSpot.getParkingType().ordinal()]++;
+            }
+            maxNumber = Math.max(maxNumber, parkingSpot.getId());
+        }
+        for(ParkingType parkingType : ParkingType.values()){
+            freeSpots.put(parkingType, new AtomicLongArray((maxNumber >>> 6) + 1));
+        }
+        for(ParkingSpot parkingSpot : parkingSpots){
+            if(parkingSpot.isAvailable()){
+                set(parkingSpot.getId(), true);
+            }
+        }
+    }
+
+    /**
+     * @return the lowest free parking number for this type, or 0 when the type is full
+     */
+    public int nextAvailable(ParkingType parkingType) {
+        AtomicLongArray words = freeSpots.get(parkingType);
+        for(int i = 0; i < words.length(); i++){
+            long word = words.get(i);
+            if(word != 0){
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Atomically takes the lowest free spot of this type.
+     * @return the claimed parking number, or 0 when the type is full
+     */
+    public int claim(ParkingType parkingType) {
+        AtomicLongArray words = freeSpots.get(parkingType);
+        for(int i = 0; i < words.length(); i++){
+            long word = words.get(i);
+            while(word != 0){
+                long lowestBit = Long.lowestOneBit(word);
+                if(words.compareAndSet(i, word, word & ~lowestBit)){
+                    changeAvailable(parkingType, -1);
+                    return (i << 6) + Long.numberOfTrailingZeros(lowestBit);
+                }
+                word = words.get(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Atomically takes the lowest free spot of this type that allowed accepts.
+     * @return the claimed parking number, or 0 when no free spot of the type is allowed
+     */
+    public int claim(ParkingType parkingType, IntPredicate allowed) {
+        AtomicLongArray words = freeSpots.get(parkingType);
+        for(int i = 0; i < words.length(); i++){
+            long candidates = words.get(i);
+            while(candidates != 0){
+                long lowestBit = Long.lowestOneBit(candidates);
+                int number = (i << 6) + Long.numberOfTrailingZeros(lowestBit);
+                if(allowed.test(number) && claim(number)){
+                    return number;
+                }
+                candidates &= ~lowestBit;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Atomically takes the given spot if it is still free.
+     */
+    public boolean claim(int number) {
+        ParkingType parkingType = spotTypes.get(number);
+        if(parkingType == null){
+            return false;
+        }
+        AtomicLongArray words = freeSpots.get(parkingType);
+        long bit = 1L << number;
+        int i = number >>> 6;
+        long word;
+        do {
+            word = words.get(i);
+            if((word & bit) == 0){
+                return false;
+            }
+        } while(!words.compareAndSet(i, word, word & ~bit));
+        changeAvailable(parkingType, -1);
+        return true;
+    }
+
+    public boolean update(int number, boolean available) {
+        ParkingType parkingType = spotTypes.get(number);
+        if(parkingType == null){
+            return false;
+        }
+        if(set(number, available)){
+            notifyListeners(parkingType);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the bit changed, in which case the counter of its type was moved
+     */
+    private boolean set(int number, boolean available) {
+        ParkingType parkingType = spotTypes.get(number);
+        AtomicLongArray words = freeSpots.get(parkingType);
+        long bit = 1L << number;
+        int i = number >>> 6;
+        long word;
+        do {
+            word = words.get(i);
+            if(((word & bit) != 0) == available){
+                return false;
+            }
+        } while(!words.compareAndSet(i, word, available ? word | bit : word & ~bit));
+        availableCounts.addAndGet(parkingType.ordinal(), available ? 1 : -1);
+        return true;
+    }
+
+    private void changeAvailable(ParkingType parkingType, int delta) {
+        availableCounts.addAndGet(parkingType.ordinal(), delta);
+        notifyListeners(parkingType);
+    }
+
+    private void notifyListeners(ParkingType parkingType) {
+        if(listeners.isEmpty()){
+            return;
+        }
+        int available = countAvailable(parkingType);
+        int spots = countSpots(parkingType);
+        for(ParkingSpotRepository.OccupancyListener listener : listeners){
+            listener.onOccupancyChanged(parkingType, available, spots);
+        }
+    }
+
+    /**
+     * Reads one counter, whatever the size of the lot.
+     * The bit and the counter are not moved in one step, so a read racing a gate may be one spot off for that instant.
+     */
+    public int countAvailable(ParkingType parkingType) {
+        int available = availableCounts.get(parkingType.ordinal());
+        return Math.max(0, Math.min(available, countSpots(parkingType)));
+    }
+
+    /**
+     * @return true if the spot exists and is taken
+     */
+    public boolean isOccupied(int number) {
+        ParkingType parkingType = spotTypes.get(number);
+        return parkingType != null && (freeSpots.get(parkingType).get(number >>> 6) & (1L << number)) == 0;
+    }
+
+    public int countOccupied(ParkingType parkingType) {
+        return countSpots(parkingType) - countAvailable(parkingType);
+    }
+
+    public int countSpots(ParkingType parkingType) {
+        return spotCounts[parkingType.ordinal()];
+    }
+
+    public void addListener(ParkingSpotRepository.OccupancyListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ParkingSpotRepository.OccupancyListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sends the current counts of every type to the listeners, for instance once a rebuilt index replaces the old one.
+     */
+    public void publish() {
+        for(ParkingType parkingType : ParkingType.values()){
+            notifyListeners(parkingType);
+        }
+    }
+}
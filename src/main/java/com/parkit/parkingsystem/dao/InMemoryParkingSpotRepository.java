@@ -0,0 +1,93 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Parking spots held only in a FreeSpotIndex, for lots run without a database and for load tests.
+ */
+public class InMemoryParkingSpotRepository implements ParkingSpotRepository {
+
+    private final FreeSpotIndex freeSpotIndex;
+
+    public InMemoryParkingSpotRepository(Iterable<ParkingSpot> parkingSpots) {
+        this.freeSpotIndex = new FreeSpotIndex(parkingSpots);
+    }
+
+    /**
+     * A free lot numbered like resources/Data.sql: the car spots from 1, then the bike spots.
+     */
+    public InMemoryParkingSpotRepository(int carSpots, int bikeSpots) {
+        this(freeSpots(carSpots, bikeSpots));
+    }
+
+    private static List<ParkingSpot> freeSpots(int carSpots, int bikeSpots) {
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for(int number = 1; number <= carSpots + bikeSpots; number++){
+            parkingSpots.add(new ParkingSpot(number, number <= carSpots ? ParkingType.CAR : ParkingType.BIKE, true));
+        }
+        return parkingSpots;
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return freeSpotIndex.nextAvailable(parkingType);
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        return freeSpotIndex.update(parkingSpot.getId(), parkingSpot.isAvailable());
+    }
+
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        return freeSpotIndex.claim(parkingType);
+    }
+
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType, IntPredicate allowed) {
+        return freeSpotIndex.claim(parkingType, allowed);
+    }
+
+    @Override
+    public int claimSlot(int parkingNumber) {
+        return freeSpotIndex.claim(parkingNumber) ? 1 : 0;
+    }
+
+    /**
+     * The index is the only copy of the spots, so this is where the spot is freed.
+     */
+    @Override
+    public void onSpotReleased(ParkingSpot parkingSpot) {
+        freeSpotIndex.update(parkingSpot.getId(), true);
+    }
+
+    @Override
+    public int countAvailable(ParkingType parkingType) {
+        return freeSpotIndex.countAvailable(parkingType);
+    }
+
+    @Override
+    public int countOccupied(ParkingType parkingType) {
+        return freeSpotIndex.countOccupied(parkingType);
+    }
+
+    @Override
+    public boolean isOccupied(int parkingNumber) {
+        return freeSpotIndex.isOccupied(parkingNumber);
+    }
+
+    @Override
+    public void addOccupancyListener(OccupancyListener listener) {
+        freeSpotIndex.addListener(listener);
+    }
+
+    @Override
+    public void removeOccupancyListener(OccupancyListener listener) {
+        freeSpotIndex.removeListener(listener);
+    }
+}
@@ -0,0 +1,177 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tickets held only in memory, indexed by ID, by plate and, for the open ones, by spot type.
+ * The tickets of one plate are updated under the lock of that plate, other plates are not blocked.
+ * Pair it with InMemoryParkingSpotRepository, which frees the spot of an exit in onSpotReleased.
+ * Like the DAO, it keeps its own copy of each ticket and hands out copies, so callers never change a stored ticket.
+ */
+public class InMemoryTicketRepository implements TicketRepository {
+
+    private static final Logger logger = LogManager.getLogger("InMemoryTicketRepository");
+
+    private static final class PlateTickets {
+        //in the order they were saved
+        private final List<Ticket> tickets = new ArrayList<>();
+        private Ticket openTicket;
+    }
+
+    private final AtomicInteger ticketIds = new AtomicInteger();
+    private final ConcurrentMap<Integer, Ticket> ticketsById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PlateTickets> ticketsByPlate = new ConcurrentHashMap<>();
+    private final Map<ParkingType, Set<Ticket>> openTicketsByType = new EnumMap<>(ParkingType.class);
+
+    public InMemoryTicketRepository() {
+        for(ParkingType parkingType : ParkingType.values()){
+            openTicketsByType.put(parkingType, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        if(ticket.getVehicleRegNumber() == null || ticket.getParkingSpot() == null || ticket.getInTime() == null){
+            logger.error("Error saving ticket info: incomplete ticket for " + ticket.getVehicleRegNumber());
+            return false;
+        }
+        PlateTickets plateTickets = ticketsByPlate.computeIfAbsent(ticket.getVehicleRegNumber(), plate -> new PlateTickets());
+        synchronized (plateTickets){
+            if(ticket.getOutTime() == null && plateTickets.openTicket != null){
+                logger.error("Error saving ticket info: vehicle " + ticket.getVehicleRegNumber() + " already has an open ticket");
+                return false;
+            }
+            ticket.setId(ticketIds.incrementAndGet());
+            Ticket stored = copy(ticket);
+            plateTickets.tickets.add(stored);
+            ticketsById.put(stored.getId(), stored);
+            if(stored.getOutTime() == null){
+                plateTickets.openTicket = stored;
+                openTicketsByType.get(stored.getParkingSpot().getParkingType()).add(stored);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        PlateTickets plateTickets = (vehicleRegNumber == null) ? null : ticketsByPlate.get(vehicleRegNumber);
+        if(plateTickets == null){
+            return null;
+        }
+        synchronized (plateTickets){
+            if(plateTickets.openTicket != null){
+                return copy(plateTickets.openTicket);
+            }
+            return plateTickets.tickets.isEmpty() ? null : copy(plateTickets.tickets.get(0));
+        }
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        Ticket stored = ticketsById.get(ticket.getId());
+        if(stored == null){
+            logger.error("Error saving ticket info: no ticket " + ticket.getId());
+            return false;
+        }
+        PlateTickets plateTickets = ticketsByPlate.get(stored.getVehicleRegNumber());
+        synchronized (plateTickets){
+            stored.setPrice(ticket.getPrice());
+            stored.setOutTime(ticket.getOutTime());
+            if(stored.getOutTime() != null && plateTickets.openTicket == stored){
+                close(plateTickets);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getNbTicket(String vehicleRegNumber) {
+        PlateTickets plateTickets = (vehicleRegNumber == null) ? null : ticketsByPlate.get(vehicleRegNumber);
+        if(plateTickets == null){
+            return 0;
+        }
+        synchronized (plateTickets){
+            return plateTickets.tickets.size();
+        }
+    }
+
+    @Override
+    public Ticket exitVehicle(String vehicleRegNumber, Date outTime, ExitPricing pricing) {
+        PlateTickets plateTickets = (vehicleRegNumber == null) ? null : ticketsByPlate.get(vehicleRegNumber);
+        if(plateTickets == null){
+            return null;
+        }
+        synchronized (plateTickets){
+            Ticket stored = plateTickets.openTicket;
+            if(stored == null){
+                return null;
+            }
+            Ticket ticket = copy(stored);
+            ticket.setOutTime(outTime);
+            try {
+                pricing.price(ticket, plateTickets.tickets.size());
+            }catch (RuntimeException ex){
+                logger.error("Error pricing vehicle exit", ex);
+                return null;
+            }
+            stored.setPrice(ticket.getPrice());
+            stored.setOutTime(outTime);
+            close(plateTickets);
+            stored.getParkingSpot().setAvailable(true);
+            ticket.getParkingSpot().setAvailable(true);
+            return ticket;
+        }
+    }
+
+    private void close(PlateTickets plateTickets) {
+        Ticket ticket = plateTickets.openTicket;
+        openTicketsByType.get(ticket.getParkingSpot().getParkingType()).remove(ticket);
+        plateTickets.openTicket = null;
+    }
+
+    /**
+     * @return the tickets of the vehicles parked in spots of this type
+     */
+    public List<Ticket> getOpenTickets(ParkingType parkingType) {
+        List<Ticket> openTickets = new ArrayList<>();
+        for(Ticket ticket : openTicketsByType.get(parkingType)){
+            openTickets.add(copy(ticket));
+        }
+        return openTickets;
+    }
+
+    public int countOpenTickets(ParkingType parkingType) {
+        return openTicketsByType.get(parkingType).size();
+    }
+
+    private static Ticket copy(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setId(ticket.getId());
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        copy.setParkingSpot(new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable()));
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTime(copy(ticket.getInTime()));
+        copy.setOutTime(copy(ticket.getOutTime()));
+        return copy;
+    }
+
+    private static Date copy(Date date) {
+        return (date == null) ? null : new Date(date.getTime());
+    }
+}
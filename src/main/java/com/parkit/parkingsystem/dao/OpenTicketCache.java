@@ -0,0 +1,78 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tickets of the vehicles currently inside, keyed by registration number.
+ * Callers always get their own copy so they can update it without touching the cache.
+ */
+public class OpenTicketCache {
+
+    private final ConcurrentMap<String, Ticket> openTickets = new ConcurrentHashMap<>();
+
+    public void put(Ticket ticket) {
+        if(ticket.getVehicleRegNumber() != null){
+            openTickets.put(ticket.getVehicleRegNumber(), copy(ticket));
+        }
+    }
+
+    public Ticket get(String vehicleRegNumber) {
+        if(vehicleRegNumber == null){
+            return null;
+        }
+        Ticket ticket = openTickets.get(vehicleRegNumber);
+        return (ticket == null) ? null : copy(ticket);
+    }
+
+    public void remove(Ticket ticket) {
+        if(ticket.getVehicleRegNumber() != null){
+            openTickets.computeIfPresent(ticket.getVehicleRegNumber(),
+                    (vehicleRegNumber, cached) -> (cached.getId() == ticket.getId()) ? null : cached);
+        }
+    }
+
+    /**
+     * Gives the cached entry the ID a deferred insert received, if it is still the same visit.
+     */
+    public void assignId(Ticket ticket) {
+        if(ticket.getVehicleRegNumber() != null && ticket.getId() > 0){
+            openTickets.computeIfPresent(ticket.getVehicleRegNumber(), (vehicleRegNumber, cached) -> {
+                if(cached.getId() == 0 && cached.getInTime().equals(ticket.getInTime())){
+                    cached.setId(ticket.getId());
+                }
+                return cached;
+            });
+        }
+    }
+
+    public void clear() {
+        openTickets.clear();
+    }
+
+    public int size() {
+        return openTickets.size();
+    }
+
+    private static Ticket copy(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setId(ticket.getId());
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        if(parkingSpot != null){
+            copy.setParkingSpot(new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable()));
+        }
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTime(copy(ticket.getInTime()));
+        copy.setOutTime(copy(ticket.getOutTime()));
+        return copy;
+    }
+
+    private static Date copy(Date date) {
+        return (date == null) ? null : new Date(date.getTime());
+    }
+}
@@ -3,6 +3,8 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,50 +12,289 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntPredicate;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotRepository {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
+    private static final OperationMetrics GET_NEXT_AVAILABLE_SLOT_METRICS = Metrics.operation("ParkingSpotDAO.getNextAvailableSlot");
+    private static final OperationMetrics UPDATE_PARKING_METRICS = Metrics.operation("ParkingSpotDAO.updateParking");
+    private static final OperationMetrics CLAIM_NEXT_AVAILABLE_SLOT_METRICS = Metrics.operation("ParkingSpotDAO.claimNextAvailableSlot");
+    private static final OperationMetrics LOAD_FREE_SPOT_INDEX_METRICS = Metrics.operation("ParkingSpotDAO.loadFreeSpotIndex");
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    private volatile FreeSpotIndex freeSpotIndex;
+    //kept across reloads of the index
+    private final CopyOnWriteArrayList<OccupancyListener> occupancyListeners = new CopyOnWriteArrayList<>();
+
+    @Override
     public int getNextAvailableSlot(ParkingType parkingType){
+        long start = System.nanoTime();
+        try {
+            FreeSpotIndex index = getFreeSpotIndex();
+            if(index != null){
+                return index.nextAvailable(parkingType);
+            }
+            Connection con = null;
+            int result=-1;
+            try {
+                con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+                ps.setString(1, parkingType.toString());
+                ResultSet rs = ps.executeQuery();
+                if(rs.next()){
+                    result = rs.getInt(1);;
+                    GET_NEXT_AVAILABLE_SLOT_METRICS.recordRows(1);
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+            }catch (Exception ex){
+                logger.error("Error fetching next available slot",ex);
+                GET_NEXT_AVAILABLE_SLOT_METRICS.recordError();
+            }finally {
+                dataBaseConfig.closeConnection(con);
+            }
+            return result;
+        } finally {
+            GET_NEXT_AVAILABLE_SLOT_METRICS.record(start);
+        }
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot){
+        long start = System.nanoTime();
+        try {
+            //update the availability fo that parking slot
+            Connection con = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+                ps.setBoolean(1, parkingSpot.isAvailable());
+                ps.setInt(2, parkingSpot.getId());
+                int updateRowCount = ps.executeUpdate();
+                UPDATE_PARKING_METRICS.recordRows(updateRowCount);
+                dataBaseConfig.closePreparedStatement(ps);
+                FreeSpotIndex index = freeSpotIndex;
+                if(updateRowCount == 1 && index != null){
+                    index.update(parkingSpot.getId(), parkingSpot.isAvailable());
+                }
+                return (updateRowCount == 1);
+            }catch (Exception ex){
+                logger.error("Error updating parking info",ex);
+                UPDATE_PARKING_METRICS.recordError();
+                return false;
+            }finally {
+                dataBaseConfig.closeConnection(con);
+            }
+        } finally {
+            UPDATE_PARKING_METRICS.record(start);
+        }
+    }
+
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType){
+        return claimNextAvailableSlot(parkingType, null);
+    }
+
+    /**
+     * Needs the free spot index to filter the spots: fails when it cannot be loaded.
+     */
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType, IntPredicate allowed){
+        long start = System.nanoTime();
+        try {
+            FreeSpotIndex index = getFreeSpotIndex();
+            if(index == null && allowed != null){
+                CLAIM_NEXT_AVAILABLE_SLOT_METRICS.recordError();
+                return -1;
+            }
+            while(true){
+                int parkingNumber;
+                if(index == null){
+                    parkingNumber = getNextAvailableSlot(parkingType);
+                }else {
+                    parkingNumber = (allowed == null) ? index.claim(parkingType) : index.claim(parkingType, allowed);
+                }
+                if(parkingNumber <= 0){
+                    return parkingNumber;
+                }
+                int claimed = claimParkingSpot(parkingNumber);
+                if(claimed < 0){
+                    if(index != null){
+                        index.update(parkingNumber, true);
+                    }
+                    CLAIM_NEXT_AVAILABLE_SLOT_METRICS.recordError();
+                    return -1;
+                }
+                if(claimed > 0){
+                    CLAIM_NEXT_AVAILABLE_SLOT_METRICS.recordRows(claimed);
+                    return parkingNumber;
+                }
+                //taken in the database by another writer: the index already marks it occupied, try the next one
+            }
+        } finally {
+            CLAIM_NEXT_AVAILABLE_SLOT_METRICS.record(start);
+        }
+    }
+
+    @Override
+    public int claimSlot(int parkingNumber){
+        long start = System.nanoTime();
+        try {
+            FreeSpotIndex index = getFreeSpotIndex();
+            if(index != null && !index.claim(parkingNumber)){
+                return 0;
+            }
+            int claimed = claimParkingSpot(parkingNumber);
+            if(claimed < 0){
+                if(index != null){
+                    index.update(parkingNumber, true);
+                }
+                CLAIM_NEXT_AVAILABLE_SLOT_METRICS.recordError();
+                return -1;
+            }
+            //taken in the database by another writer: the index now marks it occupied as well
+            CLAIM_NEXT_AVAILABLE_SLOT_METRICS.recordRows(claimed);
+            return claimed;
+        } finally {
+            CLAIM_NEXT_AVAILABLE_SLOT_METRICS.record(start);
+        }
+    }
+
+    private int claimParkingSpot(int parkingNumber){
         Connection con = null;
-        int result=-1;
+        PreparedStatement ps = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
-            ps.setString(1, parkingType.toString());
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                result = rs.getInt(1);;
-            }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+            ps.setInt(1, parkingNumber);
+            return ps.executeUpdate();
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
+            logger.error("Error claiming parking spot",ex);
+            return -1;
         }finally {
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
         }
-        return result;
     }
 
-    public boolean updateParking(ParkingSpot parkingSpot){
-        //update the availability fo that parking slot
+    public boolean loadFreeSpotIndex(){
+        long start = System.nanoTime();
+        try {
+            Connection con = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                List<ParkingSpot> parkingSpots = readParkingSpots(con, false);
+                freeSpotIndex = new FreeSpotIndex(parkingSpots, occupancyListeners);
+                freeSpotIndex.publish();
+                LOAD_FREE_SPOT_INDEX_METRICS.recordRows(parkingSpots.size());
+                logger.info("Loaded " + parkingSpots.size() + " parking spots in memory");
+                return true;
+            }catch (Exception ex){
+                logger.error("Error loading parking spots",ex);
+                LOAD_FREE_SPOT_INDEX_METRICS.recordError();
+                return false;
+            }finally {
+                dataBaseConfig.closeConnection(con);
+            }
+        } finally {
+            LOAD_FREE_SPOT_INDEX_METRICS.record(start);
+        }
+    }
+
+    /**
+     * @return every spot of the parking table with its current availability and layout, or null on error
+     */
+    public List<ParkingSpot> getParkingSpots(){
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
-            ps.setBoolean(1, parkingSpot.isAvailable());
-            ps.setInt(2, parkingSpot.getId());
-            int updateRowCount = ps.executeUpdate();
-            dataBaseConfig.closePreparedStatement(ps);
-            return (updateRowCount == 1);
+            return readParkingSpots(con, true);
         }catch (Exception ex){
-            logger.error("Error updating parking info",ex);
-            return false;
+            logger.error("Error loading parking spots",ex);
+            return null;
         }finally {
             dataBaseConfig.closeConnection(con);
         }
     }
 
+    /**
+     * @param withLayout false skips the layout columns, which a schema before migration 4 does not have
+     */
+    private List<ParkingSpot> readParkingSpots(Connection con, boolean withLayout) throws Exception {
+        PreparedStatement ps = con.prepareStatement(withLayout ? DBConstants.GET_PARKING_SPOT_LAYOUT : DBConstants.GET_PARKING_SPOTS);
+        ResultSet rs = ps.executeQuery();
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        while(rs.next()){
+            ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2));
+            if(withLayout){
+                parkingSpot.setLevel(rs.getInt(4));
+                parkingSpot.setZone(rs.getString(5));
+                parkingSpot.setDistance(rs.getInt(6));
+            }
+            parkingSpots.add(parkingSpot);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return parkingSpots;
+    }
+
+    /**
+     * Brings the free spot index in line with a spot freed by another DAO's transaction, such as a vehicle exit.
+     */
+    @Override
+    public void onSpotReleased(ParkingSpot parkingSpot){
+        FreeSpotIndex index = freeSpotIndex;
+        if(index != null){
+            index.update(parkingSpot.getId(), true);
+        }
+    }
+
+    /**
+     * Served by the free spot index, which the DAO loads on its first gate operation or at warm-up.
+     * @return the free spots of this type, or -1 until the index is loaded
+     */
+    @Override
+    public int countAvailable(ParkingType parkingType){
+        FreeSpotIndex index = freeSpotIndex;
+        return (index != null) ? index.countAvailable(parkingType) : -1;
+    }
+
+    @Override
+    public int countOccupied(ParkingType parkingType){
+        FreeSpotIndex index = freeSpotIndex;
+        return (index != null) ? index.countOccupied(parkingType) : -1;
+    }
+
+    @Override
+    public boolean isOccupied(int parkingNumber){
+        FreeSpotIndex index = freeSpotIndex;
+        return index != null && index.isOccupied(parkingNumber);
+    }
+
+    @Override
+    public void addOccupancyListener(OccupancyListener listener){
+        occupancyListeners.add(listener);
+    }
+
+    @Override
+    public void removeOccupancyListener(OccupancyListener listener){
+        occupancyListeners.remove(listener);
+    }
+
+    private FreeSpotIndex getFreeSpotIndex(){
+        if(freeSpotIndex == null){
+            synchronized (this){
+                if(freeSpotIndex == null){
+                    loadFreeSpotIndex();
+                }
+            }
+        }
+        return freeSpotIndex;
+    }
+
 }
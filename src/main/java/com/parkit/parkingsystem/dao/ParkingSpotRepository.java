@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Storage of the parking spots, in MySQL with ParkingSpotDAO or in memory with InMemoryParkingSpotRepository.
+ */
+public interface ParkingSpotRepository {
+
+    /**
+     * Told the new counts of a type each time one of its spots is taken or freed.
+     * Called on the thread of the gate that changed the spot, so it must hand the work off rather than block.
+     */
+    interface OccupancyListener {
+        void onOccupancyChanged(ParkingType parkingType, int availableSpots, int totalSpots);
+    }
+
+    /**
+     * @return the lowest free parking number for this type without taking it, 0 when the type is full or -1 on error
+     */
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * Saves the availability of the spot.
+     */
+    boolean updateParking(ParkingSpot parkingSpot);
+
+    /**
+     * Reserves the lowest free spot of this type in one step, so two gates can never be handed the same spot.
+     * @return the claimed parking number, 0 when the type is full or -1 on error
+     */
+    int claimNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * Same as claimNextAvailableSlot, skipping the spots allowed rejects, such as the ones booked by a reservation.
+     * @return the claimed parking number, 0 when no free spot of the type is allowed or -1 on error
+     */
+    int claimNextAvailableSlot(ParkingType parkingType, IntPredicate allowed);
+
+    /**
+     * Reserves this spot if it is still free, for callers that choose the spot themselves.
+     * @return 1 if the spot was claimed, 0 if it is taken or unknown, -1 on error
+     */
+    int claimSlot(int parkingNumber);
+
+    /**
+     * Called once TicketRepository.exitVehicle has closed the ticket of the vehicle parked in this spot.
+     */
+    void onSpotReleased(ParkingSpot parkingSpot);
+
+    /**
+     * Read from memory, never from the database, so displays can poll it as often as they like.
+     * @return the free spots of this type, or -1 when the spots could not be loaded
+     */
+    int countAvailable(ParkingType parkingType);
+
+    /**
+     * @return the taken spots of this type, or -1 when the spots could not be loaded
+     */
+    int countOccupied(ParkingType parkingType);
+
+    /**
+     * Read from memory like countAvailable.
+     * @return true if a vehicle is parked in the spot; false when it is free, unknown or the spots could not be loaded
+     */
+    boolean isOccupied(int parkingNumber);
+
+    void addOccupancyListener(OccupancyListener listener);
+
+    void removeOccupancyListener(OccupancyListener listener);
+}
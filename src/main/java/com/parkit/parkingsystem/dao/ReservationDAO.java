@@ -0,0 +1,120 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.model.Reservation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class ReservationDAO {
+
+    private static final Logger logger = LogManager.getLogger("ReservationDAO");
+
+    private static final OperationMetrics SAVE_RESERVATION_METRICS = Metrics.operation("ReservationDAO.saveReservation");
+    private static final OperationMetrics DELETE_RESERVATION_METRICS = Metrics.operation("ReservationDAO.deleteReservation");
+    private static final OperationMetrics GET_RESERVATIONS_METRICS = Metrics.operation("ReservationDAO.getReservationsEndingAfter");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    /**
+     * Stores a new reservation and sets its ID.
+     */
+    public boolean saveReservation(Reservation reservation){
+        long start = System.nanoTime();
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet generatedKeys = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.SAVE_RESERVATION, Statement.RETURN_GENERATED_KEYS);
+            ps.setInt(1, reservation.getParkingNumber());
+            ps.setString(2, reservation.getVehicleRegNumber());
+            ps.setTimestamp(3, new Timestamp(reservation.getStartMillis()));
+            ps.setTimestamp(4, new Timestamp(reservation.getEndMillis()));
+            int updateRowCount = ps.executeUpdate();
+            SAVE_RESERVATION_METRICS.recordRows(updateRowCount);
+            generatedKeys = ps.getGeneratedKeys();
+            if(generatedKeys.next()){
+                reservation.setId(generatedKeys.getInt(1));
+            }
+            return updateRowCount == 1;
+        }catch (Exception ex){
+            logger.error("Error saving reservation", ex);
+            SAVE_RESERVATION_METRICS.recordError();
+            return false;
+        }finally {
+            dataBaseConfig.closeResultSet(generatedKeys);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+            SAVE_RESERVATION_METRICS.record(start);
+        }
+    }
+
+    public boolean deleteReservation(Reservation reservation){
+        long start = System.nanoTime();
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.DELETE_RESERVATION);
+            ps.setInt(1, reservation.getId());
+            int updateRowCount = ps.executeUpdate();
+            DELETE_RESERVATION_METRICS.recordRows(updateRowCount);
+            return updateRowCount == 1;
+        }catch (Exception ex){
+            logger.error("Error deleting reservation", ex);
+            DELETE_RESERVATION_METRICS.recordError();
+            return false;
+        }finally {
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+            DELETE_RESERVATION_METRICS.record(start);
+        }
+    }
+
+    /**
+     * @return the reservations still running or to come at time, or null on error
+     */
+    public List<Reservation> getReservationsEndingAfter(Date time){
+        long start = System.nanoTime();
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_RESERVATIONS_ENDING_AFTER);
+            ps.setTimestamp(1, new Timestamp(time.getTime()));
+            rs = ps.executeQuery();
+            List<Reservation> reservations = new ArrayList<>();
+            while(rs.next()){
+                Reservation reservation = new Reservation(rs.getInt(2), ParkingType.valueOf(rs.getString(3)), rs.getString(4),
+                        rs.getTimestamp(5), rs.getTimestamp(6));
+                reservation.setId(rs.getInt(1));
+                reservations.add(reservation);
+            }
+            GET_RESERVATIONS_METRICS.recordRows(reservations.size());
+            return reservations;
+        }catch (Exception ex){
+            logger.error("Error loading reservations", ex);
+            GET_RESERVATIONS_METRICS.recordError();
+            return null;
+        }finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+            GET_RESERVATIONS_METRICS.record(start);
+        }
+    }
+}
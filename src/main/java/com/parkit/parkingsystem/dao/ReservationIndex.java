@@ -0,0 +1,269 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * In-memory calendar of the reservations of each spot, a TreeMap by start time per spot.
+ * The reservations of a spot never overlap, so they are in end time order too, and "is this spot free over
+ * [from, to)" only needs the last reservation starting before to: one O(log n) lookup.
+ * The spots of a type are the leaves of a tree keeping the earliest end of the last booking and the latest
+ * start of the first booking below each node, so reserve finds the lowest spot with no booking left of from
+ * or none right of to in O(log spots). Each type has its own lock, so car and bike bookings never wait on each other.
+ */
+public class ReservationIndex {
+
+    //the calendars of the spots of one type, guarded by its own monitor
+    private static final class TypeCalendars {
+        //sorted, the position of a spot is its leaf
+        private final int[] numbers;
+        private final List<TreeMap<Long, Reservation>> calendars = new ArrayList<>();
+        private final int leaves;
+        //heap layout, node i has the children 2i and 2i+1 and the leaves start at index leaves
+        private final long[] minLastEnd;
+        private final long[] maxFirstStart;
+
+        private TypeCalendars(int[] numbers) {
+            this.numbers = numbers;
+            int size = 1;
+            while(size < numbers.length){
+                size <<= 1;
+            }
+            leaves = size;
+            minLastEnd = new long[2 * size];
+            maxFirstStart = new long[2 * size];
+            //the padding leaves never match, the spots start with an empty calendar
+            Arrays.fill(minLastEnd, Long.MAX_VALUE);
+            Arrays.fill(maxFirstStart, Long.MIN_VALUE);
+            for(int i = 0; i < numbers.length; i++){
+                calendars.add(new TreeMap<Long, Reservation>());
+                update(i);
+            }
+        }
+
+        private TreeMap<Long, Reservation> calendar(int parkingNumber) {
+            int position = Arrays.binarySearch(numbers, parkingNumber);
+            return (position < 0) ? null : calendars.get(position);
+        }
+
+        /**
+         * Brings the leaf of the spot at this position and its ancestors up to date with its calendar.
+         */
+        private void update(int position) {
+            TreeMap<Long, Reservation> calendar = calendars.get(position);
+            int node = leaves + position;
+            minLastEnd[node] = calendar.isEmpty() ? Long.MIN_VALUE : calendar.lastEntry().getValue().getEndMillis();
+            maxFirstStart[node] = calendar.isEmpty() ? Long.MAX_VALUE : calendar.firstKey();
+            for(node >>>= 1; node > 0; node >>>= 1){
+                minLastEnd[node] = Math.min(minLastEnd[2 * node], minLastEnd[2 * node + 1]);
+                maxFirstStart[node] = Math.max(maxFirstStart[2 * node], maxFirstStart[2 * node + 1]);
+            }
+        }
+
+        private boolean mayMatch(int node, long fromMillis, long toMillis) {
+            return minLastEnd[node] <= fromMillis || maxFirstStart[node] >= toMillis;
+        }
+
+        /**
+         * @return the lowest position from fromPosition on whose bookings all end by fromMillis or all start
+         * from toMillis, or -1
+         */
+        private int firstClearOf(int fromPosition, long fromMillis, long toMillis) {
+            return firstClearOf(1, 0, leaves, fromPosition, fromMillis, toMillis);
+        }
+
+        private int firstClearOf(int node, int low, int high, int fromPosition, long fromMillis, long toMillis) {
+            if(high <= fromPosition || !mayMatch(node, fromMillis, toMillis)){
+                return -1;
+            }
+            if(high - low == 1){
+                return low;
+            }
+            int middle = (low + high) >>> 1;
+            int position = firstClearOf(2 * node, low, middle, fromPosition, fromMillis, toMillis);
+            return (position >= 0) ? position : firstClearOf(2 * node + 1, middle, high, fromPosition, fromMillis, toMillis);
+        }
+    }
+
+    private final Map<ParkingType, TypeCalendars> calendarsByType = new EnumMap<>(ParkingType.class);
+    private final Map<Integer, TypeCalendars> calendarsBySpot = new HashMap<>();
+    private final ConcurrentHashMap<String, List<Reservation>> reservationsByPlate = new ConcurrentHashMap<>();
+
+    public ReservationIndex(Iterable<ParkingSpot> parkingSpots) {
+        Map<ParkingType, List<Integer>> numbers = new EnumMap<>(ParkingType.class);
+        Map<Integer, ParkingType> spotTypes = new HashMap<>();
+        for(ParkingType parkingType : ParkingType.values()){
+            numbers.put(parkingType, new ArrayList<Integer>());
+        }
+        for(ParkingSpot parkingSpot : parkingSpots){
+            if(spotTypes.put(parkingSpot.getId(), parkingSpot.getParkingType()) == null){
+                numbers.get(parkingSpot.getParkingType()).add(parkingSpot.getId());
+            }
+        }
+        for(Map.Entry<ParkingType, List<Integer>> type : numbers.entrySet()){
+            Collections.sort(type.getValue());
+            int[] spots = new int[type.getValue().size()];
+            for(int i = 0; i < spots.length; i++){
+                spots[i] = type.getValue().get(i);
+            }
+            calendarsByType.put(type.getKey(), new TypeCalendars(spots));
+        }
+        for(Map.Entry<Integer, ParkingType> spot : spotTypes.entrySet()){
+            calendarsBySpot.put(spot.getKey(), calendarsByType.get(spot.getValue()));
+        }
+    }
+
+    /**
+     * @return false if the spot is booked at some point of [fromMillis, toMillis) or does not exist
+     */
+    public boolean isFree(int parkingNumber, long fromMillis, long toMillis) {
+        TypeCalendars type = calendarsBySpot.get(parkingNumber);
+        if(type == null){
+            return false;
+        }
+        synchronized (type){
+            return isFree(type.calendar(parkingNumber), fromMillis, toMillis);
+        }
+    }
+
+    private static boolean isFree(TreeMap<Long, Reservation> calendar, long fromMillis, long toMillis) {
+        Map.Entry<Long, Reservation> last = calendar.lowerEntry(toMillis);
+        return last == null || last.getValue().getEndMillis() <= fromMillis;
+    }
+
+    /**
+     * Adds a reservation already made, such as one read back from the database.
+     * @return false if it overlaps another reservation of its spot or the spot does not exist
+     */
+    public boolean add(Reservation reservation) {
+        TypeCalendars type = calendarsBySpot.get(reservation.getParkingNumber());
+        if(type == null){
+            return false;
+        }
+        synchronized (type){
+            int position = Arrays.binarySearch(type.numbers, reservation.getParkingNumber());
+            TreeMap<Long, Reservation> calendar = type.calendars.get(position);
+            if(!isFree(calendar, reservation.getStartMillis(), reservation.getEndMillis())){
+                return false;
+            }
+            calendar.put(reservation.getStartMillis(), reservation);
+            type.update(position);
+        }
+        addToPlate(reservation);
+        return true;
+    }
+
+    /**
+     * Books the lowest numbered spot of this type whose bookings all end by from or all start from to.
+     * Only when there is none is the period fitted between two bookings of a spot, which takes a scan of the type.
+     * @param allowed may be null to accept any spot
+     * @return the new reservation, without ID, or null if every allowed spot of the type is booked at some point of the period
+     */
+    public Reservation reserve(String vehicleRegNumber, ParkingType parkingType, Date from, Date to, IntPredicate allowed) {
+        TypeCalendars type = calendarsByType.get(parkingType);
+        long fromMillis = from.getTime();
+        long toMillis = to.getTime();
+        synchronized (type){
+            int position = type.firstClearOf(0, fromMillis, toMillis);
+            while(position >= 0 && allowed != null && !allowed.test(type.numbers[position])){
+                position = type.firstClearOf(position + 1, fromMillis, toMillis);
+            }
+            if(position < 0){
+                for(int i = 0; i < type.numbers.length; i++){
+                    if(isFree(type.calendars.get(i), fromMillis, toMillis) && (allowed == null || allowed.test(type.numbers[i]))){
+                        position = i;
+                        break;
+                    }
+                }
+            }
+            if(position < 0){
+                return null;
+            }
+            Reservation reservation = new Reservation(type.numbers[position], parkingType, vehicleRegNumber, from, to);
+            type.calendars.get(position).put(reservation.getStartMillis(), reservation);
+            type.update(position);
+            addToPlate(reservation);
+            return reservation;
+        }
+    }
+
+    public boolean remove(Reservation reservation) {
+        TypeCalendars type = calendarsBySpot.get(reservation.getParkingNumber());
+        if(type == null){
+            return false;
+        }
+        synchronized (type){
+            int position = Arrays.binarySearch(type.numbers, reservation.getParkingNumber());
+            if(!type.calendars.get(position).remove(reservation.getStartMillis(), reservation)){
+                return false;
+            }
+            type.update(position);
+        }
+        reservationsByPlate.computeIfPresent(reservation.getVehicleRegNumber(), (plate, reservations) -> {
+            List<Reservation> remaining = new ArrayList<>(reservations);
+            remaining.remove(reservation);
+            return remaining.isEmpty() ? null : remaining;
+        });
+        return true;
+    }
+
+    /**
+     * @return the reservation of the vehicle running at timeMillis or starting at most earlyMillis later, or null
+     */
+    public Reservation getReservation(String vehicleRegNumber, long timeMillis, long earlyMillis) {
+        List<Reservation> reservations = reservationsByPlate.get(vehicleRegNumber);
+        if(reservations != null){
+            for(Reservation reservation : reservations){
+                if(reservation.getStartMillis() - earlyMillis <= timeMillis && timeMillis < reservation.getEndMillis()){
+                    return reservation;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the reservations ended by timeMillis.
+     * @return the number removed
+     */
+    public int removeEndedBefore(long timeMillis) {
+        List<Reservation> ended = new ArrayList<>();
+        for(TypeCalendars type : calendarsByType.values()){
+            synchronized (type){
+                for(TreeMap<Long, Reservation> calendar : type.calendars){
+                    for(Reservation reservation : calendar.values()){
+                        if(reservation.getEndMillis() > timeMillis){
+                            break;
+                        }
+                        ended.add(reservation);
+                    }
+                }
+            }
+        }
+        for(Reservation reservation : ended){
+            remove(reservation);
+        }
+        return ended.size();
+    }
+
+    private void addToPlate(Reservation reservation) {
+        reservationsByPlate.compute(reservation.getVehicleRegNumber(), (plate, reservations) -> {
+            List<Reservation> updated = (reservations == null) ? new ArrayList<Reservation>() : new ArrayList<>(reservations);
+            updated.add(reservation);
+            return updated;
+        });
+    }
+}
@@ -3,6 +3,8 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import org.apache.logging.log4j.LogManager;
@@ -11,92 +13,396 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
 
-public class TicketDAO {
+public class TicketDAO implements TicketRepository {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    private static final OperationMetrics SAVE_TICKET_METRICS = Metrics.operation("TicketDAO.saveTicket");
+    private static final OperationMetrics GET_TICKET_METRICS = Metrics.operation("TicketDAO.getTicket");
+    private static final OperationMetrics UPDATE_TICKET_METRICS = Metrics.operation("TicketDAO.updateTicket");
+    private static final OperationMetrics GET_NB_TICKET_METRICS = Metrics.operation("TicketDAO.getNbTicket");
+    private static final OperationMetrics LOAD_OPEN_TICKETS_METRICS = Metrics.operation("TicketDAO.loadOpenTickets");
+    private static final OperationMetrics EXIT_VEHICLE_METRICS = Metrics.operation("TicketDAO.exitVehicle");
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    private final OpenTicketCache openTicketCache = new OpenTicketCache();
+    private volatile boolean openTicketsLoaded;
+
+    private final VisitCounter visitCounter = new VisitCounter();
+    //a count read from the table is only seeded when no insert of a plate of the same stripe ran meanwhile,
+    //so the counter never misses or doubles a ticket
+    private final PlateStripe[] plateStripes = new PlateStripe[64];
+
+    //guarded by its own monitor, which is only held for memory updates, never across a database call
+    private static final class PlateStripe {
+        private long insertsStarted;
+        private int insertsInFlight;
+    }
+
+    private volatile TicketWriteBehind writeBehind;
+
+    public TicketDAO(){
+        for(int i = 0; i < plateStripes.length; i++){
+            plateStripes[i] = new PlateStripe();
+        }
+    }
+
+    /**
+     * Switches saveTicket and updateTicket to write-behind: tickets are queued and committed in batches
+     * of batchSize, or after maxDelayMillis, and the listener is told once each batch is durable.
+     */
+    public synchronized void enableWriteBehind(int batchSize, long maxDelayMillis, final TicketWriteBehind.FlushListener listener){
+        disableWriteBehind();
+        writeBehind = new TicketWriteBehind(dataBaseConfig, batchSize, maxDelayMillis, new TicketWriteBehind.FlushListener() {
+            @Override
+            public void onFlushed(List<Ticket> tickets) {
+                for(Ticket ticket : tickets){
+                    openTicketCache.assignId(ticket);
+                }
+                if(listener != null){
+                    listener.onFlushed(tickets);
+                }
+            }
+
+            @Override
+            public void onFlushFailed(List<Ticket> tickets, Exception e) {
+                for(Ticket ticket : tickets){
+                    //a ticket never written must not be found open nor counted
+                    if(ticket.getOutTime() == null){
+                        openTicketCache.remove(ticket);
+                    }
+                    visitCounter.forget(ticket.getVehicleRegNumber());
+                }
+                if(listener != null){
+                    listener.onFlushFailed(tickets, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes out anything still queued and goes back to writing each ticket immediately.
+     */
+    public synchronized void disableWriteBehind(){
+        if(writeBehind != null){
+            writeBehind.close();
+            writeBehind = null;
+        }
+    }
+
+    /**
+     * @return false if some queued ticket write was given up
+     */
+    public boolean flushWrites(){
+        TicketWriteBehind queue = writeBehind;
+        return queue == null || queue.flush();
+    }
+
+    @Override
     public boolean saveTicket(Ticket ticket){
-        Connection con = null;
+        long start = System.nanoTime();
         try {
-            con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
-            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-            //ps.setInt(1,ticket.getId());
-            ps.setInt(1,ticket.getParkingSpot().getId());
-            ps.setString(2, ticket.getVehicleRegNumber());
-            ps.setDouble(3, ticket.getPrice());
-            ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
-            ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new Timestamp(ticket.getOutTime().getTime())) );
-            return ps.execute();
-        }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
-        }finally {
-            dataBaseConfig.closeConnection(con);
-        }
+            TicketWriteBehind queue = writeBehind;
+            PlateStripe stripe = plateStripe(ticket.getVehicleRegNumber());
+            if(queue != null){
+                if(ticket.getParkingSpot() == null || ticket.getInTime() == null){
+                    logger.error("Error saving ticket info: incomplete ticket for " + ticket.getVehicleRegNumber());
+                    SAVE_TICKET_METRICS.recordError();
+                    return false;
+                }
+                synchronized (stripe){
+                    if(ticket.getOutTime() == null && (openTicketCache.get(ticket.getVehicleRegNumber()) != null
+                            || queue.hasPendingInsert(ticket.getVehicleRegNumber()))){
+                        logger.error("Error saving ticket info: vehicle " + ticket.getVehicleRegNumber() + " already has an open ticket");
+                        SAVE_TICKET_METRICS.recordError();
+                        return false;
+                    }
+                    queue.enqueueInsert(ticket);
+                    stripe.insertsStarted++;
+                    SAVE_TICKET_METRICS.recordRows(1);
+                    visitCounter.incrementIfPresent(ticket.getVehicleRegNumber());
+                    if(ticket.getOutTime() == null){
+                        openTicketCache.put(ticket);
+                    }
+                    return true;
+                }
+            }
+            Connection con = null;
+            PreparedStatement ps = null;
+            boolean saved = false;
+            synchronized (stripe){
+                stripe.insertsStarted++;
+                stripe.insertsInFlight++;
+            }
+            try {
+                con = dataBaseConfig.getConnection();
+                boolean open = ticket.getOutTime() == null;
+                ps = con.prepareStatement(open ? DBConstants.SAVE_OPEN_TICKET : DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+                //ps.setInt(1,ticket.getId());
+                ps.setInt(1,ticket.getParkingSpot().getId());
+                ps.setString(2, ticket.getVehicleRegNumber());
+                ps.setDouble(3, ticket.getPrice());
+                ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+                if(open){
+                    ps.setString(5, ticket.getVehicleRegNumber());
+                }else{
+                    ps.setTimestamp(5, new Timestamp(ticket.getOutTime().getTime()));
+                }
+                int updateRowCount = ps.executeUpdate();
+                SAVE_TICKET_METRICS.recordRows(updateRowCount);
+                if(updateRowCount != 1){
+                    logger.error("Error saving ticket info: vehicle " + ticket.getVehicleRegNumber() + " already has an open ticket");
+                    SAVE_TICKET_METRICS.recordError();
+                    return false;
+                }
+                ResultSet generatedKeys = ps.getGeneratedKeys();
+                if(generatedKeys.next()){
+                    ticket.setId(generatedKeys.getInt(1));
+                }
+                dataBaseConfig.closeResultSet(generatedKeys);
+                saved = true;
+                return true;
+            }catch (Exception ex){
+                logger.error("Error saving ticket info",ex);
+                SAVE_TICKET_METRICS.recordError();
+            }finally {
+                dataBaseConfig.closePreparedStatement(ps);
+                dataBaseConfig.closeConnection(con);
+                synchronized (stripe){
+                    stripe.insertsInFlight--;
+                    if(saved){
+                        visitCounter.incrementIfPresent(ticket.getVehicleRegNumber());
+                        if(ticket.getOutTime() == null){
+                            openTicketCache.put(ticket);
+                        }
+                    }
+                }
+            }
             return false;
+        } finally {
+            SAVE_TICKET_METRICS.record(start);
         }
-    
+    }
+
 
+    @Override
     public Ticket getTicket(String vehicleRegNumber) {
-        Connection con = null;
-        Ticket ticket = null;
+        long start = System.nanoTime();
         try {
-            con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
-            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-            ps.setString(1,vehicleRegNumber);
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                ticket = new Ticket();
-                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setId(rs.getInt(2));
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(rs.getDouble(3));
-                ticket.setInTime(rs.getTimestamp(4));
-                ticket.setOutTime(rs.getTimestamp(5));
+            Ticket cachedTicket = getOpenTicketCache().get(vehicleRegNumber);
+            if(cachedTicket != null){
+                GET_TICKET_METRICS.recordRows(1);
+                return cachedTicket;
             }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
-        }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
-        }finally {
-            dataBaseConfig.closeConnection(con);
-        }
-            return ticket;
+            Connection con = null;
+            Ticket ticket = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
+                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+                ps.setString(1,vehicleRegNumber);
+                ResultSet rs = ps.executeQuery();
+                if(rs.next()){
+                    ticket = toTicket(rs, vehicleRegNumber);
+                    GET_TICKET_METRICS.recordRows(1);
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+            }catch (Exception ex){
+                logger.error("Error fetching next available slot",ex);
+                GET_TICKET_METRICS.recordError();
+            }finally {
+                dataBaseConfig.closeConnection(con);
+            }
+                return ticket;
+        } finally {
+            GET_TICKET_METRICS.record(start);
         }
-    
+    }
 
+
+    @Override
     public boolean updateTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        try {
+            TicketWriteBehind queue = writeBehind;
+            if(queue != null){
+                if(ticket.getOutTime() == null){
+                    logger.error("Error saving ticket info: no out time for " + ticket.getVehicleRegNumber());
+                    UPDATE_TICKET_METRICS.recordError();
+                    return false;
+                }
+                if(!queue.enqueueUpdate(ticket)){
+                    //its insert was committed after the ticket was read: the cache has the ID by now
+                    Ticket cached = openTicketCache.get(ticket.getVehicleRegNumber());
+                    if(cached == null || cached.getId() == 0 || !cached.getInTime().equals(ticket.getInTime())){
+                        logger.error("Error saving ticket info: no ticket ID for " + ticket.getVehicleRegNumber());
+                        UPDATE_TICKET_METRICS.recordError();
+                        return false;
+                    }
+                    ticket.setId(cached.getId());
+                    queue.enqueueUpdate(ticket);
+                }
+                UPDATE_TICKET_METRICS.recordRows(1);
+                openTicketCache.remove(ticket);
+                return true;
+            }
+            Connection con = null;
+            PreparedStatement ps = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
+                ps.setDouble(1, ticket.getPrice());
+                ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+                ps.setInt(3,ticket.getId());
+                ps.execute();
+                UPDATE_TICKET_METRICS.recordRows(ps.getUpdateCount());
+                openTicketCache.remove(ticket);
+                return true;
+            }catch (Exception ex){
+                logger.error("Error saving ticket info",ex);
+                UPDATE_TICKET_METRICS.recordError();
+            }finally {
+                dataBaseConfig.closePreparedStatement(ps);
+                dataBaseConfig.closeConnection(con);
+            }
+            return false;
+        } finally {
+            UPDATE_TICKET_METRICS.record(start);
+        }
+    }
+
+    /**
+     * Closes the open ticket of this vehicle and frees its parking spot in a single transaction.
+     * The ticket and visit count come from memory when cached, otherwise from one locking query.
+     * @return the closed ticket, or null if the vehicle has no open ticket or the exit could not be recorded
+     */
+    @Override
+    public Ticket exitVehicle(String vehicleRegNumber, Date outTime, ExitPricing pricing){
+        long start = System.nanoTime();
+        //a ticket still queued for write-behind needs its ID before it can be closed
+        TicketWriteBehind queue = writeBehind;
+        if(queue != null && queue.hasPendingInsert(vehicleRegNumber)){
+            queue.flush();
+        }
         Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        long insertsStarted = insertsStartedBeforeCount(vehicleRegNumber);
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
+            con.setAutoCommit(false);
+            Ticket ticket = getOpenTicketCache().get(vehicleRegNumber);
+            int ticketsCount = visitCounter.get(vehicleRegNumber);
+            if(ticket == null || ticket.getId() == 0 || ticketsCount == VisitCounter.UNKNOWN){
+                ps = con.prepareStatement(DBConstants.GET_OPEN_TICKET_FOR_UPDATE);
+                ps.setString(1, vehicleRegNumber);
+                rs = ps.executeQuery();
+                if(!rs.next()){
+                    con.rollback();
+                    logger.error("No open ticket for vehicle " + vehicleRegNumber);
+                    return null;
+                }
+                ticket = toTicket(rs, vehicleRegNumber);
+                ticketsCount = rs.getInt(7);
+                dataBaseConfig.closeResultSet(rs);
+                rs = null;
+                dataBaseConfig.closePreparedStatement(ps);
+            }
+            ticket.setOutTime(outTime);
+            pricing.price(ticket, ticketsCount);
+
+            ps = con.prepareStatement(DBConstants.CLOSE_TICKET);
             ps.setDouble(1, ticket.getPrice());
-            ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
-            ps.setInt(3,ticket.getId());
-            ps.execute();
-            return true;
+            ps.setTimestamp(2, new Timestamp(outTime.getTime()));
+            ps.setInt(3, ticket.getId());
+            if(ps.executeUpdate() != 1){
+                //closed by another gate since it was read
+                con.rollback();
+                openTicketCache.remove(ticket);
+                logger.error("Ticket " + ticket.getId() + " of vehicle " + vehicleRegNumber + " is already closed");
+                EXIT_VEHICLE_METRICS.recordError();
+                return null;
+            }
+            dataBaseConfig.closePreparedStatement(ps);
+            ps = con.prepareStatement(DBConstants.RELEASE_PARKING_SPOT);
+            ps.setInt(1, ticket.getParkingSpot().getId());
+            ps.executeUpdate();
+            con.commit();
+            EXIT_VEHICLE_METRICS.recordRows(2);
+
+            openTicketCache.remove(ticket);
+            ticket.getParkingSpot().setAvailable(true);
+            seedCount(vehicleRegNumber, ticketsCount, insertsStarted);
+            return ticket;
         }catch (Exception ex){
-            logger.error("Error saving ticket info",ex);
+            logger.error("Error recording vehicle exit",ex);
+            EXIT_VEHICLE_METRICS.recordError();
+            rollback(con);
+            return null;
         }finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
+            EXIT_VEHICLE_METRICS.record(start);
         }
-        return false;
     }
-    
+
+    private void rollback(Connection con){
+        if(con != null){
+            try {
+                con.rollback();
+            } catch (Exception e) {
+                logger.error("Error rolling back vehicle exit", e);
+            }
+        }
+    }
+
+    @Override
     public int getNbTicket (String vehicleRegNumber){
+        long start = System.nanoTime();
+        try {
+            if(vehicleRegNumber == null){
+                return 0;
+            }
+            int ticketsCount = visitCounter.get(vehicleRegNumber);
+            if(ticketsCount != VisitCounter.UNKNOWN){
+                return ticketsCount;
+            }
+            long insertsStarted = insertsStartedBeforeCount(vehicleRegNumber);
+            //queued tickets must be in the table before it can be counted
+            flushWrites();
+            ticketsCount = countTickets(vehicleRegNumber);
+            if(ticketsCount == VisitCounter.UNKNOWN){
+                return 0;
+            }
+            seedCount(vehicleRegNumber, ticketsCount, insertsStarted);
+            return ticketsCount;
+        } finally {
+            GET_NB_TICKET_METRICS.record(start);
+        }
+    }
+
+    /**
+     * @return the tickets of the plate in the table, or VisitCounter.UNKNOWN when they could not be counted
+     */
+    private int countTickets(String vehicleRegNumber){
         Connection con = null;
-        int ticketsCount = 0;
+        int ticketsCount = VisitCounter.UNKNOWN;
 
         try {
             con = dataBaseConfig.getConnection();
             PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_TICKET);
             ps.setString(1, vehicleRegNumber);
+            ps.setString(2, vehicleRegNumber);
             ResultSet rs = ps.executeQuery();
             if (rs.next()){
                 ticketsCount = rs.getInt(1);
@@ -106,11 +412,103 @@ public class TicketDAO {
             dataBaseConfig.closePreparedStatement(ps);
         } catch (Exception ex){
             logger.error("Error counting tickets", ex);
+            GET_NB_TICKET_METRICS.recordError();
         } finally {
             dataBaseConfig.closeConnection(con);
         }
         return ticketsCount;
     }
 
-}
+    /**
+     * (Re)loads the open ticket cache with every ticket that has no OUT_TIME yet.
+     */
+    public boolean loadOpenTickets(){
+        long start = System.nanoTime();
+        try {
+            Connection con = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+                ResultSet rs = ps.executeQuery();
+                openTicketCache.clear();
+                while(rs.next()){
+                    openTicketCache.put(toTicket(rs, rs.getString(7)));
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+                openTicketsLoaded = true;
+                LOAD_OPEN_TICKETS_METRICS.recordRows(openTicketCache.size());
+                logger.info("Loaded " + openTicketCache.size() + " open tickets in memory");
+                return true;
+            }catch (Exception ex){
+                logger.error("Error loading open tickets",ex);
+                LOAD_OPEN_TICKETS_METRICS.recordError();
+                return false;
+            }finally {
+                dataBaseConfig.closeConnection(con);
+            }
+        } finally {
+            LOAD_OPEN_TICKETS_METRICS.record(start);
+        }
+    }
+
+    /**
+     * Forgets the cached visit counts, they are seeded again from the ticket table on next use.
+     */
+    public void clearVisitCounts(){
+        visitCounter.clear();
+    }
+
+    private OpenTicketCache getOpenTicketCache(){
+        if(!openTicketsLoaded){
+            synchronized (this){
+                if(!openTicketsLoaded){
+                    loadOpenTickets();
+                }
+            }
+        }
+        return openTicketCache;
+    }
 
+    private PlateStripe plateStripe(String vehicleRegNumber){
+        int hash = (vehicleRegNumber == null) ? 0 : vehicleRegNumber.hashCode();
+        return plateStripes[(hash ^ (hash >>> 16)) & (plateStripes.length - 1)];
+    }
+
+    /**
+     * @return the inserts started on the stripe of the plate, or -1 when one is still running and the
+     * count about to be read may or may not include it
+     */
+    private long insertsStartedBeforeCount(String vehicleRegNumber){
+        PlateStripe stripe = plateStripe(vehicleRegNumber);
+        synchronized (stripe){
+            return (stripe.insertsInFlight > 0) ? -1 : stripe.insertsStarted;
+        }
+    }
+
+    /**
+     * Seeds the visit count read from the table, unless an insert of the stripe started since
+     * insertsStartedBeforeCount: the count is then left to the next lookup.
+     */
+    private void seedCount(String vehicleRegNumber, int ticketsCount, long insertsStarted){
+        PlateStripe stripe = plateStripe(vehicleRegNumber);
+        synchronized (stripe){
+            if(insertsStarted == stripe.insertsStarted && visitCounter.get(vehicleRegNumber) == VisitCounter.UNKNOWN){
+                visitCounter.seed(vehicleRegNumber, ticketsCount);
+            }
+        }
+    }
+
+    private Ticket toTicket(ResultSet rs, String vehicleRegNumber) throws SQLException {
+        Ticket ticket = new Ticket();
+        ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setId(rs.getInt(2));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(rs.getDouble(3));
+        ticket.setInTime(rs.getTimestamp(4));
+        ticket.setOutTime(rs.getTimestamp(5));
+        return ticket;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Date;
+
+/**
+ * Storage of the tickets, in MySQL with TicketDAO or in memory with InMemoryTicketRepository.
+ */
+public interface TicketRepository {
+
+    /**
+     * Prices the ticket of an exiting vehicle, given the number of tickets of its plate, before it is closed.
+     */
+    interface ExitPricing {
+        void price(Ticket ticket, int ticketsCount);
+    }
+
+    /**
+     * Stores a new ticket and sets its ID.
+     * @return false if it could not be stored, or if it is open and the vehicle already has an open ticket
+     */
+    boolean saveTicket(Ticket ticket);
+
+    /**
+     * @return the open ticket of the vehicle, else its first ticket, or null if it has none
+     */
+    Ticket getTicket(String vehicleRegNumber);
+
+    /**
+     * Saves the price and out time of a stored ticket.
+     */
+    boolean updateTicket(Ticket ticket);
+
+    /**
+     * @return the number of tickets of the vehicle, the open one included
+     */
+    int getNbTicket(String vehicleRegNumber);
+
+    /**
+     * Closes the open ticket of this vehicle, priced by pricing, and frees its parking spot.
+     * @return the closed ticket, or null if the vehicle has no open ticket or the exit could not be recorded
+     */
+    Ticket exitVehicle(String vehicleRegNumber, Date outTime, ExitPricing pricing);
+}
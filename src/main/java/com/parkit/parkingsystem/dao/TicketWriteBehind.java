@@ -0,0 +1,416 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queues ticket inserts and updates and writes them as JDBC batches in a single transaction,
+ * once batchSize writes are pending or the oldest one has waited maxDelayMillis.
+ * When a batch fails, its writes are retried one by one so a single bad row does not hold back the others;
+ * a write that fails on its own is put back at the head of the queue and retried, up to MAX_ATTEMPTS times.
+ */
+public class TicketWriteBehind {
+
+    private static final Logger logger = LogManager.getLogger("TicketWriteBehind");
+
+    public static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 200;
+
+    public interface FlushListener {
+        /**
+         * Called once the tickets are committed. Inserted tickets carry their generated ID.
+         */
+        void onFlushed(List<Ticket> tickets);
+
+        /**
+         * Called once the tickets are given up after MAX_ATTEMPTS failed writes. Inserted tickets are back to ID 0.
+         */
+        void onFlushFailed(List<Ticket> tickets, Exception e);
+    }
+
+    private static final class PendingWrite {
+        private final Ticket ticket;
+        private final Ticket source;
+        private final boolean insert;
+        //for an update of a ticket read before its insert got an ID: the insert the ID will come from
+        private Ticket insertedTicket;
+        private long sequence;
+        private boolean taken;
+        private int attempts;
+
+        private PendingWrite(Ticket ticket, Ticket source, boolean insert) {
+            this.ticket = ticket;
+            this.source = source;
+            this.insert = insert;
+        }
+    }
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final FlushListener listener;
+    private final Thread writerThread;
+
+    private final Object lock = new Object();
+    private List<PendingWrite> pendingWrites = new ArrayList<>();
+    //latest insert of each plate not committed nor closed through this queue yet, so its update can find the ID
+    private final Map<String, PendingWrite> openInserts = new HashMap<>();
+    private long firstPendingAt;
+    private long retryAt;
+    private long enqueuedSequence;
+    //every write up to this one is committed or given up
+    private long completedSequence;
+    private long lastFailedSequence;
+    private boolean flushRequested;
+    private boolean closed;
+
+    public TicketWriteBehind(DataBaseConfig dataBaseConfig, int batchSize, long maxDelayMillis, FlushListener listener) {
+        if(batchSize <= 0 || maxDelayMillis <= 0){
+            throw new IllegalArgumentException("Batch size and delay must be positive");
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.listener = listener;
+        this.writerThread = new Thread(this::run, "ticket-write-behind");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues the insert of this ticket. Its generated ID is set on it once committed, and is visible
+     * to a thread after flush returns.
+     */
+    public void enqueueInsert(Ticket ticket) {
+        synchronized (lock) {
+            PendingWrite insert = new PendingWrite(copy(ticket), ticket, true);
+            openInserts.put(ticket.getVehicleRegNumber(), insert);
+            enqueue(insert);
+        }
+    }
+
+    /**
+     * @return false, with nothing queued, if the ticket has no ID and no insert of its plate is pending:
+     * the insert is committed and the caller must take the ID it received
+     */
+    public boolean enqueueUpdate(Ticket ticket) {
+        synchronized (lock) {
+            PendingWrite insert = (ticket.getId() == 0) ? openInserts.remove(ticket.getVehicleRegNumber()) : null;
+            if(ticket.getId() == 0 && insert == null){
+                return false;
+            }
+            if(insert != null && !insert.taken){
+                //the row is not written yet: let the insert carry the final values
+                insert.ticket.setPrice(ticket.getPrice());
+                insert.ticket.setOutTime(ticket.getOutTime());
+                return true;
+            }
+            PendingWrite update = new PendingWrite(copy(ticket), ticket, false);
+            if(insert != null){
+                update.insertedTicket = insert.ticket;
+            }
+            enqueue(update);
+            return true;
+        }
+    }
+
+    private void enqueue(PendingWrite write) {
+        if(closed){
+            throw new IllegalStateException("Write-behind queue is closed");
+        }
+        if(pendingWrites.isEmpty()){
+            firstPendingAt = System.currentTimeMillis();
+        }
+        write.sequence = ++enqueuedSequence;
+        pendingWrites.add(write);
+        //wake the writer to start the delay timer on the first write, and to flush on the size threshold
+        if(pendingWrites.size() == 1 || pendingWrites.size() >= batchSize){
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Writes everything queued so far and waits until it is committed or given up.
+     * @return true if all of it was committed, false if some of it was given up or the wait was interrupted
+     */
+    public boolean flush() {
+        synchronized (lock) {
+            long from = completedSequence;
+            long target = enqueuedSequence;
+            flushRequested = true;
+            lock.notifyAll();
+            while(completedSequence < target && writerThread.isAlive()){
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return completedSequence >= target && lastFailedSequence <= from;
+        }
+    }
+
+    /**
+     * @return true if this plate has an insert not committed yet
+     */
+    public boolean hasPendingInsert(String vehicleRegNumber) {
+        synchronized (lock) {
+            return openInserts.containsKey(vehicleRegNumber);
+        }
+    }
+
+    public void close() {
+        flush();
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pendingWrites.size();
+        }
+    }
+
+    private void run() {
+        while(true){
+            List<PendingWrite> batch;
+            synchronized (lock) {
+                try {
+                    while(!readyToWrite()){
+                        if(pendingWrites.isEmpty()){
+                            lock.wait();
+                        }else{
+                            long now = System.currentTimeMillis();
+                            long wakeAt = (now < retryAt) ? retryAt : firstPendingAt + maxDelayMillis;
+                            lock.wait(Math.max(1, wakeAt - now));
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if(pendingWrites.isEmpty()){
+                    flushRequested = false;
+                    if(closed){
+                        return;
+                    }
+                    continue;
+                }
+                batch = pendingWrites;
+                pendingWrites = new ArrayList<>();
+                flushRequested = false;
+                for(PendingWrite write : batch){
+                    write.taken = true;
+                }
+            }
+            Exception error = write(batch);
+            List<PendingWrite> failedWrites = new ArrayList<>();
+            if(error != null){
+                if(batch.size() == 1){
+                    failedWrites.add(batch.get(0));
+                }else {
+                    logger.error("Writing the " + batch.size() + " ticket writes of the failed batch one by one");
+                    for(PendingWrite write : batch){
+                        Exception writeError = write(Collections.singletonList(write));
+                        if(writeError != null){
+                            failedWrites.add(write);
+                            error = writeError;
+                        }
+                    }
+                }
+            }
+            List<PendingWrite> failed = new ArrayList<>();
+            List<PendingWrite> retries = new ArrayList<>();
+            synchronized (lock) {
+                for(PendingWrite write : batch){
+                    if(!failedWrites.contains(write)){
+                        //published under the lock flush waits on, so its caller sees the ID
+                        write.source.setId(write.ticket.getId());
+                        if(write.insert){
+                            openInserts.remove(write.ticket.getVehicleRegNumber(), write);
+                        }
+                    }
+                }
+                for(PendingWrite write : failedWrites){
+                    if(++write.attempts < MAX_ATTEMPTS){
+                        retries.add(write);
+                    }else {
+                        failed.add(write);
+                        if(write.insert){
+                            openInserts.remove(write.ticket.getVehicleRegNumber(), write);
+                        }
+                    }
+                }
+                if(!retries.isEmpty()){
+                    //the retried writes keep their place ahead of the ones queued since
+                    retries.addAll(pendingWrites);
+                    pendingWrites = retries;
+                    firstPendingAt = System.currentTimeMillis();
+                    retryAt = firstPendingAt + RETRY_DELAY_MILLIS;
+                    flushRequested = true;
+                }
+                if(failed.isEmpty()){
+                    complete();
+                }
+            }
+            if(!failed.isEmpty()){
+                logger.error("Giving up " + failed.size() + " ticket writes after " + MAX_ATTEMPTS + " attempts");
+                if(listener != null){
+                    List<Ticket> tickets = new ArrayList<>(failed.size());
+                    for(PendingWrite write : failed){
+                        tickets.add(write.ticket);
+                    }
+                    listener.onFlushFailed(tickets, error);
+                }
+                //the listener has run by the time flush returns
+                synchronized (lock) {
+                    lastFailedSequence = Math.max(lastFailedSequence, failed.get(failed.size() - 1).sequence);
+                    complete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves completedSequence up to the oldest write still queued, once the batch being written is done with.
+     * The queue is in sequence order, retried writes going back to its head.
+     */
+    private void complete() {
+        completedSequence = pendingWrites.isEmpty() ? enqueuedSequence : pendingWrites.get(0).sequence - 1;
+        lock.notifyAll();
+    }
+
+    private boolean readyToWrite() {
+        if(!pendingWrites.isEmpty() && System.currentTimeMillis() < retryAt){
+            return false;
+        }
+        return closed || flushRequested || pendingWrites.size() >= batchSize
+                || (!pendingWrites.isEmpty() && System.currentTimeMillis() - firstPendingAt >= maxDelayMillis);
+    }
+
+    /**
+     * @return null once the batch is committed, or the error it failed with
+     */
+    private Exception write(List<PendingWrite> batch) {
+        List<Ticket> tickets = new ArrayList<>(batch.size());
+        for(PendingWrite write : batch){
+            tickets.add(write.ticket);
+        }
+        Connection con = null;
+        PreparedStatement insertPs = null;
+        PreparedStatement updatePs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            List<PendingWrite> inserts = new ArrayList<>();
+            for(PendingWrite write : batch){
+                if(write.insert){
+                    if(insertPs == null){
+                        insertPs = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+                    }
+                    Ticket ticket = write.ticket;
+                    insertPs.setInt(1, ticket.getParkingSpot().getId());
+                    insertPs.setString(2, ticket.getVehicleRegNumber());
+                    insertPs.setDouble(3, ticket.getPrice());
+                    insertPs.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+                    insertPs.setTimestamp(5, (ticket.getOutTime() == null) ? null : new Timestamp(ticket.getOutTime().getTime()));
+                    insertPs.addBatch();
+                    inserts.add(write);
+                }
+            }
+            if(insertPs != null){
+                insertPs.executeBatch();
+                ResultSet generatedKeys = insertPs.getGeneratedKeys();
+                for(int i = 0; i < inserts.size() && generatedKeys.next(); i++){
+                    inserts.get(i).ticket.setId(generatedKeys.getInt(1));
+                }
+                dataBaseConfig.closeResultSet(generatedKeys);
+            }
+            for(PendingWrite write : batch){
+                if(!write.insert){
+                    if(updatePs == null){
+                        updatePs = con.prepareStatement(DBConstants.UPDATE_TICKET);
+                    }
+                    Ticket ticket = write.ticket;
+                    if(write.insertedTicket != null){
+                        if(write.insertedTicket.getId() == 0){
+                            throw new SQLException("Ticket of vehicle " + ticket.getVehicleRegNumber() + " is not inserted yet");
+                        }
+                        ticket.setId(write.insertedTicket.getId());
+                    }
+                    updatePs.setDouble(1, ticket.getPrice());
+                    updatePs.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+                    updatePs.setInt(3, ticket.getId());
+                    updatePs.addBatch();
+                }
+            }
+            if(updatePs != null){
+                updatePs.executeBatch();
+            }
+            con.commit();
+            logger.info("Committed " + batch.size() + " ticket writes");
+            if(listener != null){
+                listener.onFlushed(tickets);
+            }
+            return null;
+        }catch (Exception ex){
+            logger.error("Error writing ticket batch", ex);
+            rollback(con);
+            //the generated IDs were rolled back with the rows
+            for(PendingWrite write : batch){
+                if(write.insert){
+                    write.ticket.setId(0);
+                }
+            }
+            return ex;
+        }finally {
+            dataBaseConfig.closePreparedStatement(insertPs);
+            dataBaseConfig.closePreparedStatement(updatePs);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private void rollback(Connection con) {
+        if(con != null){
+            try {
+                con.rollback();
+            } catch (Exception e) {
+                logger.error("Error rolling back ticket batch", e);
+            }
+        }
+    }
+
+    private static Ticket copy(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setId(ticket.getId());
+        copy.setParkingSpot(ticket.getParkingSpot());
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTime(ticket.getInTime());
+        copy.setOutTime(ticket.getOutTime());
+        return copy;
+    }
+}
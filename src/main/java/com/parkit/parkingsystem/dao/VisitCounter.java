@@ -0,0 +1,92 @@
+package com.parkit.parkingsystem.dao;
+
+/**
+ * Number of tickets per vehicle registration number, kept in an open-addressing table
+ * of plates and primitive int counts so lookups cost one probe sequence and no boxing.
+ */
+public class VisitCounter {
+
+    public static final int UNKNOWN = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private String[] plates = new String[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @return the number of tickets of this plate, or UNKNOWN when it has not been seeded yet
+     */
+    public synchronized int get(String vehicleRegNumber) {
+        int slot = find(plates, vehicleRegNumber);
+        return (plates[slot] == null) ? UNKNOWN : counts[slot];
+    }
+
+    public synchronized void seed(String vehicleRegNumber, int count) {
+        int slot = find(plates, vehicleRegNumber);
+        if(plates[slot] == null){
+            plates[slot] = vehicleRegNumber;
+            size++;
+            if(size * 4 >= plates.length * 3){
+                resize();
+                slot = find(plates, vehicleRegNumber);
+            }
+        }
+        counts[slot] = count;
+    }
+
+    /**
+     * Counts one more ticket for this plate if it is already known. Unknown plates are
+     * left alone: their next lookup seeds them from the database, new ticket included.
+     */
+    public synchronized void incrementIfPresent(String vehicleRegNumber) {
+        int slot = find(plates, vehicleRegNumber);
+        if(plates[slot] != null && counts[slot] != UNKNOWN){
+            counts[slot]++;
+        }
+    }
+
+    /**
+     * Makes the count of this plate UNKNOWN again, so its next lookup reads it back from the database.
+     */
+    public synchronized void forget(String vehicleRegNumber) {
+        int slot = find(plates, vehicleRegNumber);
+        if(plates[slot] != null){
+            counts[slot] = UNKNOWN;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        plates = new String[INITIAL_CAPACITY];
+        counts = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    private void resize() {
+        String[] oldPlates = plates;
+        int[] oldCounts = counts;
+        plates = new String[oldPlates.length * 2];
+        counts = new int[oldCounts.length * 2];
+        for(int i = 0; i < oldPlates.length; i++){
+            if(oldPlates[i] != null){
+                int slot = find(plates, oldPlates[i]);
+                plates[slot] = oldPlates[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int find(String[] table, String vehicleRegNumber) {
+        int mask = table.length - 1;
+        int hash = vehicleRegNumber.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while(table[slot] != null && !table[slot].equals(vehicleRegNumber)){
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
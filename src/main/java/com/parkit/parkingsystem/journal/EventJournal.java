@@ -0,0 +1,256 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of gate events in a memory-mapped file of fixed-size records.
+ * The file is mapped one segment at a time and grows by a segment when the current one is full;
+ * the unused part of the last segment is zeros, which is where a reader stops.
+ * Appends only write to memory, the pages are forced to disk every forceInterval and on close.
+ * <pre>
+ * header, one record long: int magic, int version, int record size
+ * record: 0 byte type (written last), 1 byte parking type ordinal + 1, 2 byte flags, 3 byte plate length,
+ *         4 int parking number, 8 long sequence, 16 long timestamp, 24 long in time, 32 long out time,
+ *         40 long price, 48 plate in UTF-8
+ * </pre>
+ */
+public class EventJournal implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("EventJournal");
+
+    private static final OperationMetrics APPEND_METRICS = Metrics.operation("EventJournal.append");
+
+    static final int MAGIC = 0x504B4A31;
+    static final int VERSION = 1;
+    public static final int RECORD_SIZE = 64;
+    static final int MAX_PLATE_BYTES = 16;
+    public static final int DEFAULT_SEGMENT_RECORDS = 1 << 16;
+
+    static final byte ENTRY = 1;
+    static final byte EXIT = 2;
+    static final byte SPOT_CHANGE = 3;
+    static final int DISCOUNT_FLAG = 1;
+    static final int AVAILABLE_FLAG = 2;
+
+    private final FileChannel channel;
+    private final long segmentSize;
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long position;
+    private long sequence;
+    private volatile boolean dirty;
+    private boolean closed;
+    private final ScheduledExecutorService forceScheduler;
+
+    /**
+     * Opens the journal, creating it if needed, and appends after its last record.
+     * @param forceIntervalMillis how often appended records are forced to disk, 0 to only force on close
+     */
+    public EventJournal(String path, long forceIntervalMillis) throws IOException {
+        this(path, forceIntervalMillis, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    public EventJournal(String path, long forceIntervalMillis, int segmentRecords) throws IOException {
+        if(segmentRecords < 2){
+            throw new IllegalArgumentException("A segment holds at least two records: " + segmentRecords);
+        }
+        this.segmentSize = (long) segmentRecords * RECORD_SIZE;
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            map(0);
+            if(created){
+                segment.putInt(0, MAGIC);
+                segment.putInt(4, VERSION);
+                segment.putInt(8, RECORD_SIZE);
+                segment.force();
+                position = RECORD_SIZE;
+            }else {
+                checkHeader(segment.getInt(0), segment.getInt(4), segment.getInt(8), path);
+                seekEnd();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        logger.info("Event journal " + path + " opened at sequence " + sequence);
+        if(forceIntervalMillis > 0){
+            forceScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-force");
+                thread.setDaemon(true);
+                return thread;
+            });
+            forceScheduler.scheduleWithFixedDelay(this::forceQuietly, forceIntervalMillis, forceIntervalMillis, TimeUnit.MILLISECONDS);
+        }else {
+            forceScheduler = null;
+        }
+    }
+
+    static void checkHeader(int magic, int version, int recordSize, String path) throws IOException {
+        if(magic != MAGIC || version != VERSION || recordSize != RECORD_SIZE){
+            throw new IOException(path + " is not an event journal of version " + VERSION);
+        }
+    }
+
+    private void seekEnd() throws IOException {
+        long end = channel.size();
+        position = RECORD_SIZE;
+        while(position < end){
+            if(position >= segmentStart + segmentSize){
+                map(position);
+            }
+            int offset = (int) (position - segmentStart);
+            if(segment.get(offset) == 0){
+                break;
+            }
+            sequence = segment.getLong(offset + 8);
+            position += RECORD_SIZE;
+        }
+        if(position >= segmentStart + segmentSize){
+            map(position);
+        }
+    }
+
+    private void map(long start) throws IOException {
+        if(segment != null){
+            segment.force();
+        }
+        //mapping past the end of the file grows it, with zeros
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, start, segmentSize);
+        segmentStart = start;
+    }
+
+    /**
+     * A vehicle took a spot.
+     */
+    public long entry(String vehicleRegNumber, int parkingNumber, ParkingType parkingType, long inTime) {
+        return append(ENTRY, vehicleRegNumber, parkingNumber, parkingType, inTime, 0, 0, 0);
+    }
+
+    /**
+     * A vehicle left its spot and paid price, in FareEngine minor units.
+     */
+    public long exit(String vehicleRegNumber, int parkingNumber, ParkingType parkingType, long inTime, long outTime,
+                     long price, boolean discountApplied) {
+        return append(EXIT, vehicleRegNumber, parkingNumber, parkingType, inTime, outTime, price,
+                AVAILABLE_FLAG | (discountApplied ? DISCOUNT_FLAG : 0));
+    }
+
+    /**
+     * A spot was freed or taken outside of an entry or exit, e.g. given back after a failed entry.
+     */
+    public long spotChange(int parkingNumber, ParkingType parkingType, boolean available) {
+        return append(SPOT_CHANGE, null, parkingNumber, parkingType, 0, 0, 0, available ? AVAILABLE_FLAG : 0);
+    }
+
+    /**
+     * @return the sequence number of the event
+     */
+    private long append(byte type, String vehicleRegNumber, int parkingNumber, ParkingType parkingType,
+                        long inTime, long outTime, long price, int flags) {
+        long start = System.nanoTime();
+        try {
+            byte[] plate = (vehicleRegNumber == null) ? null : vehicleRegNumber.getBytes(StandardCharsets.UTF_8);
+            if(plate != null && plate.length > MAX_PLATE_BYTES){
+                throw new IllegalArgumentException("Vehicle registration number too long for the journal: " + vehicleRegNumber);
+            }
+            synchronized (this){
+                if(closed){
+                    throw new IllegalStateException("Event journal is closed");
+                }
+                if(position >= segmentStart + segmentSize){
+                    map(position);
+                }
+                int offset = (int) (position - segmentStart);
+                long eventSequence = ++sequence;
+                segment.put(offset + 1, (byte) (parkingType == null ? 0 : parkingType.ordinal() + 1));
+                segment.put(offset + 2, (byte) flags);
+                segment.put(offset + 3, (byte) (plate == null ? 0 : plate.length));
+                segment.putInt(offset + 4, parkingNumber);
+                segment.putLong(offset + 8, eventSequence);
+                segment.putLong(offset + 16, System.currentTimeMillis());
+                segment.putLong(offset + 24, inTime);
+                segment.putLong(offset + 32, outTime);
+                segment.putLong(offset + 40, price);
+                if(plate != null){
+                    for(int i = 0; i < plate.length; i++){
+                        segment.put(offset + 48 + i, plate[i]);
+                    }
+                }
+                //a reader stops at the first record without a type, so the type goes in once the rest is written
+                segment.put(offset, type);
+                position += RECORD_SIZE;
+                dirty = true;
+                return eventSequence;
+            }
+        } catch (IOException e) {
+            APPEND_METRICS.recordError();
+            throw new UncheckedIOException("Error growing the event journal", e);
+        } catch (RuntimeException e) {
+            APPEND_METRICS.recordError();
+            throw e;
+        } finally {
+            APPEND_METRICS.record(start);
+        }
+    }
+
+    /**
+     * Writes the appended records to disk.
+     */
+    public void force() {
+        MappedByteBuffer current;
+        synchronized (this){
+            if(closed || !dirty){
+                return;
+            }
+            dirty = false;
+            current = segment;
+        }
+        //outside the lock so the gates keep appending while the pages are written
+        current.force();
+    }
+
+    private void forceQuietly() {
+        try {
+            force();
+        } catch (RuntimeException e) {
+            logger.error("Error forcing the event journal to disk", e);
+        }
+    }
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(forceScheduler != null){
+            forceScheduler.shutdown();
+        }
+        synchronized (this){
+            if(closed){
+                return;
+            }
+            closed = true;
+            segment.force();
+            channel.close();
+        }
+        logger.info("Event journal closed at sequence " + sequence);
+    }
+}
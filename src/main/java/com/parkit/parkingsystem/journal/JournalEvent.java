@@ -0,0 +1,111 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * One record of the EventJournal, as read back by JournalReader.
+ */
+public final class JournalEvent {
+
+    public enum Type {
+        ENTRY,
+        EXIT,
+        SPOT_CHANGE
+    }
+
+    private final long sequence;
+    private final long timestamp;
+    private final Type type;
+    private final String vehicleRegNumber;
+    private final int parkingNumber;
+    private final ParkingType parkingType;
+    private final long inTime;
+    private final long outTime;
+    private final long price;
+    private final boolean discountApplied;
+    private final boolean available;
+
+    JournalEvent(long sequence, long timestamp, Type type, String vehicleRegNumber, int parkingNumber, ParkingType parkingType,
+                 long inTime, long outTime, long price, boolean discountApplied, boolean available) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+        this.inTime = inTime;
+        this.outTime = outTime;
+        this.price = price;
+        this.discountApplied = discountApplied;
+        this.available = available;
+    }
+
+    /**
+     * @return the position of the event in the journal, from 1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return when the event was written, in epoch millis
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the vehicle, or null for a SPOT_CHANGE
+     */
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public long getInTime() {
+        return inTime;
+    }
+
+    /**
+     * @return the out time of an EXIT, 0 otherwise
+     */
+    public long getOutTime() {
+        return outTime;
+    }
+
+    /**
+     * @return the fare of an EXIT in FareEngine minor units, 0 otherwise
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    public boolean isDiscountApplied() {
+        return discountApplied;
+    }
+
+    /**
+     * @return whether the spot is free after the event
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " " + vehicleRegNumber + " spot=" + parkingNumber + " " + parkingType
+                + " in=" + inTime + " out=" + outTime + " price=" + price + " discount=" + discountApplied
+                + " available=" + available;
+    }
+}
@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replays an EventJournal in sequence order, e.g. to rebuild the occupied spots without querying the database.
+ * The journal may be open for appends at the same time; replay stops at the last complete record.
+ */
+public class JournalReader {
+
+    private static final int RECORDS_PER_READ = 1024;
+
+    public interface EventHandler {
+        void onEvent(JournalEvent event);
+    }
+
+    private final String path;
+
+    public JournalReader(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @return the number of events replayed
+     */
+    public long replay(EventHandler handler) throws IOException {
+        return replay(1, handler);
+    }
+
+    /**
+     * Replays the events from fromSequence on.
+     * @return the number of events replayed
+     */
+    public long replay(long fromSequence, EventHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(EventJournal.RECORD_SIZE * RECORDS_PER_READ);
+            long filePosition = 0;
+            if(!fill(channel, buffer, filePosition)){
+                return 0;
+            }
+            EventJournal.checkHeader(buffer.getInt(0), buffer.getInt(4), buffer.getInt(8), path);
+            //records are at fixed offsets, so the first one wanted can be read directly
+            filePosition = EventJournal.RECORD_SIZE * Math.max(1, fromSequence);
+            long replayed = 0;
+            while(fill(channel, buffer, filePosition)){
+                for(int offset = 0; offset + EventJournal.RECORD_SIZE <= buffer.limit(); offset += EventJournal.RECORD_SIZE){
+                    JournalEvent event = read(buffer, offset);
+                    if(event == null){
+                        return replayed;
+                    }
+                    handler.onEvent(event);
+                    replayed++;
+                }
+                filePosition += buffer.limit();
+            }
+            return replayed;
+        }
+    }
+
+    private static boolean fill(FileChannel channel, ByteBuffer buffer, long filePosition) throws IOException {
+        buffer.clear();
+        while(buffer.hasRemaining()){
+            int read = channel.read(buffer, filePosition + buffer.position());
+            if(read < 0){
+                break;
+            }
+        }
+        buffer.flip();
+        //a record cut by the end of the file is ignored
+        buffer.limit(buffer.limit() - buffer.limit() % EventJournal.RECORD_SIZE);
+        return buffer.limit() > 0;
+    }
+
+    private static JournalEvent read(ByteBuffer buffer, int offset) {
+        byte type = buffer.get(offset);
+        if(type == 0){
+            return null;
+        }
+        int parkingType = buffer.get(offset + 1);
+        int flags = buffer.get(offset + 2);
+        int plateLength = buffer.get(offset + 3);
+        String vehicleRegNumber = null;
+        if(type != EventJournal.SPOT_CHANGE){
+            byte[] plate = new byte[plateLength];
+            for(int i = 0; i < plateLength; i++){
+                plate[i] = buffer.get(offset + 48 + i);
+            }
+            vehicleRegNumber = new String(plate, StandardCharsets.UTF_8);
+        }
+        return new JournalEvent(buffer.getLong(offset + 8), buffer.getLong(offset + 16), toType(type), vehicleRegNumber,
+                buffer.getInt(offset + 4), parkingType == 0 ? null : ParkingType.values()[parkingType - 1],
+                buffer.getLong(offset + 24), buffer.getLong(offset + 32), buffer.getLong(offset + 40),
+                (flags & EventJournal.DISCOUNT_FLAG) != 0, (flags & EventJournal.AVAILABLE_FLAG) != 0);
+    }
+
+    private static JournalEvent.Type toType(byte type) {
+        switch(type){
+            case EventJournal.ENTRY:
+                return JournalEvent.Type.ENTRY;
+            case EventJournal.EXIT:
+                return JournalEvent.Type.EXIT;
+            case EventJournal.SPOT_CHANGE:
+                return JournalEvent.Type.SPOT_CHANGE;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registry of the operation metrics of the application, one entry per "Class.method".
+ */
+public final class Metrics {
+
+    private static final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the metrics of this operation, created on first use. Callers keep the instance in a static field.
+     */
+    public static OperationMetrics operation(String name) {
+        return operations.computeIfAbsent(name, OperationMetrics::new);
+    }
+
+    /**
+     * @return a snapshot of every operation, sorted by name
+     */
+    public static List<OperationSnapshot> snapshot() {
+        List<OperationSnapshot> snapshots = new ArrayList<>(operations.size());
+        for(OperationMetrics metrics : operations.values()){
+            snapshots.add(metrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    public static OperationSnapshot snapshot(String name) {
+        OperationMetrics metrics = operations.get(name);
+        return (metrics == null) ? null : metrics.snapshot();
+    }
+
+    public static void reset() {
+        for(OperationMetrics metrics : operations.values()){
+            metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically dumps Metrics.snapshot() to the log, or appends it to a file when one is given.
+ */
+public class MetricsReporter {
+
+    private static final Logger logger = LogManager.getLogger("MetricsReporter");
+
+    private final String filePath;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param filePath file the snapshots are appended to, or null to write them to the log
+     */
+    public MetricsReporter(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public synchronized void start(long period, TimeUnit unit) {
+        if(scheduler != null){
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, period, period, unit);
+    }
+
+    /**
+     * Stops the periodic dump after writing one last snapshot.
+     */
+    public synchronized void stop() {
+        if(scheduler != null){
+            scheduler.shutdown();
+            scheduler = null;
+            report();
+        }
+    }
+
+    public void report() {
+        List<OperationSnapshot> snapshots = Metrics.snapshot();
+        if(filePath == null){
+            for(OperationSnapshot snapshot : snapshots){
+                logger.info(snapshot);
+            }
+            return;
+        }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath, true))) {
+            writer.println("# " + new Date());
+            for(OperationSnapshot snapshot : snapshots){
+                writer.println(snapshot);
+            }
+        } catch (IOException e) {
+            logger.error("Error writing metrics to " + filePath, e);
+        }
+    }
+}
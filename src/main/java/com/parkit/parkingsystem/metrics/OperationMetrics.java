@@ -0,0 +1,83 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and call, error and row counters of one operation.
+ * Recording takes no lock and allocates nothing: latencies go to an HdrHistogram Recorder
+ * sized up front, counts to LongAdders.
+ */
+public class OperationMetrics {
+
+    //latencies are kept in microseconds with 3 significant digits, anything above a minute is clamped
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String name;
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    //guarded by this: the latencies drained from the recorder so far
+    private final Histogram totalLatency = new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private Histogram intervalLatency;
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Counts one call and records the time elapsed since startNanos, taken from System.nanoTime().
+     */
+    public void record(long startNanos) {
+        recordMicros((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * Counts one call that took this many microseconds.
+     */
+    public void recordMicros(long micros) {
+        recorder.recordValue(Math.min(Math.max(micros, 0), HIGHEST_TRACKABLE_MICROS));
+        calls.increment();
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    public void recordRows(long count) {
+        rows.add(count);
+    }
+
+    public synchronized OperationSnapshot snapshot() {
+        drain();
+        return new OperationSnapshot(name, calls.sum(), errors.sum(), rows.sum(),
+                totalLatency.getValueAtPercentile(50.0),
+                totalLatency.getValueAtPercentile(99.0),
+                totalLatency.getValueAtPercentile(99.9),
+                totalLatency.getMaxValue(),
+                totalLatency.getMean());
+    }
+
+    public synchronized void reset() {
+        drain();
+        totalLatency.reset();
+        calls.reset();
+        errors.reset();
+        rows.reset();
+    }
+
+    private void drain() {
+        intervalLatency = recorder.getIntervalHistogram(intervalLatency);
+        totalLatency.add(intervalLatency);
+    }
+}
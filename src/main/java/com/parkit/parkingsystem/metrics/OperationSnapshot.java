@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.Locale;
+
+/**
+ * Counters and latency percentiles of one operation at a point in time. Latencies are in microseconds.
+ */
+public class OperationSnapshot {
+
+    private final String name;
+    private final long calls;
+    private final long errors;
+    private final long rows;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+    private final double meanMicros;
+
+    public OperationSnapshot(String name, long calls, long errors, long rows,
+                             long p50Micros, long p99Micros, long p999Micros, long maxMicros, double meanMicros) {
+        this.name = name;
+        this.calls = calls;
+        this.errors = errors;
+        this.rows = rows;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+        this.meanMicros = meanMicros;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getP999Micros() {
+        return p999Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s calls=%d errors=%d rows=%d p50=%dus p99=%dus p999=%dus max=%dus mean=%.1fus",
+                name, calls, errors, rows, p50Micros, p99Micros, p999Micros, maxMicros, meanMicros);
+    }
+}
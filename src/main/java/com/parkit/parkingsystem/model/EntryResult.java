@@ -0,0 +1,44 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Date;
+
+public class EntryResult {
+    private final String vehicleRegNumber;
+    private final int parkingNumber;
+    private final ParkingType parkingType;
+    private final Date inTime;
+    private final boolean recurringUser;
+
+    public EntryResult(String vehicleRegNumber, int parkingNumber, ParkingType parkingType, Date inTime, boolean recurringUser) {
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+        this.inTime = inTime;
+        this.recurringUser = recurringUser;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public Date getInTime() {
+        return new Date(inTime.getTime());
+    }
+
+    /**
+     * @return true when the vehicle already has tickets and will get the loyalty discount on exit
+     */
+    public boolean isRecurringUser() {
+        return recurringUser;
+    }
+}
@@ -0,0 +1,54 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Date;
+
+public class ExitResult {
+    private final String vehicleRegNumber;
+    private final int parkingNumber;
+    private final ParkingType parkingType;
+    private final Date inTime;
+    private final Date outTime;
+    private final double price;
+    private final boolean discountApplied;
+
+    public ExitResult(String vehicleRegNumber, int parkingNumber, ParkingType parkingType, Date inTime, Date outTime,
+                      double price, boolean discountApplied) {
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+        this.inTime = inTime;
+        this.outTime = outTime;
+        this.price = price;
+        this.discountApplied = discountApplied;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public Date getInTime() {
+        return new Date(inTime.getTime());
+    }
+
+    public Date getOutTime() {
+        return new Date(outTime.getTime());
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public boolean isDiscountApplied() {
+        return discountApplied;
+    }
+}
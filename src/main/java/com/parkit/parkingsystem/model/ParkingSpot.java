@@ -6,6 +6,10 @@ public class ParkingSpot {
     private int number;
     private ParkingType parkingType;
     private boolean isAvailable;
+    //layout, used by the allocation strategies
+    private int level;
+    private String zone = "";
+    private int distance;
 
     public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
         this.number = number;
@@ -37,6 +41,33 @@ public class ParkingSpot {
         isAvailable = available;
     }
 
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public String getZone() {
+        return zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * @return the walking distance from the entrance, in metres
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    public void setDistance(int distance) {
+        this.distance = distance;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
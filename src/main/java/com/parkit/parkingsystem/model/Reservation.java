@@ -0,0 +1,61 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Date;
+
+/**
+ * A spot booked for a vehicle over [startTime, endTime).
+ */
+public class Reservation {
+    private int id;
+    private final int parkingNumber;
+    private final ParkingType parkingType;
+    private final String vehicleRegNumber;
+    private final long startTime;
+    private final long endTime;
+
+    public Reservation(int parkingNumber, ParkingType parkingType, String vehicleRegNumber, Date startTime, Date endTime) {
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.startTime = startTime.getTime();
+        this.endTime = endTime.getTime();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public Date getStartTime() {
+        return new Date(startTime);
+    }
+
+    public Date getEndTime() {
+        return new Date(endTime);
+    }
+
+    public long getStartMillis() {
+        return startTime;
+    }
+
+    public long getEndMillis() {
+        return endTime;
+    }
+}
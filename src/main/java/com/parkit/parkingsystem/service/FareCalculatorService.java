@@ -1,49 +1,29 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.model.Ticket;
 
 public class FareCalculatorService {
-	
-	 public void calculateFare(Ticket ticket) {
-	        this.calculateFare(ticket, false );
-	    }
 
-	 public void calculateFare(Ticket ticket, boolean discount){
-        if( (ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime())) ){
-            throw new IllegalArgumentException("Out time provided is incorrect:"+ticket.getOutTime().toString());
-        }
-        
+    private final FareEngine fareEngine;
 
-        double inHour = ticket.getInTime().getTime();
-        double outHour = ticket.getOutTime().getTime();
+    public FareCalculatorService() {
+        this(FareEngine.defaultEngine());
+    }
 
-        double duration = outHour - inHour;
-        double durationInHour = duration / 3600000d;
-        
-        if (durationInHour <= 0.5){
-            ticket.setPrice(0);
-        } else {
+    public FareCalculatorService(FareEngine fareEngine) {
+        this.fareEngine = fareEngine;
+    }
 
-              switch (ticket.getParkingSpot().getParkingType()) {
-                case CAR: {
-                    ticket.setPrice(durationInHour * Fare.CAR_RATE_PER_HOUR);
-                    break;
-                }
-                case BIKE: {
-                    ticket.setPrice(durationInHour * Fare.BIKE_RATE_PER_HOUR);
-                   
-                    break;
-                }
-                default:
-                    throw new IllegalArgumentException("Unknown Parking Type");
-            }
+    public void calculateFare(Ticket ticket) {
+        this.calculateFare(ticket, false);
+    }
 
+    public void calculateFare(Ticket ticket, boolean discount){
+        if( (ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime())) ){
+            throw new IllegalArgumentException("Out time provided is incorrect:"+ticket.getOutTime().toString());
         }
-        if (discount){
-            ticket.setPrice(0.95 * ticket.getPrice());
-         }
-      }
-	 }
-     
-    
\ No newline at end of file
+        long price = fareEngine.calculate(ticket.getParkingSpot().getParkingType(),
+                ticket.getInTime().getTime(), ticket.getOutTime().getTime(), discount);
+        ticket.setPrice(FareEngine.toUnits(price));
+    }
+}
@@ -0,0 +1,79 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Computes fares in integer minor units from epoch millis, with one TariffTable per ParkingType.
+ * A minor unit is a thousandth of the currency unit so the pro rata fares of the default tariff,
+ * such as 45 minutes of car at 1.5/h, stay exact.
+ */
+public class FareEngine {
+
+    public static final long MINOR_UNITS_PER_UNIT = 1000;
+
+    private static final FareEngine DEFAULT = new FareEngine(defaultTariffs());
+
+    //indexed by ParkingType ordinal
+    private final TariffTable[] tariffs;
+
+    public FareEngine(Map<ParkingType, TariffTable> tariffs) {
+        this.tariffs = new TariffTable[ParkingType.values().length];
+        for(Map.Entry<ParkingType, TariffTable> entry : tariffs.entrySet()){
+            this.tariffs[entry.getKey().ordinal()] = entry.getValue();
+        }
+    }
+
+    /**
+     * The tariff of the Fare constants: 30 free minutes, then the hourly rate from the first minute,
+     * 5% off for recurring users and no cap.
+     */
+    public static FareEngine defaultEngine() {
+        return DEFAULT;
+    }
+
+    private static Map<ParkingType, TariffTable> defaultTariffs() {
+        Map<ParkingType, TariffTable> tariffs = new EnumMap<>(ParkingType.class);
+        tariffs.put(ParkingType.CAR, defaultTariff(Fare.CAR_RATE_PER_HOUR));
+        tariffs.put(ParkingType.BIKE, defaultTariff(Fare.BIKE_RATE_PER_HOUR));
+        return tariffs;
+    }
+
+    private static TariffTable defaultTariff(double ratePerHour) {
+        return TariffTable.builder()
+                .freePeriodMinutes(Fare.FREE_PERIOD_MINUTES)
+                .rate(0, toMinorUnits(ratePerHour))
+                .loyaltyDiscountPercent(Fare.RECURRING_USER_DISCOUNT_PERCENT)
+                .build();
+    }
+
+    /**
+     * @return the fare in minor units
+     * @throws IllegalArgumentException if outMillis is before inMillis or there is no tariff for the type
+     */
+    public long calculate(ParkingType parkingType, long inMillis, long outMillis, boolean loyalty) {
+        TariffTable tariff = tariffs[parkingType.ordinal()];
+        if(tariff == null){
+            throw new IllegalArgumentException("Unknown Parking Type");
+        }
+        if(outMillis < inMillis){
+            throw new IllegalArgumentException("Out time provided is incorrect:" + outMillis);
+        }
+        return tariff.price(outMillis - inMillis, loyalty);
+    }
+
+    public TariffTable getTariff(ParkingType parkingType) {
+        return tariffs[parkingType.ordinal()];
+    }
+
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * MINOR_UNITS_PER_UNIT);
+    }
+
+    public static double toUnits(long minorUnits) {
+        return (double) minorUnits / MINOR_UNITS_PER_UNIT;
+    }
+}
@@ -0,0 +1,375 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-prices the closed tickets of a period with the current FareEngine, e.g. after a rate change.
+ * Tickets are streamed out of the ticket table in chunks, each chunk is priced on a fork/join pool
+ * and the writer threads save the prices that changed in one JDBC batch per chunk.
+ */
+public class FareRecalculationService {
+
+    private static final Logger logger = LogManager.getLogger("FareRecalculationService");
+
+    private static final OperationMetrics RECALCULATE_METRICS = Metrics.operation("FareRecalculationService.recalculate");
+    private static final OperationMetrics WRITE_BATCH_METRICS = Metrics.operation("FareRecalculationService.writeBatch");
+
+    public static final int DEFAULT_FETCH_SIZE = 10000;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_WRITERS = 2;
+    //tickets priced by one fork/join task without splitting further
+    private static final int PRICING_THRESHOLD = 256;
+    //chunks read ahead of the writers, per writer
+    private static final int CHUNKS_IN_FLIGHT_PER_WRITER = 4;
+
+    public interface ProgressListener {
+        /**
+         * Called by a writer thread after each chunk.
+         */
+        void onProgress(long ticketsRead, long ticketsPriced, long ticketsCorrected);
+    }
+
+    public static final class Summary {
+        private final long ticketsRead;
+        private final long ticketsPriced;
+        private final long ticketsCorrected;
+        private final long elapsedMillis;
+        private final boolean completed;
+
+        private Summary(long ticketsRead, long ticketsPriced, long ticketsCorrected, long elapsedMillis, boolean completed) {
+            this.ticketsRead = ticketsRead;
+            this.ticketsPriced = ticketsPriced;
+            this.ticketsCorrected = ticketsCorrected;
+            this.elapsedMillis = elapsedMillis;
+            this.completed = completed;
+        }
+
+        public long getTicketsRead() {
+            return ticketsRead;
+        }
+
+        public long getTicketsPriced() {
+            return ticketsPriced;
+        }
+
+        /**
+         * @return the tickets whose price changed and was saved
+         */
+        public long getTicketsCorrected() {
+            return ticketsCorrected;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return false if the run stopped on an error; the chunks saved before it stay saved
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        @Override
+        public String toString() {
+            return "read=" + ticketsRead + " priced=" + ticketsPriced + " corrected=" + ticketsCorrected
+                    + " elapsed=" + elapsedMillis + "ms completed=" + completed;
+        }
+    }
+
+    public DataBaseConfig dataBaseConfig;
+
+    private final FareEngine fareEngine;
+    private final ForkJoinPool pool;
+    private final int fetchSize;
+    private final int batchSize;
+    private final int writers;
+
+    public FareRecalculationService(DataBaseConfig dataBaseConfig, FareEngine fareEngine) {
+        this(dataBaseConfig, fareEngine, ForkJoinPool.commonPool(), DEFAULT_FETCH_SIZE, DEFAULT_BATCH_SIZE, DEFAULT_WRITERS);
+    }
+
+    public FareRecalculationService(DataBaseConfig dataBaseConfig, FareEngine fareEngine, ForkJoinPool pool,
+                                    int fetchSize, int batchSize, int writers) {
+        if(fetchSize <= 0 || batchSize <= 0 || writers <= 0){
+            throw new IllegalArgumentException("Fetch size, batch size and writers must be positive");
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.fareEngine = fareEngine;
+        this.pool = pool;
+        this.fetchSize = fetchSize;
+        this.batchSize = batchSize;
+        this.writers = writers;
+    }
+
+    /**
+     * Re-prices the tickets closed between from (inclusive) and to (exclusive).
+     * @param listener notified after each saved chunk, may be null
+     */
+    public Summary recalculate(Date from, Date to, ProgressListener listener) {
+        long start = System.nanoTime();
+        try {
+            Run run = new Run(listener);
+            List<Thread> writerThreads = new ArrayList<>();
+            for(int i = 0; i < writers; i++){
+                Thread writer = new Thread(() -> write(run), "fare-writer-" + i);
+                writer.setDaemon(true);
+                writer.start();
+                writerThreads.add(writer);
+            }
+            List<ForkJoinTask<?>> pricing = new ArrayList<>();
+            read(run, from, to, pricing);
+            for(ForkJoinTask<?> task : pricing){
+                task.join();
+            }
+            for(int i = 0; i < writers; i++){
+                run.priced.add(Chunk.END);
+            }
+            for(Thread writer : writerThreads){
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("Interrupted waiting for the fare writers", e);
+                    run.fail();
+                }
+            }
+            Summary summary = new Summary(run.read.get(), run.written.get(), run.corrected.get(),
+                    (System.nanoTime() - start) / 1000000, !run.failed);
+            if(summary.isCompleted()){
+                logger.info("Fare recalculation done: " + summary);
+            }else {
+                RECALCULATE_METRICS.recordError();
+                logger.error("Fare recalculation stopped: " + summary);
+            }
+            RECALCULATE_METRICS.recordRows(summary.getTicketsCorrected());
+            return summary;
+        } finally {
+            RECALCULATE_METRICS.record(start);
+        }
+    }
+
+    private void read(Run run, Date from, Date to, List<ForkJoinTask<?>> pricing) {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_CLOSED_TICKETS);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, new Timestamp(from.getTime()));
+            ps.setTimestamp(2, new Timestamp(to.getTime()));
+            rs = ps.executeQuery();
+            Chunk chunk = new Chunk(batchSize);
+            while(!run.failed && rs.next()){
+                chunk.add(rs.getInt(1), FareEngine.toMinorUnits(rs.getDouble(2)), rs.getTimestamp(3).getTime(),
+                        rs.getTimestamp(4).getTime(), ParkingType.valueOf(rs.getString(5)), rs.getBoolean(6));
+                if(chunk.size == batchSize){
+                    pricing.add(submit(run, chunk));
+                    chunk = new Chunk(batchSize);
+                }
+            }
+            if(chunk.size > 0){
+                pricing.add(submit(run, chunk));
+            }
+        }catch (Exception ex){
+            logger.error("Error reading closed tickets", ex);
+            run.fail();
+        }finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private ForkJoinTask<?> submit(Run run, Chunk chunk) throws InterruptedException {
+        //the writers release a permit per chunk, so at most this many chunks are held in memory
+        run.inFlight.acquire();
+        run.read.addAndGet(chunk.size);
+        return pool.submit(() -> {
+            try {
+                new PriceTask(chunk, 0, chunk.size).invoke();
+            }catch (RuntimeException ex){
+                logger.error("Error pricing tickets", ex);
+                run.fail();
+            }
+            run.priced.add(chunk);
+        });
+    }
+
+    private final class PriceTask extends RecursiveAction {
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        private PriceTask(Chunk chunk, int from, int to) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= PRICING_THRESHOLD){
+                for(int i = from; i < to; i++){
+                    chunk.newPrices[i] = fareEngine.calculate(chunk.parkingTypes[i], chunk.inTimes[i], chunk.outTimes[i], chunk.loyalty[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PriceTask(chunk, from, middle), new PriceTask(chunk, middle, to));
+        }
+    }
+
+    private void write(Run run) {
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            while(true){
+                Chunk chunk = run.priced.take();
+                if(chunk == Chunk.END){
+                    return;
+                }
+                try {
+                    if(run.failed){
+                        continue;
+                    }
+                    if(con == null){
+                        con = dataBaseConfig.getConnection();
+                        con.setAutoCommit(false);
+                        ps = con.prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+                    }
+                    long corrected = writeBatch(con, ps, chunk);
+                    run.written.addAndGet(chunk.size);
+                    run.corrected.addAndGet(corrected);
+                    if(run.listener != null){
+                        run.listener.onProgress(run.read.get(), run.written.get(), run.corrected.get());
+                    }
+                }catch (Exception ex){
+                    logger.error("Error saving recalculated fares", ex);
+                    rollback(con);
+                    run.fail();
+                }finally {
+                    run.inFlight.release();
+                }
+            }
+        }catch (InterruptedException e){
+            logger.error("Fare writer interrupted", e);
+            run.fail();
+        }finally {
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private static long writeBatch(Connection con, PreparedStatement ps, Chunk chunk) throws Exception {
+        long start = System.nanoTime();
+        try {
+            int corrections = 0;
+            for(int i = 0; i < chunk.size; i++){
+                if(chunk.newPrices[i] != chunk.oldPrices[i]){
+                    ps.setDouble(1, FareEngine.toUnits(chunk.newPrices[i]));
+                    ps.setInt(2, chunk.ids[i]);
+                    ps.addBatch();
+                    corrections++;
+                }
+            }
+            if(corrections > 0){
+                ps.executeBatch();
+                con.commit();
+            }
+            WRITE_BATCH_METRICS.recordRows(corrections);
+            return corrections;
+        }catch (Exception ex){
+            WRITE_BATCH_METRICS.recordError();
+            throw ex;
+        } finally {
+            WRITE_BATCH_METRICS.record(start);
+        }
+    }
+
+    private static void rollback(Connection con){
+        if(con != null){
+            try {
+                con.rollback();
+            } catch (Exception ex){
+                logger.error("Error rolling back recalculated fares", ex);
+            }
+        }
+    }
+
+    /**
+     * Tickets of one batch in primitive arrays, filled by the reader then priced in place.
+     */
+    private static final class Chunk {
+        private static final Chunk END = new Chunk(0);
+
+        private final int[] ids;
+        private final long[] oldPrices;
+        private final long[] newPrices;
+        private final long[] inTimes;
+        private final long[] outTimes;
+        private final ParkingType[] parkingTypes;
+        private final boolean[] loyalty;
+        private int size;
+
+        private Chunk(int capacity) {
+            ids = new int[capacity];
+            oldPrices = new long[capacity];
+            newPrices = new long[capacity];
+            inTimes = new long[capacity];
+            outTimes = new long[capacity];
+            parkingTypes = new ParkingType[capacity];
+            loyalty = new boolean[capacity];
+        }
+
+        private void add(int id, long oldPrice, long inTime, long outTime, ParkingType parkingType, boolean recurring) {
+            ids[size] = id;
+            oldPrices[size] = oldPrice;
+            inTimes[size] = inTime;
+            outTimes[size] = outTime;
+            parkingTypes[size] = parkingType;
+            loyalty[size] = recurring;
+            size++;
+        }
+    }
+
+    private final class Run {
+        private final ProgressListener listener;
+        private final BlockingQueue<Chunk> priced = new LinkedBlockingQueue<>();
+        private final Semaphore inFlight = new Semaphore(writers * CHUNKS_IN_FLIGHT_PER_WRITER);
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicLong corrected = new AtomicLong();
+        private volatile boolean failed;
+
+        private Run(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        private void fail() {
+            failed = true;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs gate events of many barrier lanes concurrently against one ParkingService.
+ * Events of the same lane run one after the other in submission order, events of different
+ * lanes run in parallel, at most maxConcurrency at a time. Uses a virtual thread per task when
+ * the JDK has them, and a fixed pool of maxConcurrency platform threads otherwise.
+ */
+public class GateExecutor {
+
+    private static final Logger logger = LogManager.getLogger("GateExecutor");
+
+    private static final class Event<T> {
+        private final Callable<T> action;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Event(Callable<T> action) {
+            this.action = action;
+        }
+
+        private void run() {
+            try {
+                result.complete(action.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static final class Lane {
+        private final String id;
+        private final Queue<Event<?>> events = new ArrayDeque<>();
+        private boolean scheduled;
+        //removed from the lanes once drained, a submit that still finds it takes a new lane
+        private boolean retired;
+
+        private Lane(String id) {
+            this.id = id;
+        }
+    }
+
+    private final ParkingService parkingService;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+    private volatile boolean shutdown;
+
+    public GateExecutor(ParkingService parkingService, int maxConcurrency) {
+        this(parkingService, maxConcurrency, true);
+    }
+
+    /**
+     * @param useVirtualThreads false forces the bounded platform thread pool even on JDKs with virtual threads
+     */
+    public GateExecutor(ParkingService parkingService, int maxConcurrency, boolean useVirtualThreads) {
+        if(maxConcurrency <= 0){
+            throw new IllegalArgumentException("Concurrency limit must be positive");
+        }
+        this.parkingService = parkingService;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        ExecutorService virtualExecutor = useVirtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualThreads ? virtualExecutor : newBoundedExecutor(maxConcurrency);
+        logger.info("Gate executor started with " + (virtualThreads ? "virtual threads" : "a bounded thread pool")
+                + ", concurrency limit " + maxConcurrency);
+    }
+
+    public CompletableFuture<EntryResult> enter(String lane, final String vehicleRegNumber, final ParkingType parkingType) {
+        return submit(lane, () -> parkingService.enter(vehicleRegNumber, parkingType));
+    }
+
+    public CompletableFuture<ExitResult> exit(String lane, final String vehicleRegNumber) {
+        return submit(lane, () -> parkingService.exit(vehicleRegNumber));
+    }
+
+    /**
+     * Queues the event behind earlier events of the same lane.
+     * @return completed with the event result, or exceptionally with what it threw
+     */
+    public <T> CompletableFuture<T> submit(String laneId, final Callable<T> event) {
+        if(laneId == null){
+            throw new IllegalArgumentException("Lane is required");
+        }
+        Event<T> task = new Event<>(event);
+        Lane lane;
+        boolean schedule;
+        while(true){
+            lane = lanes.computeIfAbsent(laneId, Lane::new);
+            synchronized (lane) {
+                if(shutdown){
+                    throw new RejectedExecutionException("Gate executor is shut down");
+                }
+                if(lane.retired){
+                    continue;
+                }
+                lane.events.add(task);
+                schedule = !lane.scheduled;
+                lane.scheduled = true;
+                break;
+            }
+        }
+        if(schedule){
+            final Lane scheduled = lane;
+            executor.execute(() -> runNext(scheduled));
+        }
+        return task.result;
+    }
+
+    /**
+     * Drops the lane from the map once it has nothing queued, so lanes seen once do not stay forever.
+     * Called with the lane lock held.
+     */
+    private void retire(Lane lane) {
+        lane.scheduled = false;
+        lane.retired = true;
+        lanes.remove(lane.id, lane);
+    }
+
+    /**
+     * Runs the head event of the lane, then hands the lane back to the executor so a busy lane
+     * does not keep a pool thread from the others.
+     */
+    private void runNext(final Lane lane) {
+        Event<?> task;
+        synchronized (lane) {
+            task = lane.events.poll();
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.result.completeExceptionally(e);
+            failRemaining(lane, e);
+            return;
+        }
+        try {
+            task.run();
+        } finally {
+            permits.release();
+        }
+        synchronized (lane) {
+            if(lane.events.isEmpty()){
+                retire(lane);
+                return;
+            }
+        }
+        try {
+            executor.execute(() -> runNext(lane));
+        } catch (RejectedExecutionException e) {
+            failRemaining(lane, e);
+        }
+    }
+
+    private void failRemaining(Lane lane, Exception cause) {
+        logger.error("Gate executor stopped, failing the queued events of a lane", cause);
+        synchronized (lane) {
+            for(Event<?> event : lane.events){
+                event.result.completeExceptionally(cause);
+            }
+            lane.events.clear();
+            retire(lane);
+        }
+    }
+
+    /**
+     * Stops accepting events and waits for the queued ones to complete.
+     * @return false if some were still running after the timeout
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        shutdown = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for(Lane lane : lanes.values()){
+            while(true){
+                synchronized (lane) {
+                    if(!lane.scheduled){
+                        break;
+                    }
+                }
+                if(System.nanoTime() >= deadline){
+                    executor.shutdownNow();
+                    RejectedExecutionException timedOut = new RejectedExecutionException("Gate executor shut down before the event ran");
+                    for(Lane pending : lanes.values()){
+                        failRemaining(pending, timedOut);
+                    }
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+        }
+        executor.shutdown();
+        return executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return the lanes with events queued or running; idle lanes are dropped
+     */
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    public int getQueuedCount() {
+        int queued = 0;
+        for(Lane lane : lanes.values()){
+            synchronized (lane) {
+                queued += lane.events.size();
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() looked up reflectively, the code still targets Java 8.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            //older JDK, or virtual threads still behind --enable-preview
+            return null;
+        }
+    }
+
+    private static ExecutorService newBoundedExecutor(int threads) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gate-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -1,35 +1,65 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.journal.EventJournal;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.text.NumberFormat;
+import java.util.Locale;
+
 public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
     public static void loadInterface(){
+        loadInterface((EventJournal) null);
+    }
+
+    /**
+     * @param eventJournal journal of the gate events, may be null
+     */
+    public static void loadInterface(EventJournal eventJournal){
+        loadInterface(new ParkingSpotDAO(), new TicketDAO(), eventJournal);
+    }
+
+    /**
+     * Runs the shell on repositories already set up, such as DAOs warmed up by StartupWarmUp.
+     * @param eventJournal journal of the gate events, may be null
+     */
+    public static void loadInterface(ParkingSpotRepository parkingSpotRepository, TicketRepository ticketRepository, EventJournal eventJournal){
+        ParkingService parkingService = new ParkingService(parkingSpotRepository, ticketRepository);
+        parkingService.setEventJournal(eventJournal);
+        loadInterface(parkingService);
+    }
+
+    /**
+     * Runs the shell on a ParkingService already set up, with its journal, reservations and allocation strategy.
+     */
+    public static void loadInterface(ParkingService parkingService){
         logger.info("App initialized!!!");
         System.out.println("Welcome to Parking System!");
 
         boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
 
         while(continueApp){
             loadMenu();
             int option = inputReaderUtil.readSelection();
             switch(option){
                 case 1: {
-                    parkingService.processIncomingVehicle();
+                    processIncomingVehicle(parkingService, inputReaderUtil);
                     break;
                 }
                 case 2: {
-                    parkingService.processExitingVehicle();
+                    processExitingVehicle(parkingService, inputReaderUtil);
                     break;
                 }
                 case 3: {
@@ -42,6 +72,82 @@ public class InteractiveShell {
         }
     }
 
+    /**
+     * Asks for the vehicle type and registration number, then enters the vehicle.
+     * @return the entry, or null if the input was invalid or the entry failed
+     */
+    public static EntryResult processIncomingVehicle(ParkingService parkingService, InputReaderUtil inputReaderUtil) {
+        try{
+            ParkingType parkingType = readVehicleType(inputReaderUtil);
+            String vehicleRegNumber = readVehicleRegNumber(inputReaderUtil);
+            EntryResult entry = parkingService.enter(vehicleRegNumber, parkingType);
+            if(entry != null){
+                if (entry.isRecurringUser()) {
+                    System.out.println("Happy to see you again ! As a regular user of\n" +
+                            "our parking, you will receive a 5% discount");
+                }
+                System.out.println("Generated Ticket and saved in DB");
+                System.out.println("Please park your vehicle in spot number:"+entry.getParkingNumber());
+                System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+entry.getInTime());
+            }else{
+                System.out.println("Unable to allocate a parking spot. Parking slots might be full or the vehicle is already parked");
+            }
+            return entry;
+        }catch(Exception e){
+            logger.error("Unable to process incoming vehicle",e);
+            return null;
+        }
+    }
+
+    /**
+     * Asks for the registration number, then lets the vehicle out and shows its fare.
+     * @return the exit, or null if the input was invalid or the exit failed
+     */
+    public static ExitResult processExitingVehicle(ParkingService parkingService, InputReaderUtil inputReaderUtil) {
+        try{
+            String vehicleRegNumber = readVehicleRegNumber(inputReaderUtil);
+            ExitResult exit = parkingService.exit(vehicleRegNumber);
+            if(exit != null) {
+                // Formater le prix en euros (€)
+                NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(Locale.FRANCE);
+                String formattedPrice = currencyFormat.format(exit.getPrice());
+
+                System.out.printf( "Please pay the parking fare:" + formattedPrice);
+                System.out.println("Recorded out-time for vehicle number:" + exit.getVehicleRegNumber() + " is:" + exit.getOutTime());
+            }else{
+                System.out.println("Unable to update ticket information. Error occurred");
+            }
+            return exit;
+        }catch(Exception e){
+            logger.error("Unable to process exiting vehicle",e);
+            return null;
+        }
+    }
+
+    private static String readVehicleRegNumber(InputReaderUtil inputReaderUtil) throws Exception {
+        System.out.println("Please type the vehicle registration number and press enter key");
+        return inputReaderUtil.readVehicleRegistrationNumber();
+    }
+
+    private static ParkingType readVehicleType(InputReaderUtil inputReaderUtil){
+        System.out.println("Please select vehicle type from menu");
+        System.out.println("1 CAR");
+        System.out.println("2 BIKE");
+        int input = inputReaderUtil.readSelection();
+        switch(input){
+            case 1: {
+                return ParkingType.CAR;
+            }
+            case 2: {
+                return ParkingType.BIKE;
+            }
+            default: {
+                System.out.println("Incorrect input provided");
+                throw new IllegalArgumentException("Entered input is invalid");
+            }
+        }
+    }
+
     private static void loadMenu(){
         System.out.println("Please select an option. Simply enter the number to choose an action");
         System.out.println("1 New Vehicle Entering - Allocate Parking Space");
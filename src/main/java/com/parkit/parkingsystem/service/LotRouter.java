@@ -0,0 +1,131 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.LotRegistry;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.Reservation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves every lot of a LotRegistry from one instance. Each lot has its own DAOs on its own database,
+ * hence its own connection pool, free spot index, open ticket cache and ParkingService, so the gates
+ * of one lot never wait on the state of another.
+ * The lots are set up once, then looked up without locking.
+ */
+public class LotRouter {
+
+    public static final class Lot {
+        private final String lotId;
+        private final ParkingSpotDAO parkingSpotDAO;
+        private final TicketDAO ticketDAO;
+        private final ParkingService parkingService;
+        private final ReservationService reservationService;
+
+        private Lot(String lotId, DataBaseConfig dataBaseConfig) {
+            this.lotId = lotId;
+            this.parkingSpotDAO = new ParkingSpotDAO();
+            this.parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+            this.ticketDAO = new TicketDAO();
+            this.ticketDAO.dataBaseConfig = dataBaseConfig;
+            this.parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+            ReservationDAO reservationDAO = new ReservationDAO();
+            reservationDAO.dataBaseConfig = dataBaseConfig;
+            this.reservationService = new ReservationService(reservationDAO, ReservationService.DEFAULT_HOLD_MILLIS, parkingSpotDAO);
+            this.parkingService.setReservationService(reservationService);
+        }
+
+        public String getLotId() {
+            return lotId;
+        }
+
+        public DataBaseConfig getDataBaseConfig() {
+            return ticketDAO.dataBaseConfig;
+        }
+
+        public ParkingSpotDAO getParkingSpotDAO() {
+            return parkingSpotDAO;
+        }
+
+        public TicketDAO getTicketDAO() {
+            return ticketDAO;
+        }
+
+        public ParkingService getParkingService() {
+            return parkingService;
+        }
+
+        /**
+         * Honoured by the entries of getParkingService once loaded.
+         */
+        public ReservationService getReservationService() {
+            return reservationService;
+        }
+    }
+
+    private final Map<String, Lot> lots;
+
+    public LotRouter(LotRegistry lotRegistry) {
+        Map<String, Lot> lots = new LinkedHashMap<>();
+        for(String lotId : lotRegistry.getLotIds()){
+            lots.put(lotId, new Lot(lotId, lotRegistry.getDataBaseConfig(lotId)));
+        }
+        this.lots = Collections.unmodifiableMap(lots);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the lot is not registered
+     */
+    public Lot getLot(String lotId) {
+        Lot lot = lots.get(lotId);
+        if(lot == null){
+            throw new IllegalArgumentException("Unknown lot " + lotId);
+        }
+        return lot;
+    }
+
+    /**
+     * @return the lots in registration order
+     */
+    public List<Lot> getLots() {
+        return new ArrayList<>(lots.values());
+    }
+
+    /**
+     * See ParkingService.enter, on the spots and tickets of this lot.
+     */
+    public EntryResult enter(String lotId, String vehicleRegNumber, ParkingType parkingType) {
+        return getLot(lotId).getParkingService().enter(vehicleRegNumber, parkingType);
+    }
+
+    /**
+     * See ParkingService.exit, on the spots and tickets of this lot.
+     */
+    public ExitResult exit(String lotId, String vehicleRegNumber) {
+        return getLot(lotId).getParkingService().exit(vehicleRegNumber);
+    }
+
+    /**
+     * See ReservationService.reserve, on the spots of this lot.
+     */
+    public Reservation reserve(String lotId, String vehicleRegNumber, ParkingType parkingType, Date start, Date end) {
+        return getLot(lotId).getReservationService().reserve(vehicleRegNumber, parkingType, start, end);
+    }
+
+    /**
+     * @return the free spots of this type in the lot, or -1 when its spots are not loaded yet
+     */
+    public int countAvailable(String lotId, ParkingType parkingType) {
+        return getLot(lotId).getParkingSpotDAO().countAvailable(parkingType);
+    }
+}
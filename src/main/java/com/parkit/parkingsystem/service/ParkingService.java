@@ -1,142 +1,293 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.allocation.SpotAllocationStrategy;
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.ReservationIndex;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.journal.EventJournal;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
 import com.parkit.parkingsystem.model.Ticket;
-import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.util.Date;
-import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
 
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
+    private static final OperationMetrics ENTER_METRICS = Metrics.operation("ParkingService.enter");
+    private static final OperationMetrics EXIT_METRICS = Metrics.operation("ParkingService.exit");
+
     private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
-    private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private  TicketDAO ticketDAO;
+    private ParkingSpotRepository parkingSpotRepository;
+    private TicketRepository ticketRepository;
+    private volatile EventJournal eventJournal;
+    private volatile ReservationService reservationService;
+    private volatile SpotAllocationStrategy allocationStrategy;
+
+    //a vehicle is handled by one gate at a time
+    private final Set<String> vehiclesInProgress = ConcurrentHashMap.newKeySet();
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
-        this.inputReaderUtil = inputReaderUtil;
-        this.parkingSpotDAO = parkingSpotDAO;
-        this.ticketDAO = ticketDAO;
+    public ParkingService(ParkingSpotRepository parkingSpotRepository, TicketRepository ticketRepository){
+        this.parkingSpotRepository = parkingSpotRepository;
+        this.ticketRepository = ticketRepository;
     }
 
-    public void processIncomingVehicle() {
-        try{
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
-            if(parkingSpot !=null && parkingSpot.getId() > 0){
-                String vehicleRegNumber = getVehichleRegNumber();
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);//allot this parking space and mark it's availability as false
+    /**
+     * Records the entries, exits and spot changes in this journal from now on, or stops recording them when null.
+     */
+    public void setEventJournal(EventJournal eventJournal) {
+        this.eventJournal = eventJournal;
+    }
+
+    /**
+     * Makes the entries honour these bookings from now on, or ignore bookings when null:
+     * a booked vehicle gets its spot, and other vehicles are not given a spot booked now or within the hold time.
+     */
+    public void setReservationService(ReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    /**
+     * Lets this strategy choose the spots from now on, or the repository when null (the lowest free number).
+     * The strategy must already be loaded with the spots of the repository.
+     */
+    public void setAllocationStrategy(SpotAllocationStrategy allocationStrategy) {
+        this.allocationStrategy = allocationStrategy;
+    }
 
-                Date inTime = new Date();
+    /**
+     * Allocates a spot to the vehicle and opens its ticket. Safe to call from many gates at once.
+     * @return the allocated spot and in-time, or null when no spot is free, the ticket could not be saved
+     * or the vehicle is already being processed
+     */
+    public EntryResult enter(String vehicleRegNumber, ParkingType parkingType) {
+        long start = System.nanoTime();
+        try {
+            checkVehicleRegNumber(vehicleRegNumber, ENTER_METRICS);
+            if(parkingType == null){
+                ENTER_METRICS.recordError();
+                throw new IllegalArgumentException("Parking type is required");
+            }
+            if(!vehiclesInProgress.add(vehicleRegNumber)){
+                logger.error("Vehicle " + vehicleRegNumber + " is already being processed");
+                ENTER_METRICS.recordError();
+                return null;
+            }
+            ParkingSpot parkingSpot = null;
+            try{
+                int parkingNumber = claimSpot(vehicleRegNumber, parkingType);
+                if(parkingNumber <= 0){
+                    logger.error("Error fetching parking number from DB. Parking slots might be full");
+                    if(parkingNumber < 0){
+                        ENTER_METRICS.recordError();
+                    }
+                    return null;
+                }
+                parkingSpot = new ParkingSpot(parkingNumber, parkingType, false);
+
+                Date inTime = now();
                 Ticket ticket = new Ticket();
                 //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-                //ticket.setId(ticketID);
                 ticket.setParkingSpot(parkingSpot);
                 ticket.setVehicleRegNumber(vehicleRegNumber);
                 ticket.setPrice(0);
                 ticket.setInTime(inTime);
                 ticket.setOutTime(null);
-                
-                int ticketsCount = ticketDAO.getNbTicket(vehicleRegNumber);
-                if (ticketsCount > 0) {
-                    System.out.println("Happy to see you again ! As a regular user of\n" +
-                            "our parking, you will receive a 5% discount");
+
+                int ticketsCount = ticketRepository.getNbTicket(vehicleRegNumber);
+                if(!ticketRepository.saveTicket(ticket)){
+                    logger.error("Error saving the ticket of vehicle " + vehicleRegNumber + ", releasing spot " + parkingNumber);
+                    ENTER_METRICS.recordError();
+                    giveBackSpot(parkingSpot);
+                    return null;
+                }
+                EventJournal journal = eventJournal;
+                if(journal != null){
+                    try {
+                        journal.entry(vehicleRegNumber, parkingNumber, parkingType, inTime.getTime());
+                    }catch (RuntimeException e){
+                        logger.error("Error recording entry in the event journal", e);
+                    }
                 }
-                
-                ticketDAO.saveTicket(ticket);
-                System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number:"+parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+inTime);
+                ENTER_METRICS.recordRows(1);
+                return new EntryResult(vehicleRegNumber, parkingNumber, parkingType, inTime, ticketsCount > 0);
+            }catch(RuntimeException e){
+                ENTER_METRICS.recordError();
+                if(parkingSpot != null){
+                    giveBackSpot(parkingSpot);
+                }
+                throw e;
+            }finally {
+                vehiclesInProgress.remove(vehicleRegNumber);
             }
-        }catch(Exception e){
-            logger.error("Unable to process incoming vehicle",e);
+        } finally {
+            ENTER_METRICS.record(start);
         }
     }
 
-    private String getVehichleRegNumber() throws Exception {
-        System.out.println("Please type the vehicle registration number and press enter key");
-        return inputReaderUtil.readVehicleRegistrationNumber();
-    }
-
-    public ParkingSpot getNextParkingNumberIfAvailable(){
-        int parkingNumber=0;
-        ParkingSpot parkingSpot = null;
-        try{
-            ParkingType parkingType = getVehichleType();
-            parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
-            if(parkingNumber > 0){
-                parkingSpot = new ParkingSpot(parkingNumber,parkingType, true);
-            }else{
-                throw new Exception("Error fetching parking number from DB. Parking slots might be full");
+    /**
+     * Closes the vehicle's ticket, prices it and frees its spot in one transaction. Safe to call from many gates at once.
+     * @return the fare and times of the stay, or null when there is no open ticket or the exit could not be recorded
+     */
+    public ExitResult exit(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        try {
+            checkVehicleRegNumber(vehicleRegNumber, EXIT_METRICS);
+            if(!vehiclesInProgress.add(vehicleRegNumber)){
+                logger.error("Vehicle " + vehicleRegNumber + " is already being processed");
+                EXIT_METRICS.recordError();
+                return null;
             }
-        }catch(IllegalArgumentException ie){
-            logger.error("Error parsing user input for type of vehicle", ie);
-        }catch(Exception e){
-            logger.error("Error fetching next available parking slot", e);
+            try{
+                Date outTime = now();
+                final boolean[] discount = new boolean[1];
+                Ticket ticket = ticketRepository.exitVehicle(vehicleRegNumber, outTime, (exitingTicket, ticketsCount) -> {
+                    discount[0] = ticketsCount > 1;
+                    fareCalculatorService.calculateFare(exitingTicket, discount[0]);
+                });
+                if(ticket == null){
+                    EXIT_METRICS.recordError();
+                    return null;
+                }
+                ParkingSpot parkingSpot = ticket.getParkingSpot();
+                parkingSpotRepository.onSpotReleased(parkingSpot);
+                releaseToStrategy(parkingSpot.getId());
+                EventJournal journal = eventJournal;
+                if(journal != null){
+                    try {
+                        journal.exit(vehicleRegNumber, parkingSpot.getId(), parkingSpot.getParkingType(), ticket.getInTime().getTime(),
+                                outTime.getTime(), FareEngine.toMinorUnits(ticket.getPrice()), discount[0]);
+                    }catch (RuntimeException e){
+                        logger.error("Error recording exit in the event journal", e);
+                    }
+                }
+                EXIT_METRICS.recordRows(1);
+                return new ExitResult(vehicleRegNumber, parkingSpot.getId(), parkingSpot.getParkingType(),
+                        ticket.getInTime(), outTime, ticket.getPrice(), discount[0]);
+            }catch(RuntimeException e){
+                EXIT_METRICS.recordError();
+                throw e;
+            }finally {
+                vehiclesInProgress.remove(vehicleRegNumber);
+            }
+        } finally {
+            EXIT_METRICS.record(start);
         }
-        return parkingSpot;
     }
 
-    private ParkingType getVehichleType(){
-        System.out.println("Please select vehicle type from menu");
-        System.out.println("1 CAR");
-        System.out.println("2 BIKE");
-        int input = inputReaderUtil.readSelection();
-        switch(input){
-            case 1: {
-                return ParkingType.CAR;
+    //IN_TIME and OUT_TIME are DATETIME columns of whole seconds: the fare is computed from the times as they
+    //are stored, so a recalculation with the same tariffs finds the same price
+    private static Date now() {
+        return new Date(System.currentTimeMillis() / 1000 * 1000);
+    }
+
+    private int claimSpot(String vehicleRegNumber, ParkingType parkingType) {
+        SpotAllocationStrategy strategy = allocationStrategy;
+        ReservationService reservations = reservationService;
+        final ReservationIndex index = (reservations != null) ? reservations.getReservationIndex() : null;
+        IntPredicate allowed = null;
+        if(index != null){
+            final long now = System.currentTimeMillis();
+            final long holdUntil = now + reservations.getHoldMillis();
+            Reservation reservation = index.getReservation(vehicleRegNumber, now, reservations.getHoldMillis());
+            if(reservation != null && reservation.getParkingType() == parkingType){
+                int reserved = reservation.getParkingNumber();
+                int claimed = parkingSpotRepository.claimSlot(reserved);
+                if(claimed > 0){
+                    if(strategy != null){
+                        strategy.taken(reserved);
+                    }
+                    return reserved;
+                }
+                if(claimed < 0){
+                    return -1;
+                }
+                //the booked spot is still taken: any spot nobody booked will do
+                logger.error("Reserved spot " + reserved + " of vehicle " + vehicleRegNumber + " is not free");
             }
-            case 2: {
-                return ParkingType.BIKE;
+            allowed = number -> index.isFree(number, now, holdUntil);
+        }
+        if(strategy == null){
+            return (allowed == null) ? parkingSpotRepository.claimNextAvailableSlot(parkingType)
+                    : parkingSpotRepository.claimNextAvailableSlot(parkingType, allowed);
+        }
+        while(true){
+            int parkingNumber = strategy.take(parkingType, allowed);
+            if(parkingNumber == 0){
+                return 0;
             }
-            default: {
-                System.out.println("Incorrect input provided");
-                throw new IllegalArgumentException("Entered input is invalid");
+            int claimed = parkingSpotRepository.claimSlot(parkingNumber);
+            if(claimed > 0){
+                return parkingNumber;
             }
+            if(claimed < 0){
+                strategy.release(parkingNumber);
+                return -1;
+            }
+            //taken by a gate outside this strategy: it is out of the strategy until its exit frees it, try the next one
         }
     }
 
-    public void processExitingVehicle() {
-        try{
-            String vehicleRegNumber = getVehichleRegNumber();
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
-            Date outTime = new Date();
-            ticket.setOutTime(outTime);
-            
-            int ticketsCount = ticketDAO.getNbTicket(vehicleRegNumber);
-            if (ticketsCount > 1){
-                fareCalculatorService.calculateFare(ticket, true);
-            }else {
-                fareCalculatorService.calculateFare(ticket);
+    /**
+     * Frees a spot claimed for an entry that did not go through.
+     */
+    private void giveBackSpot(ParkingSpot parkingSpot) {
+        parkingSpot.setAvailable(true);
+        if(parkingSpotRepository.updateParking(parkingSpot)){
+            releaseToStrategy(parkingSpot.getId());
+            EventJournal journal = eventJournal;
+            if(journal != null){
+                try {
+                    journal.spotChange(parkingSpot.getId(), parkingSpot.getParkingType(), true);
+                }catch (RuntimeException journalError){
+                    logger.error("Error recording spot change in the event journal", journalError);
+                }
             }
+        }
+    }
 
-            if(ticketDAO.updateTicket(ticket)) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
-                
-                // Formater le prix en euros (€)
-                NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(Locale.FRANCE);
-                String formattedPrice = currencyFormat.format(ticket.getPrice());
-                
-                System.out.printf( "Please pay the parking fare:" + formattedPrice);
-                System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
+    private void releaseToStrategy(int parkingNumber) {
+        SpotAllocationStrategy strategy = allocationStrategy;
+        if(strategy != null){
+            strategy.release(parkingNumber);
+        }
+    }
+
+    private static void checkVehicleRegNumber(String vehicleRegNumber, OperationMetrics metrics) {
+        if(vehicleRegNumber == null || vehicleRegNumber.trim().length()==0) {
+            metrics.recordError();
+            throw new IllegalArgumentException("Invalid vehicle registration number");
+        }
+    }
+
+    /**
+     * @return the spot the next entry of this type would get, left free, or null when the type is full
+     */
+    public ParkingSpot getNextParkingNumberIfAvailable(ParkingType parkingType){
+        ParkingSpot parkingSpot = null;
+        try{
+            SpotAllocationStrategy strategy = allocationStrategy;
+            int parkingNumber = (strategy != null) ? strategy.peek(parkingType) : parkingSpotRepository.getNextAvailableSlot(parkingType);
+            if(parkingNumber > 0){
+                parkingSpot = new ParkingSpot(parkingNumber,parkingType, true);
             }else{
-                System.out.println("Unable to update ticket information. Error occurred");
+                throw new Exception("Error fetching parking number from DB. Parking slots might be full");
             }
         }catch(Exception e){
-            logger.error("Unable to process exiting vehicle",e);
+            logger.error("Error fetching next available parking slot", e);
         }
+        return parkingSpot;
     }
-}
\ No newline at end of file
+}
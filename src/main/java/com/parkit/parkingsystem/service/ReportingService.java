@@ -0,0 +1,233 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Revenue, average stay and turnover of each ParkingType per hour or per day, computed from the closed tickets,
+ * archived ones included.
+ * The tickets are streamed in exit order through a forward-only cursor with a bounded fetch size, and added
+ * to primitive accumulators of the current time bucket. A bucket is handed on as soon as the next one starts,
+ * so the memory used does not grow with the period covered.
+ */
+public class ReportingService {
+
+    private static final Logger logger = LogManager.getLogger("ReportingService");
+
+    private static final OperationMetrics REPORT_METRICS = Metrics.operation("ReportingService.report");
+
+    public static final int DEFAULT_FETCH_SIZE = 10000;
+    public static final String CSV_HEADER = "bucket_start,parking_type,tickets,revenue,average_stay_minutes,turnover";
+
+    public enum Granularity {
+        HOUR(ChronoUnit.HOURS),
+        DAY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Granularity(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        /**
+         * @return the start of the bucket holding this time, on the clock of the zone
+         */
+        public ZonedDateTime bucketStart(long epochMillis, ZoneId zone) {
+            return Instant.ofEpochMilli(epochMillis).atZone(zone).truncatedTo(unit);
+        }
+    }
+
+    /**
+     * Receives the tickets of one type closed in one bucket, buckets in time order.
+     * Types without tickets in a bucket are left out.
+     */
+    public interface RowHandler {
+        void onRow(ZonedDateTime bucketStart, ParkingType parkingType, long tickets, long revenueMinorUnits,
+                   long totalStayMillis, int spots) throws IOException;
+    }
+
+    private final DataBaseConfig dataBaseConfig;
+    private final ZoneId zone;
+    private final int fetchSize;
+
+    public ReportingService(DataBaseConfig dataBaseConfig, ZoneId zone) {
+        this(dataBaseConfig, zone, DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * @param zone the clock the buckets follow, days included
+     * @param fetchSize rows the driver holds at a time
+     */
+    public ReportingService(DataBaseConfig dataBaseConfig, ZoneId zone, int fetchSize) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.zone = zone;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Aggregates the tickets closed in [from, to).
+     * @return the number of tickets read, or -1 on error
+     */
+    public long report(Date from, Date to, Granularity granularity, RowHandler handler) {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            Bucket bucket = new Bucket(countSpots(con));
+            //TicketArchiver moves the oldest tickets first, so the archived ones all left before the live ones
+            long ticketsRead = read(con, DBConstants.GET_ARCHIVED_TICKETS_BY_OUT_TIME, from, to, granularity, bucket, handler);
+            ticketsRead += read(con, DBConstants.GET_CLOSED_TICKETS_BY_OUT_TIME, from, to, granularity, bucket, handler);
+            bucket.flush(handler);
+            REPORT_METRICS.recordRows(ticketsRead);
+            return ticketsRead;
+        }catch (Exception ex){
+            logger.error("Error building ticket report", ex);
+            REPORT_METRICS.recordError();
+            return -1;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            REPORT_METRICS.record(start);
+        }
+    }
+
+    private long read(Connection con, String sql, Date from, Date to, Granularity granularity, Bucket bucket, RowHandler handler) throws Exception {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = con.prepareStatement(sql);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, new Timestamp(from.getTime()));
+            ps.setTimestamp(2, new Timestamp(to.getTime()));
+            rs = ps.executeQuery();
+            long ticketsRead = 0;
+            while(rs.next()){
+                long outTime = rs.getTimestamp(2).getTime();
+                if(outTime >= bucket.endMillis){
+                    bucket.flush(handler);
+                    bucket.start(granularity.bucketStart(outTime, zone), granularity.unit);
+                }
+                bucket.add(ParkingType.valueOf(rs.getString(4)).ordinal(), FareEngine.toMinorUnits(rs.getDouble(3)),
+                        outTime - rs.getTimestamp(1).getTime());
+                ticketsRead++;
+            }
+            return ticketsRead;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+
+    /**
+     * Writes the report as CSV, CSV_HEADER first: revenue in currency units, stays in minutes
+     * and turnover in tickets per spot of the type.
+     * @return the number of tickets read, or -1 on error
+     */
+    public long writeCsv(Date from, Date to, Granularity granularity, final Writer out) {
+        try {
+            out.write(CSV_HEADER);
+            out.write('\n');
+        } catch (IOException e) {
+            logger.error("Error writing ticket report", e);
+            return -1;
+        }
+        long ticketsRead = report(from, to, granularity, (bucketStart, parkingType, tickets, revenueMinorUnits, totalStayMillis, spots) -> {
+            out.write(bucketStart.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+            out.write(',');
+            out.write(parkingType.name());
+            out.write(',');
+            out.write(Long.toString(tickets));
+            out.write(',');
+            out.write(BigDecimal.valueOf(revenueMinorUnits).divide(BigDecimal.valueOf(FareEngine.MINOR_UNITS_PER_UNIT)).toPlainString());
+            out.write(',');
+            out.write(String.format(Locale.ROOT, "%.1f", totalStayMillis / (tickets * 60000.0)));
+            out.write(',');
+            if(spots > 0){
+                out.write(String.format(Locale.ROOT, "%.2f", tickets / (double) spots));
+            }
+            out.write('\n');
+        });
+        try {
+            out.flush();
+        } catch (IOException e) {
+            logger.error("Error writing ticket report", e);
+            return -1;
+        }
+        return ticketsRead;
+    }
+
+    private static int[] countSpots(Connection con) throws Exception {
+        int[] spots = new int[ParkingType.values().length];
+        PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_PARKING_SPOTS_BY_TYPE);
+        try {
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                spots[ParkingType.valueOf(rs.getString(1)).ordinal()] = rs.getInt(2);
+            }
+            rs.close();
+        } finally {
+            ps.close();
+        }
+        return spots;
+    }
+
+    /**
+     * The accumulators of the current bucket, by ParkingType ordinal.
+     */
+    private static final class Bucket {
+        private final int[] spots;
+        private final long[] tickets = new long[ParkingType.values().length];
+        private final long[] revenueMinorUnits = new long[ParkingType.values().length];
+        private final long[] stayMillis = new long[ParkingType.values().length];
+        private ZonedDateTime start;
+        //no bucket yet: the first ticket starts one
+        private long endMillis = Long.MIN_VALUE;
+
+        private Bucket(int[] spots) {
+            this.spots = spots;
+        }
+
+        private void start(ZonedDateTime start, ChronoUnit unit) {
+            this.start = start;
+            this.endMillis = start.plus(1, unit).toInstant().toEpochMilli();
+        }
+
+        private void add(int type, long revenue, long stay) {
+            tickets[type]++;
+            revenueMinorUnits[type] += revenue;
+            stayMillis[type] += stay;
+        }
+
+        private void flush(RowHandler handler) throws IOException {
+            for(ParkingType parkingType : ParkingType.values()){
+                int type = parkingType.ordinal();
+                if(tickets[type] > 0){
+                    handler.onRow(start, parkingType, tickets[type], revenueMinorUnits[type], stayMillis[type], spots[type]);
+                }
+            }
+            Arrays.fill(tickets, 0);
+            Arrays.fill(revenueMinorUnits, 0);
+            Arrays.fill(stayMillis, 0);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.dao.ReservationIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+/**
+ * Books spots ahead of time. Availability is answered from a ReservationIndex, the bookings are written
+ * through to the reservation table and read back into the index by load at startup.
+ * A ParkingService given this service keeps booked spots away from other vehicles, see getHoldMillis.
+ */
+public class ReservationService {
+
+    private static final Logger logger = LogManager.getLogger("ReservationService");
+
+    public static final long DEFAULT_HOLD_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long PURGE_PERIOD_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final ReservationDAO reservationDAO;
+    private final long holdMillis;
+    private final ParkingSpotRepository parkingSpotRepository;
+    private volatile ReservationIndex reservationIndex;
+    private volatile long lastPurgeMillis;
+
+    public ReservationService(ReservationDAO reservationDAO) {
+        this(reservationDAO, DEFAULT_HOLD_MILLIS);
+    }
+
+    /**
+     * @param reservationDAO where the bookings are kept, or null to keep them in memory only
+     * @param holdMillis how early a booked vehicle may arrive, and how long before a booking its spot stops being
+     *                   given to other vehicles
+     */
+    public ReservationService(ReservationDAO reservationDAO, long holdMillis) {
+        this(reservationDAO, holdMillis, null);
+    }
+
+    /**
+     * @param parkingSpotRepository the spots of the lot: a booking starting within holdMillis does not get a spot
+     *                              a vehicle is parked in. May be null to book spots whatever their occupancy
+     */
+    public ReservationService(ReservationDAO reservationDAO, long holdMillis, ParkingSpotRepository parkingSpotRepository) {
+        if(holdMillis <= 0){
+            throw new IllegalArgumentException("Hold time must be positive");
+        }
+        this.reservationDAO = reservationDAO;
+        this.holdMillis = holdMillis;
+        this.parkingSpotRepository = parkingSpotRepository;
+    }
+
+    /**
+     * Builds the index over these spots and fills it with the bookings not ended yet.
+     * Until it succeeds, reserve returns null and the entries ignore reservations.
+     */
+    public boolean load(Iterable<ParkingSpot> parkingSpots) {
+        if(parkingSpots == null){
+            return false;
+        }
+        ReservationIndex index = new ReservationIndex(parkingSpots);
+        if(reservationDAO != null){
+            List<Reservation> reservations = reservationDAO.getReservationsEndingAfter(new Date());
+            if(reservations == null){
+                return false;
+            }
+            for(Reservation reservation : reservations){
+                if(!index.add(reservation)){
+                    logger.error("Reservation " + reservation.getId() + " overlaps another booking of spot " + reservation.getParkingNumber());
+                }
+            }
+            logger.info("Loaded " + reservations.size() + " reservations in memory");
+        }
+        lastPurgeMillis = System.currentTimeMillis();
+        reservationIndex = index;
+        return true;
+    }
+
+    /**
+     * Books a spot of this type for [start, end).
+     * @return the reservation, or null when no spot is free over the whole period, the reservations are not loaded
+     * or the booking could not be saved
+     */
+    public Reservation reserve(String vehicleRegNumber, ParkingType parkingType, Date start, Date end) {
+        if(vehicleRegNumber == null || vehicleRegNumber.trim().length() == 0){
+            throw new IllegalArgumentException("Invalid vehicle registration number");
+        }
+        if(parkingType == null || start == null || end == null || !start.before(end)){
+            throw new IllegalArgumentException("A parking type and a period ending after it starts are required");
+        }
+        ReservationIndex index = reservationIndex;
+        if(index == null){
+            logger.error("Reservations are not loaded");
+            return null;
+        }
+        purgeEnded(index);
+        final ParkingSpotRepository spots = parkingSpotRepository;
+        IntPredicate allowed = null;
+        if(spots != null && start.getTime() < System.currentTimeMillis() + holdMillis){
+            //the vehicle may arrive before the one parked there leaves
+            allowed = parkingNumber -> !spots.isOccupied(parkingNumber);
+        }
+        Reservation reservation = index.reserve(vehicleRegNumber, parkingType, start, end, allowed);
+        if(reservation == null){
+            return null;
+        }
+        if(reservationDAO != null && !reservationDAO.saveReservation(reservation)){
+            index.remove(reservation);
+            return null;
+        }
+        return reservation;
+    }
+
+    public boolean cancel(Reservation reservation) {
+        ReservationIndex index = reservationIndex;
+        if(index == null || !index.remove(reservation)){
+            return false;
+        }
+        if(reservationDAO != null && !reservationDAO.deleteReservation(reservation)){
+            index.add(reservation);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the spot has no booking over [start, end); false as well while the reservations are not loaded
+     */
+    public boolean isFree(int parkingNumber, Date start, Date end) {
+        ReservationIndex index = reservationIndex;
+        return index != null && index.isFree(parkingNumber, start.getTime(), end.getTime());
+    }
+
+    /**
+     * @return the index of the bookings, or null until load succeeds
+     */
+    public ReservationIndex getReservationIndex() {
+        return reservationIndex;
+    }
+
+    public long getHoldMillis() {
+        return holdMillis;
+    }
+
+    private void purgeEnded(ReservationIndex index) {
+        long now = System.currentTimeMillis();
+        if(now - lastPurgeMillis >= PURGE_PERIOD_MILLIS){
+            lastPurgeMillis = now;
+            index.removeEndedBefore(now);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Does the slow first-time work before the gates open instead of on the first vehicle: loads the driver,
+ * opens and validates pool connections, prepares the entry and exit statements on each of them,
+ * and loads the parking table and the open tickets into the DAOs, all in parallel.
+ */
+public class StartupWarmUp {
+
+    private static final Logger logger = LogManager.getLogger("StartupWarmUp");
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long TIMEOUT_SECONDS = 30;
+    //the parking table and open ticket loads, each needs a pool connection while the primed ones are held
+    private static final int LOADERS = 2;
+
+    //the statements of an entry and an exit, SAVE_OPEN_TICKET as TicketDAO prepares it
+    private static final String[] HOT_STATEMENTS = {
+            DBConstants.CLAIM_PARKING_SPOT,
+            DBConstants.UPDATE_PARKING_SPOT,
+            DBConstants.GET_TICKET,
+            DBConstants.COUNT_TICKET,
+            DBConstants.UPDATE_TICKET,
+            DBConstants.GET_OPEN_TICKET_FOR_UPDATE,
+            DBConstants.CLOSE_TICKET,
+            DBConstants.RELEASE_PARKING_SPOT
+    };
+
+    public static final class Summary {
+        private final int connectionsPrimed;
+        private final int statementsPrepared;
+        private final boolean parkingSpotsLoaded;
+        private final boolean openTicketsLoaded;
+        private final long elapsedMillis;
+
+        private Summary(int connectionsPrimed, int statementsPrepared, boolean parkingSpotsLoaded, boolean openTicketsLoaded, long elapsedMillis) {
+            this.connectionsPrimed = connectionsPrimed;
+            this.statementsPrepared = statementsPrepared;
+            this.parkingSpotsLoaded = parkingSpotsLoaded;
+            this.openTicketsLoaded = openTicketsLoaded;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * @return the pool connections opened, validated and left idle with their statements prepared
+         */
+        public int getConnectionsPrimed() {
+            return connectionsPrimed;
+        }
+
+        public int getStatementsPrepared() {
+            return statementsPrepared;
+        }
+
+        public boolean isParkingSpotsLoaded() {
+            return parkingSpotsLoaded;
+        }
+
+        public boolean isOpenTicketsLoaded() {
+            return openTicketsLoaded;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return true when every step succeeded, otherwise the app still runs and does the rest on first use
+         */
+        public boolean isComplete() {
+            return connectionsPrimed > 0 && parkingSpotsLoaded && openTicketsLoaded;
+        }
+    }
+
+    private final DataBaseConfig dataBaseConfig;
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+    private final int connections;
+
+    /**
+     * Warms up the database of ticketDAO.
+     * @param connections pool connections to open, each one is held until all are open so they are distinct;
+     *                    at most the pool size minus the connections of the two loads
+     */
+    public StartupWarmUp(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO, int connections) {
+        this.dataBaseConfig = ticketDAO.dataBaseConfig;
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+        this.connections = connections;
+    }
+
+    public Summary run() {
+        long start = System.nanoTime();
+        try {
+            DataBaseConfig.registerDriver();
+        } catch (ClassNotFoundException e) {
+            logger.error("Error loading the database driver", e);
+        }
+        int connections = primableConnections();
+        ExecutorService executor = Executors.newFixedThreadPool(connections + 2, new ThreadFactory() {
+            private final AtomicInteger threads = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "warm-up-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        AtomicInteger statementsPrepared = new AtomicInteger();
+        CountDownLatch allOpen = new CountDownLatch(connections);
+        Future<Boolean> parkingSpots = executor.submit(parkingSpotDAO::loadFreeSpotIndex);
+        Future<Boolean> openTickets = executor.submit(ticketDAO::loadOpenTickets);
+        List<Future<Boolean>> primed = new ArrayList<>();
+        for(int i = 0; i < connections; i++){
+            primed.add(executor.submit(() -> primeConnection(allOpen, statementsPrepared)));
+        }
+        int connectionsPrimed = 0;
+        for(Future<Boolean> connection : primed){
+            if(succeeded(connection)){
+                connectionsPrimed++;
+            }
+        }
+        boolean parkingSpotsLoaded = succeeded(parkingSpots);
+        boolean openTicketsLoaded = succeeded(openTickets);
+        executor.shutdownNow();
+        Summary summary = new Summary(connectionsPrimed, statementsPrepared.get(), parkingSpotsLoaded, openTicketsLoaded,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        String message = "Warm-up took " + summary.getElapsedMillis() + " ms: " + connectionsPrimed + "/" + connections
+                + " connections primed, " + summary.getStatementsPrepared() + " statements prepared, parking spots "
+                + (parkingSpotsLoaded ? "loaded" : "not loaded") + ", open tickets " + (openTicketsLoaded ? "loaded" : "not loaded");
+        if(summary.isComplete()){
+            logger.info(message);
+        }else {
+            logger.error(message);
+        }
+        return summary;
+    }
+
+    private int primableConnections() {
+        try {
+            ConnectionPool pool = dataBaseConfig.getConnectionPool();
+            if(pool != null && connections > pool.getMaxSize() - LOADERS){
+                int primable = Math.max(0, pool.getMaxSize() - LOADERS);
+                logger.info("Priming " + primable + " connections instead of " + connections + " to leave the loads room in the pool");
+                return primable;
+            }
+        } catch (ClassNotFoundException e) {
+            logger.error("Error loading the database driver", e);
+        }
+        return connections;
+    }
+
+    private boolean primeConnection(CountDownLatch allOpen, AtomicInteger statementsPrepared) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            if(!con.isValid(VALIDATION_TIMEOUT_SECONDS)){
+                logger.error("Warm-up got an invalid DB connection");
+                return false;
+            }
+            dataBaseConfig.closePreparedStatement(con.prepareStatement(DBConstants.SAVE_OPEN_TICKET, Statement.RETURN_GENERATED_KEYS));
+            statementsPrepared.incrementAndGet();
+            for(String sql : HOT_STATEMENTS){
+                PreparedStatement ps = con.prepareStatement(sql);
+                dataBaseConfig.closePreparedStatement(ps);
+                statementsPrepared.incrementAndGet();
+            }
+            return true;
+        }catch (Exception ex){
+            logger.error("Error warming up a DB connection", ex);
+            return false;
+        }finally {
+            allOpen.countDown();
+            try {
+                //released together, otherwise the next task would take this connection back from the pool
+                allOpen.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private static boolean succeeded(Future<Boolean> step) {
+        try {
+            return step.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.error("Warm-up step failed", e);
+            return false;
+        }
+    }
+}
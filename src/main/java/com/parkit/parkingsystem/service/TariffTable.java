@@ -0,0 +1,156 @@
+package com.parkit.parkingsystem.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tariff of one ParkingType, compiled into primitive arrays so a fare is computed without allocation.
+ * Amounts are in minor units, see FareEngine.MINOR_UNITS_PER_UNIT.
+ * <ul>
+ * <li>free period: stays up to this long cost nothing, longer stays are charged from the first minute</li>
+ * <li>rate bands: hourly rate charged pro rata from an elapsed time on, e.g. 1500/h then 1000/h after 3h</li>
+ * <li>daily cap: most charged per 24h, the bands start again with each 24h</li>
+ * <li>loyalty discount: in basis points, taken off the total for recurring users</li>
+ * </ul>
+ */
+public final class TariffTable {
+
+    static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+    static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+    private static final long BASIS_POINTS = 10000;
+
+    private final long freePeriodMillis;
+    private final long[] bandStartMillis;
+    private final long[] bandRatePerHour;
+    private final long dailyCap;
+    private final long loyaltyDiscountBasisPoints;
+
+    private TariffTable(Builder builder) {
+        int bands = builder.bandStarts.size();
+        this.freePeriodMillis = builder.freePeriodMillis;
+        this.bandStartMillis = new long[bands];
+        this.bandRatePerHour = new long[bands];
+        for(int i = 0; i < bands; i++){
+            bandStartMillis[i] = builder.bandStarts.get(i);
+            bandRatePerHour[i] = builder.bandRates.get(i);
+        }
+        this.dailyCap = builder.dailyCap;
+        this.loyaltyDiscountBasisPoints = builder.loyaltyDiscountBasisPoints;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param durationMillis time between entry and exit, not negative
+     * @return the fare in minor units, rounded half up
+     */
+    public long price(long durationMillis, boolean loyalty) {
+        if(durationMillis <= freePeriodMillis){
+            return 0;
+        }
+        long amount;
+        if(dailyCap > 0){
+            long days = durationMillis / MILLIS_PER_DAY;
+            amount = days * dailyCap + Math.min(dailyCap, banded(durationMillis % MILLIS_PER_DAY));
+        }else {
+            amount = banded(durationMillis);
+        }
+        if(loyalty && loyaltyDiscountBasisPoints > 0){
+            amount = divideHalfUp(amount * (BASIS_POINTS - loyaltyDiscountBasisPoints), BASIS_POINTS);
+        }
+        return amount;
+    }
+
+    private long banded(long durationMillis) {
+        //sum of millis * rate per hour, divided once so the bands do not each add a rounding error
+        long total = 0;
+        for(int i = 0; i < bandStartMillis.length; i++){
+            long from = bandStartMillis[i];
+            if(durationMillis <= from){
+                break;
+            }
+            long to = (i + 1 < bandStartMillis.length) ? Math.min(durationMillis, bandStartMillis[i + 1]) : durationMillis;
+            total += (to - from) * bandRatePerHour[i];
+        }
+        return divideHalfUp(total, MILLIS_PER_HOUR);
+    }
+
+    static long divideHalfUp(long dividend, long divisor) {
+        return (dividend + divisor / 2) / divisor;
+    }
+
+    public long getFreePeriodMillis() {
+        return freePeriodMillis;
+    }
+
+    public long getDailyCap() {
+        return dailyCap;
+    }
+
+    public long getLoyaltyDiscountBasisPoints() {
+        return loyaltyDiscountBasisPoints;
+    }
+
+    public static final class Builder {
+        private long freePeriodMillis;
+        private final List<Long> bandStarts = new ArrayList<>();
+        private final List<Long> bandRates = new ArrayList<>();
+        private long dailyCap;
+        private long loyaltyDiscountBasisPoints;
+
+        private Builder() {
+        }
+
+        public Builder freePeriodMinutes(int minutes) {
+            if(minutes < 0){
+                throw new IllegalArgumentException("Free period must not be negative: " + minutes);
+            }
+            this.freePeriodMillis = minutes * 60L * 1000;
+            return this;
+        }
+
+        /**
+         * Charges ratePerHour from fromMinutes of elapsed time until the next band; the first band must start at 0.
+         */
+        public Builder rate(int fromMinutes, long ratePerHour) {
+            long from = fromMinutes * 60L * 1000;
+            if(ratePerHour < 0){
+                throw new IllegalArgumentException("Rate must not be negative: " + ratePerHour);
+            }
+            if(bandStarts.isEmpty() ? from != 0 : from <= bandStarts.get(bandStarts.size() - 1)){
+                throw new IllegalArgumentException("Rate bands must start at 0 and be in increasing order: " + fromMinutes);
+            }
+            bandStarts.add(from);
+            bandRates.add(ratePerHour);
+            return this;
+        }
+
+        /**
+         * @param dailyCap most charged per 24h, 0 for no cap
+         */
+        public Builder dailyCap(long dailyCap) {
+            if(dailyCap < 0){
+                throw new IllegalArgumentException("Daily cap must not be negative: " + dailyCap);
+            }
+            this.dailyCap = dailyCap;
+            return this;
+        }
+
+        public Builder loyaltyDiscountPercent(int percent) {
+            if(percent < 0 || percent > 100){
+                throw new IllegalArgumentException("Discount must be between 0 and 100: " + percent);
+            }
+            this.loyaltyDiscountBasisPoints = percent * 100L;
+            return this;
+        }
+
+        public TariffTable build() {
+            if(bandStarts.isEmpty()){
+                throw new IllegalArgumentException("Tariff has no rate");
+            }
+            return new TariffTable(this);
+        }
+    }
+}
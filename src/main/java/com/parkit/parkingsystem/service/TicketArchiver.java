@@ -0,0 +1,225 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the tickets closed longer ago than maxAgeMillis from ticket to ticket_archive, so the table the gates
+ * query stays the size of the recent traffic. The archived visits of each plate are added to plate_visits,
+ * which COUNT_TICKET adds back so getNbTicket and the recurring user discount do not change.
+ * Tickets are moved oldest first, chunkSize per transaction with a pause between transactions,
+ * so row locks are held briefly and only on tickets the gates no longer touch.
+ */
+public class TicketArchiver {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiver");
+
+    private static final OperationMetrics ARCHIVE_CHUNK_METRICS = Metrics.operation("TicketArchiver.archiveChunk");
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    public static final long DEFAULT_PAUSE_MILLIS = 50;
+
+    public DataBaseConfig dataBaseConfig;
+
+    private final long maxAgeMillis;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private ScheduledExecutorService scheduler;
+
+    public TicketArchiver(DataBaseConfig dataBaseConfig, long maxAgeMillis) {
+        this(dataBaseConfig, maxAgeMillis, DEFAULT_CHUNK_SIZE, DEFAULT_PAUSE_MILLIS);
+    }
+
+    /**
+     * @param maxAgeMillis tickets closed longer ago than this are archived
+     * @param chunkSize tickets moved per transaction
+     * @param pauseMillis wait between two transactions
+     */
+    public TicketArchiver(DataBaseConfig dataBaseConfig, long maxAgeMillis, int chunkSize, long pauseMillis) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.maxAgeMillis = maxAgeMillis;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    public synchronized void start(long period, TimeUnit unit) {
+        if(scheduler != null){
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::archive, period, period, unit);
+    }
+
+    /**
+     * Stops the schedule; a run in progress ends after its current chunk.
+     */
+    public synchronized void stop() {
+        if(scheduler != null){
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Archives every ticket old enough, one chunk after the other.
+     * @return the number of tickets archived, or -1 if a chunk failed; the chunks before it stay archived
+     */
+    public long archive() {
+        Date cutoff = new Date(System.currentTimeMillis() - maxAgeMillis);
+        long archived = 0;
+        while(true){
+            int moved = archiveChunk(cutoff);
+            if(moved < 0){
+                logger.error("Ticket archival stopped after " + archived + " tickets");
+                return -1;
+            }
+            archived += moved;
+            if(moved < chunkSize){
+                break;
+            }
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if(archived > 0){
+            logger.info("Archived " + archived + " tickets closed before " + cutoff);
+        }
+        return archived;
+    }
+
+    /**
+     * Moves up to chunkSize of the oldest tickets closed before cutoff in one transaction.
+     * @return the number of tickets moved, or -1 on error
+     */
+    public int archiveChunk(Date cutoff) {
+        long start = System.nanoTime();
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            ps = con.prepareStatement(DBConstants.GET_TICKETS_TO_ARCHIVE);
+            ps.setTimestamp(1, new Timestamp(cutoff.getTime()));
+            ps.setInt(2, chunkSize);
+            rs = ps.executeQuery();
+            int[] ids = new int[chunkSize];
+            int[] parkingNumbers = new int[chunkSize];
+            String[] plates = new String[chunkSize];
+            double[] prices = new double[chunkSize];
+            boolean[] priced = new boolean[chunkSize];
+            long[] inTimes = new long[chunkSize];
+            long[] outTimes = new long[chunkSize];
+            //visits, first in time and last out time of each plate of the chunk
+            Map<String, long[]> visits = new LinkedHashMap<>();
+            int count = 0;
+            while(count < chunkSize && rs.next()){
+                ids[count] = rs.getInt(1);
+                parkingNumbers[count] = rs.getInt(2);
+                plates[count] = rs.getString(3);
+                prices[count] = rs.getDouble(4);
+                priced[count] = !rs.wasNull();
+                inTimes[count] = rs.getTimestamp(5).getTime();
+                outTimes[count] = rs.getTimestamp(6).getTime();
+                long[] plateVisits = visits.get(plates[count]);
+                if(plateVisits == null){
+                    visits.put(plates[count], new long[]{1, inTimes[count], outTimes[count]});
+                }else {
+                    plateVisits[0]++;
+                    plateVisits[1] = Math.min(plateVisits[1], inTimes[count]);
+                    plateVisits[2] = Math.max(plateVisits[2], outTimes[count]);
+                }
+                count++;
+            }
+            dataBaseConfig.closeResultSet(rs);
+            rs = null;
+            dataBaseConfig.closePreparedStatement(ps);
+            ps = null;
+            if(count == 0){
+                con.commit();
+                return 0;
+            }
+
+            ps = con.prepareStatement(DBConstants.ARCHIVE_TICKET);
+            for(int i = 0; i < count; i++){
+                ps.setInt(1, ids[i]);
+                ps.setInt(2, parkingNumbers[i]);
+                ps.setString(3, plates[i]);
+                if(priced[i]){
+                    ps.setDouble(4, prices[i]);
+                }else {
+                    ps.setNull(4, Types.DOUBLE);
+                }
+                ps.setTimestamp(5, new Timestamp(inTimes[i]));
+                ps.setTimestamp(6, new Timestamp(outTimes[i]));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+
+            ps = con.prepareStatement(DBConstants.ADD_PLATE_VISITS);
+            for(Map.Entry<String, long[]> plateVisits : visits.entrySet()){
+                ps.setString(1, plateVisits.getKey());
+                ps.setInt(2, (int) plateVisits.getValue()[0]);
+                ps.setTimestamp(3, new Timestamp(plateVisits.getValue()[1]));
+                ps.setTimestamp(4, new Timestamp(plateVisits.getValue()[2]));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+
+            ps = con.prepareStatement(DBConstants.DELETE_TICKET);
+            for(int i = 0; i < count; i++){
+                ps.setInt(1, ids[i]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            con.commit();
+            ARCHIVE_CHUNK_METRICS.recordRows(count);
+            return count;
+        }catch (Exception ex){
+            logger.error("Error archiving tickets", ex);
+            ARCHIVE_CHUNK_METRICS.recordError();
+            rollback(con);
+            return -1;
+        }finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+            ARCHIVE_CHUNK_METRICS.record(start);
+        }
+    }
+
+    private void rollback(Connection con) {
+        if(con != null){
+            try {
+                con.rollback();
+            } catch (Exception e) {
+                logger.error("Error rolling back ticket archival", e);
+            }
+        }
+    }
+}
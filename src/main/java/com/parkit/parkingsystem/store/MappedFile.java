@@ -0,0 +1,83 @@
+package com.parkit.parkingsystem.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A data file of the store, mapped whole and remapped larger when a write goes past its end.
+ * Every file starts with a 64-byte header: int magic, int version, then fields of the file.
+ */
+final class MappedFile implements Closeable {
+
+    static final int HEADER_SIZE = 64;
+    private static final int VERSION = 1;
+    //one MappedByteBuffer addresses at most 2 GiB
+    private static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    MappedFile(Path path, int magic, long initialSize) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(initialSize, Math.max(channel.size(), HEADER_SIZE)));
+            if(created){
+                buffer.putInt(0, magic);
+                buffer.putInt(4, VERSION);
+                buffer.force();
+            }else if(buffer.getInt(0) != magic || buffer.getInt(4) != VERSION){
+                throw new IOException(path + " is not a store file of version " + VERSION);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Maps at least size bytes, doubling the mapping so the file is not remapped on every record.
+     */
+    void ensureCapacity(long size) throws IOException {
+        if(size <= buffer.capacity()){
+            return;
+        }
+        if(size > MAX_SIZE){
+            throw new IOException(path + " is full");
+        }
+        long newSize = Math.min(MAX_SIZE, Math.max(size, 2L * buffer.capacity()));
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+    }
+
+    void write(long offset, byte[] source, int sourceOffset, int length) throws IOException {
+        ensureCapacity(offset + length);
+        for(int i = 0; i < length; i++){
+            buffer.put((int) offset + i, source[sourceOffset + i]);
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
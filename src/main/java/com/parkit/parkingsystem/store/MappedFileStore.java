@@ -0,0 +1,673 @@
+package com.parkit.parkingsystem.store;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Tickets and parking spots stored in memory-mapped files of fixed-width records, for lots run without MySQL.
+ * Nothing is loaded onto the heap at startup but the free spot bits: tickets are read from their file and
+ * plates are looked up in an open-addressing hash table that is itself a mapped file.
+ * Every change goes through the RedoLog first, so the files are brought back to the last commit after a crash.
+ * <pre>
+ * tickets.dat  header: int count        record of ID x 64: int ID, int parking number, byte type, byte plate length,
+ *                                        long in time, long out time, long price bits, plate
+ * spots.dat    header: int last number  record of number x 8 after the header: byte type, byte available
+ * plates.idx   header: int capacity, int size
+ *                                        slot of 48 after the header: byte used, byte plate length, plate,
+ *                                        int first ticket ID, int open ticket ID, int ticket count
+ * </pre>
+ */
+public class MappedFileStore implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("MappedFileStore");
+
+    private static final OperationMetrics COMMIT_METRICS = Metrics.operation("MappedFileStore.commit");
+
+    static final int TICKETS = 0;
+    static final int SPOTS = 1;
+    static final int PLATES = 2;
+    private static final int[] MAGICS = {0x504B5431, 0x504B5331, 0x504B4931};
+    private static final String[] FILE_NAMES = {"tickets.dat", "spots.dat", "plates.idx"};
+
+    static final int TICKET_RECORD_SIZE = 64;
+    static final int SPOT_RECORD_SIZE = 8;
+    static final int PLATE_SLOT_SIZE = 48;
+    static final int MAX_PLATE_BYTES = 16;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int INITIAL_PLATE_CAPACITY = 1024;
+    //the log is emptied into the data files past this size
+    private static final long CHECKPOINT_LOG_BYTES = 4L * 1024 * 1024;
+
+    private final Path directory;
+    private final MappedFile[] files = new MappedFile[FILE_NAMES.length];
+    private final RedoLog redoLog;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FreeSpotIndex freeSpotIndex;
+    //after-images are built here under the write lock, the log copies them
+    private final ByteBuffer scratch = ByteBuffer.allocate(TICKET_RECORD_SIZE);
+    private final TicketRepository ticketRepository = new Tickets();
+    private final ParkingSpotRepository parkingSpotRepository = new Spots();
+    private boolean closed;
+    //a committed transaction could not be applied: the files are behind the log until the store is reopened
+    private boolean failed;
+
+    /**
+     * Opens the store in this directory, redoing the changes committed before a crash.
+     * A new store is created with carSpots car spots numbered from 1, then bikeSpots bike spots.
+     */
+    public MappedFileStore(String directory, int carSpots, int bikeSpots) throws IOException {
+        this.directory = Paths.get(directory);
+        Files.createDirectories(this.directory);
+        try {
+            files[TICKETS] = new MappedFile(path(TICKETS), MAGICS[TICKETS], 1024L * TICKET_RECORD_SIZE);
+            files[SPOTS] = new MappedFile(path(SPOTS), MAGICS[SPOTS], MappedFile.HEADER_SIZE);
+            files[PLATES] = new MappedFile(path(PLATES), MAGICS[PLATES], MappedFile.HEADER_SIZE + (long) INITIAL_PLATE_CAPACITY * PLATE_SLOT_SIZE);
+            if(plateCapacity() == 0){
+                files[PLATES].buffer().putInt(8, INITIAL_PLATE_CAPACITY);
+                files[PLATES].force();
+            }
+            redoLog = new RedoLog(this.directory.resolve("store.log"));
+        } catch (IOException | RuntimeException e) {
+            closeFiles();
+            throw e;
+        }
+        int redone = redoLog.replay(this::apply);
+        if(redone > 0){
+            logger.info("Redid " + redone + " transactions from the store log");
+        }
+        checkpoint();
+        if(lastParkingNumber() == 0 && carSpots + bikeSpots > 0){
+            createSpots(carSpots, bikeSpots);
+        }
+        freeSpotIndex = new FreeSpotIndex(readSpots());
+        logger.info("Opened store " + directory + " with " + ticketCount() + " tickets and " + lastParkingNumber() + " parking spots");
+    }
+
+    private Path path(int file) {
+        return directory.resolve(FILE_NAMES[file]);
+    }
+
+    public TicketRepository getTicketRepository() {
+        return ticketRepository;
+    }
+
+    public ParkingSpotRepository getParkingSpotRepository() {
+        return parkingSpotRepository;
+    }
+
+    private void apply(int file, long offset, byte[] source, int sourceOffset, int length) throws IOException {
+        files[file].write(offset, source, sourceOffset, length);
+    }
+
+    private void log(int file, long offset, int length) {
+        redoLog.write(file, offset, scratch.array(), length);
+    }
+
+    /**
+     * Commits the logged writes. Once they are in the log the transaction counts as done: if the files
+     * cannot be updated, the store refuses any further use and redoes it when reopened.
+     */
+    private void commit() throws IOException {
+        long start = System.nanoTime();
+        try {
+            redoLog.commit((file, size) -> files[file].ensureCapacity(size));
+            try {
+                redoLog.apply(this::apply);
+            } catch (IOException | RuntimeException e) {
+                failed = true;
+                COMMIT_METRICS.recordError();
+                logger.error("Error applying a committed transaction, the store must be reopened to redo it", e);
+                return;
+            }
+            if(redoLog.size() > CHECKPOINT_LOG_BYTES){
+                checkpoint();
+            }
+        } catch (IOException e) {
+            COMMIT_METRICS.recordError();
+            throw e;
+        } finally {
+            COMMIT_METRICS.record(start);
+        }
+    }
+
+    /**
+     * Forces the data files to disk, after which the log they were written from is no longer needed.
+     */
+    private void checkpoint() throws IOException {
+        for(MappedFile file : files){
+            file.force();
+        }
+        redoLog.truncate();
+    }
+
+    private int ticketCount() {
+        return files[TICKETS].buffer().getInt(8);
+    }
+
+    private int lastParkingNumber() {
+        return files[SPOTS].buffer().getInt(8);
+    }
+
+    private int plateCapacity() {
+        return files[PLATES].buffer().getInt(8);
+    }
+
+    private int plateCount() {
+        return files[PLATES].buffer().getInt(12);
+    }
+
+    private void createSpots(int carSpots, int bikeSpots) throws IOException {
+        int lastNumber = carSpots + bikeSpots;
+        for(int number = 1; number <= lastNumber; number++){
+            scratch.clear();
+            scratch.put(0, (byte) ((number <= carSpots ? ParkingType.CAR : ParkingType.BIKE).ordinal() + 1));
+            scratch.put(1, (byte) 1);
+            log(SPOTS, spotOffset(number), SPOT_RECORD_SIZE);
+        }
+        scratch.putInt(0, lastNumber);
+        log(SPOTS, 8, 4);
+        commit();
+    }
+
+    private List<ParkingSpot> readSpots() {
+        ByteBuffer spots = files[SPOTS].buffer();
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for(int number = 1; number <= lastParkingNumber(); number++){
+            int offset = (int) spotOffset(number);
+            int type = spots.get(offset);
+            if(type != 0){
+                parkingSpots.add(new ParkingSpot(number, ParkingType.values()[type - 1], spots.get(offset + 1) != 0));
+            }
+        }
+        return parkingSpots;
+    }
+
+    private static long spotOffset(int parkingNumber) {
+        return MappedFile.HEADER_SIZE + (long) parkingNumber * SPOT_RECORD_SIZE;
+    }
+
+    private ParkingType spotType(int parkingNumber) {
+        if(parkingNumber <= 0 || parkingNumber > lastParkingNumber()){
+            return null;
+        }
+        int type = files[SPOTS].buffer().get((int) spotOffset(parkingNumber));
+        return (type == 0) ? null : ParkingType.values()[type - 1];
+    }
+
+    private void logSpot(int parkingNumber, ParkingType parkingType, boolean available) {
+        scratch.clear();
+        scratch.put(0, (byte) (parkingType.ordinal() + 1));
+        scratch.put(1, (byte) (available ? 1 : 0));
+        log(SPOTS, spotOffset(parkingNumber), SPOT_RECORD_SIZE);
+    }
+
+    private static long plateSlotOffset(int slot) {
+        return MappedFile.HEADER_SIZE + (long) slot * PLATE_SLOT_SIZE;
+    }
+
+    /**
+     * @return the slot of the plate, or -(free slot) - 1 when it is not in the index
+     */
+    private static int findSlot(ByteBuffer plates, int capacity, byte[] plate) {
+        int hash = 0x811C9DC5;
+        for(byte b : plate){
+            hash = (hash ^ b) * 0x01000193;
+        }
+        int slot = (hash ^ (hash >>> 16)) & (capacity - 1);
+        while(true){
+            int offset = (int) plateSlotOffset(slot);
+            if(plates.get(offset) == 0){
+                return -slot - 1;
+            }
+            if(plates.get(offset + 1) == plate.length && plateEquals(plates, offset + 2, plate)){
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    private static boolean plateEquals(ByteBuffer buffer, int offset, byte[] plate) {
+        for(int i = 0; i < plate.length; i++){
+            if(buffer.get(offset + i) != plate[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int findSlot(byte[] plate) {
+        return findSlot(files[PLATES].buffer(), plateCapacity(), plate);
+    }
+
+    private int slotInt(int slot, int field) {
+        return files[PLATES].buffer().getInt((int) plateSlotOffset(slot) + field);
+    }
+
+    private void logPlateSlot(int slot, byte[] plate, int firstTicketId, int openTicketId, int ticketCount) {
+        scratch.clear();
+        scratch.put(0, (byte) 1);
+        scratch.put(1, (byte) plate.length);
+        for(int i = 0; i < MAX_PLATE_BYTES; i++){
+            scratch.put(2 + i, i < plate.length ? plate[i] : 0);
+        }
+        scratch.putInt(20, firstTicketId);
+        scratch.putInt(24, openTicketId);
+        scratch.putInt(28, ticketCount);
+        log(PLATES, plateSlotOffset(slot), 32);
+    }
+
+    /**
+     * Rehashes the plate index into a file twice as large, swapped in with an atomic rename.
+     * The log is emptied first so none of its records point into the old layout.
+     */
+    private void growPlateIndex() throws IOException {
+        checkpoint();
+        int capacity = plateCapacity() * 2;
+        Path newPath = directory.resolve(FILE_NAMES[PLATES] + ".tmp");
+        Files.deleteIfExists(newPath);
+        MappedFile newIndex = new MappedFile(newPath, MAGICS[PLATES], plateSlotOffset(capacity));
+        ByteBuffer from = files[PLATES].buffer();
+        ByteBuffer to = newIndex.buffer();
+        to.putInt(8, capacity);
+        to.putInt(12, plateCount());
+        byte[] plate = new byte[MAX_PLATE_BYTES];
+        for(int slot = 0; slot < plateCapacity(); slot++){
+            int offset = (int) plateSlotOffset(slot);
+            if(from.get(offset) == 0){
+                continue;
+            }
+            byte[] key = new byte[from.get(offset + 1)];
+            for(int i = 0; i < key.length; i++){
+                key[i] = from.get(offset + 2 + i);
+            }
+            int newOffset = (int) plateSlotOffset(-findSlot(to, capacity, key) - 1);
+            for(int i = 0; i < PLATE_SLOT_SIZE; i++){
+                to.put(newOffset + i, from.get(offset + i));
+            }
+        }
+        newIndex.close();
+        files[PLATES].close();
+        Files.move(newPath, path(PLATES), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        files[PLATES] = new MappedFile(path(PLATES), MAGICS[PLATES], 0);
+        logger.info("Plate index grown to " + capacity + " slots");
+    }
+
+    private static long ticketOffset(int id) {
+        return (long) id * TICKET_RECORD_SIZE;
+    }
+
+    private Ticket readTicket(int id) {
+        ByteBuffer tickets = files[TICKETS].buffer();
+        int offset = (int) ticketOffset(id);
+        Ticket ticket = new Ticket();
+        ticket.setId(tickets.getInt(offset));
+        ticket.setParkingSpot(new ParkingSpot(tickets.getInt(offset + 4), ParkingType.values()[tickets.get(offset + 8) - 1], false));
+        byte[] plate = new byte[tickets.get(offset + 9)];
+        for(int i = 0; i < plate.length; i++){
+            plate[i] = tickets.get(offset + 40 + i);
+        }
+        ticket.setVehicleRegNumber(new String(plate, StandardCharsets.UTF_8));
+        ticket.setInTime(new Date(tickets.getLong(offset + 16)));
+        long outTime = tickets.getLong(offset + 24);
+        ticket.setOutTime(outTime == NO_TIME ? null : new Date(outTime));
+        ticket.setPrice(Double.longBitsToDouble(tickets.getLong(offset + 32)));
+        return ticket;
+    }
+
+    private void logTicket(Ticket ticket, byte[] plate) {
+        scratch.clear();
+        scratch.putInt(0, ticket.getId());
+        scratch.putInt(4, ticket.getParkingSpot().getId());
+        scratch.put(8, (byte) (ticket.getParkingSpot().getParkingType().ordinal() + 1));
+        scratch.put(9, (byte) plate.length);
+        scratch.putLong(16, ticket.getInTime().getTime());
+        scratch.putLong(24, ticket.getOutTime() == null ? NO_TIME : ticket.getOutTime().getTime());
+        scratch.putLong(32, Double.doubleToLongBits(ticket.getPrice()));
+        for(int i = 0; i < MAX_PLATE_BYTES; i++){
+            scratch.put(40 + i, i < plate.length ? plate[i] : 0);
+        }
+        log(TICKETS, ticketOffset(ticket.getId()), TICKET_RECORD_SIZE);
+    }
+
+    private static byte[] plateBytes(String vehicleRegNumber) {
+        byte[] plate = vehicleRegNumber.getBytes(StandardCharsets.UTF_8);
+        if(plate.length == 0 || plate.length > MAX_PLATE_BYTES){
+            throw new IllegalArgumentException("Vehicle registration number must be 1 to " + MAX_PLATE_BYTES + " bytes: " + vehicleRegNumber);
+        }
+        return plate;
+    }
+
+    private final class Tickets implements TicketRepository {
+
+        @Override
+        public boolean saveTicket(Ticket ticket) {
+            if(ticket.getVehicleRegNumber() == null || ticket.getParkingSpot() == null || ticket.getInTime() == null){
+                logger.error("Error saving ticket info: incomplete ticket for " + ticket.getVehicleRegNumber());
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                byte[] plate = plateBytes(ticket.getVehicleRegNumber());
+                int slot = findSlot(plate);
+                if(slot >= 0 && ticket.getOutTime() == null && slotInt(slot, 24) != 0){
+                    logger.error("Error saving ticket info: vehicle " + ticket.getVehicleRegNumber() + " already has an open ticket");
+                    return false;
+                }
+                if(slot < 0 && (plateCount() + 1) * 10L > plateCapacity() * 7L){
+                    growPlateIndex();
+                    slot = findSlot(plate);
+                }
+                int id = ticketCount() + 1;
+                boolean open = ticket.getOutTime() == null;
+                Ticket stored = copyWithId(ticket, id);
+                logTicket(stored, plate);
+                scratch.putInt(0, id);
+                log(TICKETS, 8, 4);
+                if(slot >= 0){
+                    int openTicketId = slotInt(slot, 24);
+                    logPlateSlot(slot, plate, slotInt(slot, 20), (openTicketId == 0 && open) ? id : openTicketId, slotInt(slot, 28) + 1);
+                }else {
+                    logPlateSlot(-slot - 1, plate, id, open ? id : 0, 1);
+                    scratch.putInt(0, plateCount() + 1);
+                    log(PLATES, 12, 4);
+                }
+                commit();
+                ticket.setId(id);
+                return true;
+            }catch (Exception ex){
+                redoLog.rollback();
+                logger.error("Error saving ticket info", ex);
+                return false;
+            }finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public Ticket getTicket(String vehicleRegNumber) {
+            if(vehicleRegNumber == null){
+                return null;
+            }
+            lock.readLock().lock();
+            try {
+                checkOpen();
+                int slot = findSlot(plateBytes(vehicleRegNumber));
+                if(slot < 0){
+                    return null;
+                }
+                int openTicketId = slotInt(slot, 24);
+                return readTicket(openTicketId != 0 ? openTicketId : slotInt(slot, 20));
+            }catch (Exception ex){
+                logger.error("Error fetching ticket", ex);
+                return null;
+            }finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean updateTicket(Ticket ticket) {
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                if(ticket.getId() <= 0 || ticket.getId() > ticketCount()){
+                    logger.error("Error saving ticket info: no ticket " + ticket.getId());
+                    return false;
+                }
+                Ticket stored = readTicket(ticket.getId());
+                stored.setPrice(ticket.getPrice());
+                stored.setOutTime(ticket.getOutTime());
+                byte[] plate = plateBytes(stored.getVehicleRegNumber());
+                logTicket(stored, plate);
+                int slot = findSlot(plate);
+                if(stored.getOutTime() != null && slotInt(slot, 24) == stored.getId()){
+                    logPlateSlot(slot, plate, slotInt(slot, 20), 0, slotInt(slot, 28));
+                }
+                commit();
+                return true;
+            }catch (Exception ex){
+                redoLog.rollback();
+                logger.error("Error saving ticket info", ex);
+                return false;
+            }finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public int getNbTicket(String vehicleRegNumber) {
+            if(vehicleRegNumber == null){
+                return 0;
+            }
+            lock.readLock().lock();
+            try {
+                checkOpen();
+                int slot = findSlot(plateBytes(vehicleRegNumber));
+                return (slot < 0) ? 0 : slotInt(slot, 28);
+            }catch (Exception ex){
+                logger.error("Error counting tickets", ex);
+                return 0;
+            }finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Closes the ticket and frees its spot in one logged transaction.
+         */
+        @Override
+        public Ticket exitVehicle(String vehicleRegNumber, Date outTime, ExitPricing pricing) {
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                byte[] plate = plateBytes(vehicleRegNumber);
+                int slot = findSlot(plate);
+                if(slot < 0 || slotInt(slot, 24) == 0){
+                    logger.error("No open ticket for vehicle " + vehicleRegNumber);
+                    return null;
+                }
+                Ticket ticket = readTicket(slotInt(slot, 24));
+                ticket.setOutTime(outTime);
+                pricing.price(ticket, slotInt(slot, 28));
+                logTicket(ticket, plate);
+                logPlateSlot(slot, plate, slotInt(slot, 20), 0, slotInt(slot, 28));
+                ParkingSpot parkingSpot = ticket.getParkingSpot();
+                logSpot(parkingSpot.getId(), parkingSpot.getParkingType(), true);
+                commit();
+                freeSpotIndex.update(parkingSpot.getId(), true);
+                parkingSpot.setAvailable(true);
+                return ticket;
+            }catch (Exception ex){
+                redoLog.rollback();
+                logger.error("Error recording vehicle exit", ex);
+                return null;
+            }finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static Ticket copyWithId(Ticket ticket, int id) {
+        Ticket copy = new Ticket();
+        copy.setId(id);
+        copy.setParkingSpot(ticket.getParkingSpot());
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTime(ticket.getInTime());
+        copy.setOutTime(ticket.getOutTime());
+        return copy;
+    }
+
+    private final class Spots implements ParkingSpotRepository {
+
+        @Override
+        public int getNextAvailableSlot(ParkingType parkingType) {
+            return freeSpotIndex.nextAvailable(parkingType);
+        }
+
+        @Override
+        public boolean updateParking(ParkingSpot parkingSpot) {
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                ParkingType parkingType = spotType(parkingSpot.getId());
+                if(parkingType == null){
+                    logger.error("Error updating parking info: no spot " + parkingSpot.getId());
+                    return false;
+                }
+                logSpot(parkingSpot.getId(), parkingType, parkingSpot.isAvailable());
+                commit();
+                freeSpotIndex.update(parkingSpot.getId(), parkingSpot.isAvailable());
+                return true;
+            }catch (Exception ex){
+                redoLog.rollback();
+                logger.error("Error updating parking info", ex);
+                return false;
+            }finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public int claimNextAvailableSlot(ParkingType parkingType) {
+            return logClaim(parkingType, freeSpotIndex.claim(parkingType));
+        }
+
+        @Override
+        public int claimNextAvailableSlot(ParkingType parkingType, IntPredicate allowed) {
+            return logClaim(parkingType, freeSpotIndex.claim(parkingType, allowed));
+        }
+
+        @Override
+        public int claimSlot(int parkingNumber) {
+            if(!freeSpotIndex.claim(parkingNumber)){
+                return 0;
+            }
+            return logClaim(spotType(parkingNumber), parkingNumber) > 0 ? 1 : -1;
+        }
+
+        /**
+         * Makes a spot claimed in the index durable, or gives it back to the index if that fails.
+         */
+        private int logClaim(ParkingType parkingType, int parkingNumber) {
+            if(parkingNumber <= 0){
+                return parkingNumber;
+            }
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                logSpot(parkingNumber, parkingType, false);
+                commit();
+                return parkingNumber;
+            }catch (Exception ex){
+                redoLog.rollback();
+                freeSpotIndex.update(parkingNumber, true);
+                logger.error("Error claiming parking spot", ex);
+                return -1;
+            }finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * exitVehicle already freed the spot on disk and in the index.
+         */
+        @Override
+        public void onSpotReleased(ParkingSpot parkingSpot) {
+            freeSpotIndex.update(parkingSpot.getId(), true);
+        }
+
+        @Override
+        public int countAvailable(ParkingType parkingType) {
+            return freeSpotIndex.countAvailable(parkingType);
+        }
+
+        @Override
+        public int countOccupied(ParkingType parkingType) {
+            return freeSpotIndex.countOccupied(parkingType);
+        }
+
+        @Override
+        public boolean isOccupied(int parkingNumber) {
+            return freeSpotIndex.isOccupied(parkingNumber);
+        }
+
+        @Override
+        public void addOccupancyListener(OccupancyListener listener) {
+            freeSpotIndex.addListener(listener);
+        }
+
+        @Override
+        public void removeOccupancyListener(OccupancyListener listener) {
+            freeSpotIndex.removeListener(listener);
+        }
+    }
+
+    private void checkOpen() {
+        if(closed){
+            throw new IllegalStateException("Store is closed");
+        }
+        if(failed){
+            throw new IllegalStateException("Store must be reopened to redo its log");
+        }
+    }
+
+    /**
+     * Writes everything to the data files and empties the log.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if(closed){
+                return;
+            }
+            closed = true;
+            if(!failed){
+                checkpoint();
+            }
+            closeFiles();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void closeFiles() throws IOException {
+        IOException error = null;
+        for(Closeable file : new Closeable[]{files[TICKETS], files[SPOTS], files[PLATES], redoLog}){
+            try {
+                if(file != null){
+                    file.close();
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if(error != null){
+            throw error;
+        }
+    }
+}
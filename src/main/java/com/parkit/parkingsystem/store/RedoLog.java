@@ -0,0 +1,191 @@
+package com.parkit.parkingsystem.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the store. A transaction is a list of "write these bytes at this offset of this file"
+ * records followed by a commit record, all appended and forced to disk before the mapped files are touched.
+ * Replaying the committed transactions after a crash redoes their writes; a write is an after-image,
+ * so redoing it twice is harmless. A record that fails its CRC ends the log.
+ * <pre>
+ * record: 0 int CRC of bytes 4 to 95, 4 byte kind, 5 byte file, 6 byte length, 8 long transaction,
+ *         16 long offset, 24 data
+ * </pre>
+ */
+final class RedoLog implements Closeable {
+
+    static final int RECORD_SIZE = 96;
+    static final int MAX_DATA = RECORD_SIZE - 24;
+    private static final byte WRITE = 1;
+    private static final byte COMMIT = 2;
+
+    interface Redo {
+        void write(int file, long offset, byte[] source, int sourceOffset, int length) throws IOException;
+    }
+
+    interface Capacity {
+        void ensureCapacity(int file, long size) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * 8);
+    private long transaction;
+
+    RedoLog(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Adds a write to the current transaction.
+     */
+    void write(int file, long offset, byte[] data, int length) {
+        if(length > MAX_DATA){
+            throw new IllegalArgumentException("Log record data is limited to " + MAX_DATA + " bytes: " + length);
+        }
+        if(pending.remaining() < 2 * RECORD_SIZE){
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        int start = pending.position();
+        pending.putInt(0);
+        pending.put(WRITE);
+        pending.put((byte) file);
+        pending.put((byte) length);
+        pending.put((byte) 0);
+        pending.putLong(transaction + 1);
+        pending.putLong(offset);
+        pending.put(data, 0, length);
+        pending.position(start + RECORD_SIZE);
+        seal(start);
+    }
+
+    /**
+     * Makes room in the files for the writes of the transaction, then appends them and its commit record
+     * and forces them to disk. Once this returns the transaction is durable and must be applied.
+     * If it throws, nothing of the transaction is in the log.
+     */
+    void commit(Capacity capacity) throws IOException {
+        //growing a file can fail, so it is done while the transaction can still be dropped
+        for(int record = 0; record < pending.position(); record += RECORD_SIZE){
+            if(pending.get(record + 4) == WRITE){
+                capacity.ensureCapacity(pending.get(record + 5), pending.getLong(record + 16) + pending.get(record + 6));
+            }
+        }
+        int start = pending.position();
+        pending.putInt(0);
+        pending.put(COMMIT);
+        pending.position(start + 8);
+        pending.putLong(transaction + 1);
+        pending.position(start + RECORD_SIZE);
+        seal(start);
+        pending.flip();
+        long end = channel.size();
+        try {
+            long position = end;
+            while(pending.hasRemaining()){
+                position += channel.write(pending, position);
+            }
+            channel.force(false);
+            transaction++;
+        } catch (IOException e) {
+            //a torn transaction would hide the ones committed after it from replay
+            channel.truncate(end);
+            pending.clear();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands the writes of the transaction just committed to apply.
+     */
+    void apply(Redo apply) throws IOException {
+        try {
+            for(int record = 0; record < pending.limit(); record += RECORD_SIZE){
+                if(pending.get(record + 4) == WRITE){
+                    apply.write(pending.get(record + 5), pending.getLong(record + 16), pending.array(), record + 24, pending.get(record + 6));
+                }
+            }
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Drops the writes added since the last commit.
+     */
+    void rollback() {
+        pending.clear();
+    }
+
+    private void seal(int start) {
+        crc.reset();
+        crc.update(pending.array(), start + 4, RECORD_SIZE - 4);
+        pending.putInt(start, (int) crc.getValue());
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Redoes the committed transactions, in order.
+     * @return the number of transactions redone
+     */
+    int replay(Redo redo) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        List<byte[]> writes = new ArrayList<>();
+        int replayed = 0;
+        long position = 0;
+        while(true){
+            record.clear();
+            while(record.hasRemaining() && channel.read(record, position + record.position()) >= 0){
+                //read until the record is complete or the end of the file
+            }
+            if(record.hasRemaining()){
+                break;
+            }
+            crc.reset();
+            crc.update(record.array(), 4, RECORD_SIZE - 4);
+            if(record.getInt(0) != (int) crc.getValue()){
+                break;
+            }
+            position += RECORD_SIZE;
+            if(record.get(4) == WRITE){
+                writes.add(record.array().clone());
+                continue;
+            }
+            for(byte[] write : writes){
+                ByteBuffer buffer = ByteBuffer.wrap(write);
+                redo.write(buffer.get(5), buffer.getLong(16), write, 24, buffer.get(6));
+            }
+            writes.clear();
+            transaction = record.getLong(8);
+            replayed++;
+        }
+        return replayed;
+    }
+
+    /**
+     * Empties the log, once every write it holds is on disk in the data files.
+     */
+    void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
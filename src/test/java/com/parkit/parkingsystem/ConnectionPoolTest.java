@@ -0,0 +1,189 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConnectionPoolTest {
+
+    private AtomicInteger createdConnections;
+    private Connection physicalConnection;
+    private ConnectionPool connectionPool;
+
+    @BeforeEach
+    public void setUpPerTest() throws SQLException {
+        createdConnections = new AtomicInteger();
+        physicalConnection = mock(Connection.class);
+        when(physicalConnection.isValid(anyInt())).thenReturn(true);
+        when(physicalConnection.getAutoCommit()).thenReturn(true);
+        connectionPool = new ConnectionPool(() -> {
+            createdConnections.incrementAndGet();
+            return physicalConnection;
+        }, 2, 100, 60000, 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connectionPool.close();
+    }
+
+    @Test
+    public void borrowedConnectionIsReusedAfterClose() throws SQLException {
+        Connection first = connectionPool.borrowConnection();
+        first.close();
+        Connection second = connectionPool.borrowConnection();
+
+        assertTrue(first.isClosed());
+        assertFalse(second.isClosed());
+        assertEquals(1, createdConnections.get());
+        verify(physicalConnection, never()).close();
+    }
+
+    @Test
+    public void borrowTimesOutWhenPoolIsExhausted() throws SQLException {
+        connectionPool.borrowConnection();
+        connectionPool.borrowConnection();
+
+        assertThrows(SQLException.class, () -> connectionPool.borrowConnection());
+        assertEquals(2, connectionPool.getActiveCount());
+    }
+
+    @Test
+    public void invalidIdleConnectionIsReplaced() throws SQLException {
+        connectionPool.borrowConnection().close();
+        when(physicalConnection.isValid(anyInt())).thenReturn(false);
+
+        connectionPool.borrowConnection();
+
+        assertEquals(2, createdConnections.get());
+        verify(physicalConnection, times(1)).close();
+    }
+
+    @Test
+    public void pendingTransactionIsRolledBackOnRelease() throws SQLException {
+        Connection connection = connectionPool.borrowConnection();
+        when(physicalConnection.getAutoCommit()).thenReturn(false);
+
+        connection.close();
+
+        verify(physicalConnection, times(1)).rollback();
+        verify(physicalConnection, times(1)).setAutoCommit(true);
+    }
+
+    @Test
+    public void closedConnectionCannotBeUsed() throws SQLException {
+        Connection connection = connectionPool.borrowConnection();
+        connection.close();
+
+        assertThrows(SQLException.class, () -> connection.prepareStatement("select 1"));
+    }
+
+    private ConnectionPool newCachingPool(int statementCacheSize) {
+        connectionPool.close();
+        connectionPool = new ConnectionPool(() -> {
+            createdConnections.incrementAndGet();
+            return physicalConnection;
+        }, 2, 100, 60000, 1, statementCacheSize);
+        return connectionPool;
+    }
+
+    @Test
+    public void preparedStatementIsReusedAcrossBorrows() throws SQLException {
+        PreparedStatement physicalStatement = mock(PreparedStatement.class);
+        when(physicalConnection.prepareStatement(DBConstants.GET_TICKET)).thenReturn(physicalStatement);
+        newCachingPool(4);
+
+        for(int i = 0; i < 3; i++){
+            Connection connection = connectionPool.borrowConnection();
+            PreparedStatement ps = connection.prepareStatement(DBConstants.GET_TICKET);
+            ps.setString(1, "ABCDEF");
+            ps.close();
+            assertTrue(ps.isClosed());
+            connection.close();
+        }
+
+        verify(physicalConnection, times(1)).prepareStatement(DBConstants.GET_TICKET);
+        verify(physicalStatement, times(3)).setString(1, "ABCDEF");
+        verify(physicalStatement, times(3)).clearParameters();
+        verify(physicalStatement, never()).close();
+        assertEquals(2, connectionPool.getStatementCacheHits());
+        assertEquals(1, connectionPool.getStatementCacheMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementIsEvicted() throws SQLException {
+        PreparedStatement first = mock(PreparedStatement.class);
+        PreparedStatement second = mock(PreparedStatement.class);
+        PreparedStatement third = mock(PreparedStatement.class);
+        when(physicalConnection.prepareStatement("select 1")).thenReturn(first);
+        when(physicalConnection.prepareStatement("select 2")).thenReturn(second);
+        when(physicalConnection.prepareStatement("select 3")).thenReturn(third);
+        newCachingPool(2);
+        Connection connection = connectionPool.borrowConnection();
+
+        connection.prepareStatement("select 1").close();
+        connection.prepareStatement("select 2").close();
+        connection.prepareStatement("select 1").close();
+        connection.prepareStatement("select 3").close();
+
+        verify(second, times(1)).close();
+        verify(first, never()).close();
+        verify(third, never()).close();
+        assertEquals(1, connectionPool.getStatementCacheEvictions());
+    }
+
+    @Test
+    public void statementStillOpenIsNotSharedWithinConnection() throws SQLException {
+        PreparedStatement first = mock(PreparedStatement.class);
+        PreparedStatement second = mock(PreparedStatement.class);
+        when(physicalConnection.prepareStatement("select 1")).thenReturn(first, second);
+        newCachingPool(4);
+        Connection connection = connectionPool.borrowConnection();
+
+        PreparedStatement open = connection.prepareStatement("select 1");
+        PreparedStatement other = connection.prepareStatement("select 1");
+        other.close();
+        open.close();
+
+        verify(second, times(1)).close();
+        verify(first, never()).close();
+        assertEquals(2, connectionPool.getStatementCacheMisses());
+    }
+
+    @Test
+    public void closedStatementCannotBeUsed() throws SQLException {
+        when(physicalConnection.prepareStatement("select 1")).thenReturn(mock(PreparedStatement.class));
+        newCachingPool(4);
+        Connection connection = connectionPool.borrowConnection();
+        PreparedStatement ps = connection.prepareStatement("select 1");
+        connection.close();
+
+        assertTrue(ps.isClosed());
+        assertThrows(SQLException.class, () -> ps.executeQuery());
+    }
+
+    @Test
+    public void cachedStatementsAreClosedWithPool() throws SQLException {
+        PreparedStatement physicalStatement = mock(PreparedStatement.class);
+        when(physicalConnection.prepareStatement("select 1")).thenReturn(physicalStatement);
+        newCachingPool(4);
+        Connection connection = connectionPool.borrowConnection();
+        connection.prepareStatement("select 1").close();
+        connection.close();
+
+        connectionPool.close();
+
+        verify(physicalStatement, times(1)).close();
+        verify(physicalConnection, times(1)).close();
+    }
+}
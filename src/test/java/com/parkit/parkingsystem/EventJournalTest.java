@@ -0,0 +1,132 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.journal.EventJournal;
+import com.parkit.parkingsystem.journal.JournalEvent;
+import com.parkit.parkingsystem.journal.JournalReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventJournalTest {
+
+    private File file;
+
+    @BeforeEach
+    public void setUpPerTest() throws IOException {
+        file = File.createTempFile("journal", ".bin");
+        Files.delete(file.toPath());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        file.delete();
+    }
+
+    private List<JournalEvent> replay(long fromSequence) throws IOException {
+        List<JournalEvent> events = new ArrayList<>();
+        new JournalReader(file.getPath()).replay(fromSequence, events::add);
+        return events;
+    }
+
+    @Test
+    public void testReplayReturnsEventsInOrder() throws IOException {
+        try (EventJournal journal = new EventJournal(file.getPath(), 0)) {
+            assertEquals(1, journal.entry("ABCDEF", 3, ParkingType.CAR, 1000L));
+            assertEquals(2, journal.spotChange(4, ParkingType.BIKE, true));
+            assertEquals(3, journal.exit("ABCDEF", 3, ParkingType.CAR, 1000L, 3601000L, 1425, true));
+        }
+
+        List<JournalEvent> events = replay(1);
+
+        assertEquals(3, events.size());
+        JournalEvent entry = events.get(0);
+        assertEquals(JournalEvent.Type.ENTRY, entry.getType());
+        assertEquals(1, entry.getSequence());
+        assertEquals("ABCDEF", entry.getVehicleRegNumber());
+        assertEquals(3, entry.getParkingNumber());
+        assertEquals(ParkingType.CAR, entry.getParkingType());
+        assertEquals(1000L, entry.getInTime());
+        assertFalse(entry.isAvailable());
+        JournalEvent spotChange = events.get(1);
+        assertEquals(JournalEvent.Type.SPOT_CHANGE, spotChange.getType());
+        assertNull(spotChange.getVehicleRegNumber());
+        assertEquals(ParkingType.BIKE, spotChange.getParkingType());
+        assertTrue(spotChange.isAvailable());
+        JournalEvent exit = events.get(2);
+        assertEquals(JournalEvent.Type.EXIT, exit.getType());
+        assertEquals(3601000L, exit.getOutTime());
+        assertEquals(1425, exit.getPrice());
+        assertTrue(exit.isDiscountApplied());
+        assertTrue(exit.isAvailable());
+    }
+
+    @Test
+    public void testReopenedJournalAppendsAfterLastEvent() throws IOException {
+        //two records per segment, so the journal grows several times
+        try (EventJournal journal = new EventJournal(file.getPath(), 0, 2)) {
+            for(int i = 1; i <= 5; i++){
+                journal.entry("CAR" + i, i, ParkingType.CAR, i);
+            }
+        }
+        try (EventJournal journal = new EventJournal(file.getPath(), 0, 2)) {
+            assertEquals(5, journal.getSequence());
+            assertEquals(6, journal.exit("CAR1", 1, ParkingType.CAR, 1, 2, 0, false));
+        }
+
+        List<JournalEvent> events = replay(1);
+
+        assertEquals(6, events.size());
+        for(int i = 0; i < events.size(); i++){
+            assertEquals(i + 1, events.get(i).getSequence());
+        }
+        assertEquals(JournalEvent.Type.EXIT, events.get(5).getType());
+        assertEquals(2, replay(5).size());
+    }
+
+    @Test
+    public void testReplayRebuildsOccupiedSpots() throws IOException {
+        try (EventJournal journal = new EventJournal(file.getPath(), 10)) {
+            journal.entry("AAA", 1, ParkingType.CAR, 0);
+            journal.entry("BBB", 2, ParkingType.CAR, 0);
+            journal.exit("AAA", 1, ParkingType.CAR, 0, 1, 0, false);
+            journal.entry("CCC", 1, ParkingType.CAR, 0);
+            //readable while still open
+            Map<Integer, String> occupied = new HashMap<>();
+            new JournalReader(file.getPath()).replay(event -> {
+                if(event.getType() == JournalEvent.Type.ENTRY){
+                    occupied.put(event.getParkingNumber(), event.getVehicleRegNumber());
+                }else if(event.isAvailable()){
+                    occupied.remove(event.getParkingNumber());
+                }
+            });
+
+            assertEquals(2, occupied.size());
+            assertEquals("CCC", occupied.get(1));
+            assertEquals("BBB", occupied.get(2));
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidInput() throws IOException {
+        try (EventJournal journal = new EventJournal(file.getPath(), 0)) {
+            assertThrows(IllegalArgumentException.class, () -> journal.entry("A-VERY-LONG-PLATE", 1, ParkingType.CAR, 0));
+            assertEquals(0, journal.getSequence());
+            journal.close();
+            assertThrows(IllegalStateException.class, () -> journal.entry("ABCDEF", 1, ParkingType.CAR, 0));
+        }
+        Files.write(file.toPath(), new byte[128]);
+        assertThrows(IOException.class, () -> new EventJournal(file.getPath(), 0));
+        assertThrows(IOException.class, () -> replay(1));
+    }
+}
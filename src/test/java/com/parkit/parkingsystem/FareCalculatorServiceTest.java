@@ -165,7 +165,8 @@ public class FareCalculatorServiceTest {
         ticket.setParkingSpot(parkingSpot);
         fareCalculatorService.calculateFare(ticket, discount);
 
-        assertEquals(0.95 * Fare.CAR_RATE_PER_HOUR, ticket.getPrice());
+        //1.425 exactly, the double product 0.95 * 1.5 is 1.4249999999999998
+        assertEquals(1.425, ticket.getPrice());
 
     }
 
@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.FareEngine;
+import com.parkit.parkingsystem.service.TariffTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FareEngineTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long IN_TIME = 1700000000000L;
+
+    private static FareEngine engine(ParkingType parkingType, TariffTable tariff) {
+        Map<ParkingType, TariffTable> tariffs = new EnumMap<>(ParkingType.class);
+        tariffs.put(parkingType, tariff);
+        return new FareEngine(tariffs);
+    }
+
+    @Test
+    public void testDefaultTariff() {
+        FareEngine fareEngine = FareEngine.defaultEngine();
+
+        assertEquals(0, fareEngine.calculate(ParkingType.CAR, IN_TIME, IN_TIME + 30 * MINUTE, false));
+        assertEquals(1125, fareEngine.calculate(ParkingType.CAR, IN_TIME, IN_TIME + 45 * MINUTE, false));
+        assertEquals(1500, fareEngine.calculate(ParkingType.CAR, IN_TIME, IN_TIME + HOUR, false));
+        assertEquals(1425, fareEngine.calculate(ParkingType.CAR, IN_TIME, IN_TIME + HOUR, true));
+        assertEquals(950, fareEngine.calculate(ParkingType.BIKE, IN_TIME, IN_TIME + HOUR, true));
+        assertEquals(36000, fareEngine.calculate(ParkingType.CAR, IN_TIME, IN_TIME + 24 * HOUR, false));
+    }
+
+    @Test
+    public void testRoundsHalfUp() {
+        FareEngine fareEngine = engine(ParkingType.CAR, TariffTable.builder().rate(0, 1).build());
+
+        assertEquals(0, fareEngine.calculate(ParkingType.CAR, IN_TIME, IN_TIME + 30 * MINUTE - 1, false));
+        assertEquals(1, fareEngine.calculate(ParkingType.CAR, IN_TIME, IN_TIME + 30 * MINUTE, false));
+        //a few millis past the hour do not change the fare
+        assertEquals(1500, FareEngine.defaultEngine().calculate(ParkingType.CAR, IN_TIME, IN_TIME + HOUR + 3, false));
+    }
+
+    @Test
+    public void testRateBands() {
+        TariffTable tariff = TariffTable.builder()
+                .rate(0, 2000)
+                .rate(120, 1000)
+                .build();
+
+        assertEquals(3000, tariff.price(90 * MINUTE, false));
+        assertEquals(4000, tariff.price(2 * HOUR, false));
+        assertEquals(5500, tariff.price(3 * HOUR + 30 * MINUTE, false));
+    }
+
+    @Test
+    public void testDailyCap() {
+        TariffTable tariff = TariffTable.builder()
+                .rate(0, 1500)
+                .dailyCap(20000)
+                .build();
+
+        assertEquals(15000, tariff.price(10 * HOUR, false));
+        assertEquals(20000, tariff.price(20 * HOUR, false));
+        assertEquals(23000, tariff.price(26 * HOUR, false));
+        assertEquals(40000, tariff.price(47 * HOUR, false));
+    }
+
+    @Test
+    public void testLoyaltyDiscountAppliesToCappedTotal() {
+        TariffTable tariff = TariffTable.builder()
+                .freePeriodMinutes(15)
+                .rate(0, 1500)
+                .dailyCap(20000)
+                .loyaltyDiscountPercent(10)
+                .build();
+
+        assertEquals(0, tariff.price(15 * MINUTE, true));
+        assertEquals(18000, tariff.price(20 * HOUR, true));
+        assertEquals(20000, tariff.price(20 * HOUR, false));
+    }
+
+    @Test
+    public void testRejectsInvalidInput() {
+        FareEngine fareEngine = engine(ParkingType.CAR, TariffTable.builder().rate(0, 1500).build());
+
+        assertThrows(IllegalArgumentException.class, () -> fareEngine.calculate(ParkingType.BIKE, IN_TIME, IN_TIME + HOUR, false));
+        assertThrows(IllegalArgumentException.class, () -> fareEngine.calculate(ParkingType.CAR, IN_TIME, IN_TIME - 1, false));
+        assertThrows(NullPointerException.class, () -> fareEngine.calculate(null, IN_TIME, IN_TIME + HOUR, false));
+        assertThrows(IllegalArgumentException.class, () -> TariffTable.builder().rate(60, 1500));
+        assertThrows(IllegalArgumentException.class, () -> TariffTable.builder().rate(0, 1500).rate(0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> TariffTable.builder().build());
+    }
+
+    @Test
+    public void testFacadeUsesEngineTariffs() {
+        FareEngine fareEngine = engine(ParkingType.CAR, TariffTable.builder().rate(0, 2000).dailyCap(10000).build());
+        FareCalculatorService fareCalculatorService = new FareCalculatorService(fareEngine);
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(new Date(IN_TIME));
+        ticket.setOutTime(new Date(IN_TIME + 10 * HOUR));
+
+        fareCalculatorService.calculateFare(ticket, false);
+
+        assertEquals(10.0, ticket.getPrice());
+    }
+}
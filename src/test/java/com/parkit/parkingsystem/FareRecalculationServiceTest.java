@@ -0,0 +1,163 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareEngine;
+import com.parkit.parkingsystem.service.FareRecalculationService;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class FareRecalculationServiceTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long OUT_TIME = 1700000000000L;
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement readTickets;
+    private PreparedStatement updatePrice;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        readTickets = mock(PreparedStatement.class);
+        updatePrice = mock(PreparedStatement.class);
+        ResultSet tickets = mock(ResultSet.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.GET_CLOSED_TICKETS)).thenReturn(readTickets);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET_PRICE)).thenReturn(updatePrice);
+        when(readTickets.executeQuery()).thenReturn(tickets);
+
+        //id, stored price, minutes parked, type, recurring user
+        when(tickets.next()).thenReturn(true, true, true, true, true, false);
+        when(tickets.getInt(1)).thenReturn(1, 2, 3, 4, 5);
+        when(tickets.getDouble(2)).thenReturn(1.5, 2.0, 0.0, 1.0, 1.0);
+        when(tickets.getTimestamp(3)).thenReturn(inTime(60), inTime(120), inTime(45), inTime(20), inTime(60));
+        when(tickets.getTimestamp(4)).thenReturn(new Timestamp(OUT_TIME));
+        when(tickets.getString(5)).thenReturn("CAR", "CAR", "BIKE", "CAR", "BIKE");
+        when(tickets.getBoolean(6)).thenReturn(false, false, true, false, false);
+        pool = new ForkJoinPool(2);
+    }
+
+    private static Timestamp inTime(int minutesParked) {
+        return new Timestamp(OUT_TIME - minutesParked * MINUTE);
+    }
+
+    private FareRecalculationService newService() {
+        return new FareRecalculationService(dataBaseConfig, FareEngine.defaultEngine(), pool, 100, 2, 1);
+    }
+
+    @Test
+    public void testRecalculateSavesChangedPrices() throws SQLException {
+        List<long[]> progress = new ArrayList<>();
+
+        FareRecalculationService.Summary summary = newService().recalculate(new Date(0), new Date(OUT_TIME + 1),
+                (read, priced, corrected) -> progress.add(new long[]{read, priced, corrected}));
+
+        assertTrue(summary.isCompleted());
+        assertEquals(5, summary.getTicketsRead());
+        assertEquals(5, summary.getTicketsPriced());
+        assertEquals(3, summary.getTicketsCorrected());
+        verify(readTickets).setFetchSize(100);
+        verify(updatePrice).setDouble(1, 3.0);
+        verify(updatePrice).setInt(2, 2);
+        verify(updatePrice).setDouble(1, 0.713);
+        verify(updatePrice).setInt(2, 3);
+        verify(updatePrice).setDouble(1, 0.0);
+        verify(updatePrice).setInt(2, 4);
+        verify(updatePrice, times(3)).addBatch();
+        verify(updatePrice, times(2)).executeBatch();
+        verify(connection, times(2)).commit();
+        assertEquals(3, progress.size());
+        assertArrayEquals(new long[]{5, 5, 3}, progress.get(2));
+    }
+
+    @Test
+    public void testRecalculateStopsWhenBatchFails() throws SQLException {
+        when(updatePrice.executeBatch()).thenThrow(new SQLException("deadlock"));
+
+        FareRecalculationService.Summary summary = newService().recalculate(new Date(0), new Date(OUT_TIME + 1), null);
+
+        assertFalse(summary.isCompleted());
+        assertEquals(0, summary.getTicketsCorrected());
+        verify(connection, atLeastOnce()).rollback();
+        verify(connection, never()).commit();
+    }
+
+    @Test
+    public void testRecalculateStopsWhenTicketsCannotBeRead() throws Exception {
+        when(dataBaseConfig.getConnection()).thenThrow(new SQLException("down"));
+
+        FareRecalculationService.Summary summary = newService().recalculate(new Date(0), new Date(OUT_TIME + 1), null);
+
+        assertFalse(summary.isCompleted());
+        assertEquals(0, summary.getTicketsRead());
+    }
+
+    //the ticket table as a DATETIME column stores it: whole seconds
+    private static Timestamp stored(Date time) {
+        return new Timestamp(TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(time.getTime())));
+    }
+
+    @Test
+    public void testRecalculateWithUnchangedTariffsCorrectsNothing() throws SQLException {
+        ParkingSpotRepository parkingSpotRepository = mock(ParkingSpotRepository.class);
+        TicketRepository ticketRepository = mock(TicketRepository.class);
+        when(parkingSpotRepository.claimNextAvailableSlot(any(ParkingType.class))).thenReturn(1, 2);
+        List<Ticket> saved = new ArrayList<>();
+        when(ticketRepository.saveTicket(any(Ticket.class))).thenAnswer(invocation -> saved.add(invocation.getArgument(0)));
+        when(ticketRepository.exitVehicle(anyString(), any(Date.class), any(TicketRepository.ExitPricing.class))).thenAnswer(invocation -> {
+            Ticket ticket = saved.get("CAR0".equals(invocation.getArgument(0)) ? 0 : 1);
+            ticket.setOutTime(invocation.getArgument(1));
+            TicketRepository.ExitPricing pricing = invocation.getArgument(2);
+            pricing.price(ticket, 1);
+            return ticket;
+        });
+        ParkingService parkingService = new ParkingService(parkingSpotRepository, ticketRepository);
+        parkingService.enter("CAR0", ParkingType.CAR);
+        parkingService.enter("CAR1", ParkingType.CAR);
+        //one stay at the end of the free period and one priced pro rata
+        saved.get(0).setInTime(new Date(saved.get(0).getInTime().getTime() - 30 * MINUTE));
+        saved.get(1).setInTime(new Date(saved.get(1).getInTime().getTime() - 47 * MINUTE));
+        parkingService.exit("CAR0");
+        parkingService.exit("CAR1");
+
+        ResultSet tickets = mock(ResultSet.class);
+        when(readTickets.executeQuery()).thenReturn(tickets);
+        when(tickets.next()).thenReturn(true, true, false);
+        when(tickets.getInt(1)).thenReturn(1, 2);
+        when(tickets.getDouble(2)).thenReturn(saved.get(0).getPrice(), saved.get(1).getPrice());
+        when(tickets.getTimestamp(3)).thenReturn(stored(saved.get(0).getInTime()), stored(saved.get(1).getInTime()));
+        when(tickets.getTimestamp(4)).thenReturn(stored(saved.get(0).getOutTime()), stored(saved.get(1).getOutTime()));
+        when(tickets.getString(5)).thenReturn("CAR");
+        when(tickets.getBoolean(6)).thenReturn(false);
+
+        FareRecalculationService.Summary summary = newService().recalculate(new Date(0), new Date(), null);
+
+        assertTrue(summary.isCompleted());
+        assertEquals(2, summary.getTicketsPriced());
+        assertEquals(0, summary.getTicketsCorrected());
+        verify(updatePrice, never()).addBatch();
+    }
+}
@@ -0,0 +1,154 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FreeSpotIndexTest {
+
+    private FreeSpotIndex freeSpotIndex;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        freeSpotIndex = new FreeSpotIndex(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.CAR, false),
+                new ParkingSpot(4, ParkingType.BIKE, true),
+                new ParkingSpot(5, ParkingType.BIKE, true)));
+    }
+
+    @Test
+    public void nextAvailableReturnsLowestFreeSpotOfType() {
+        assertEquals(1, freeSpotIndex.nextAvailable(ParkingType.CAR));
+        assertEquals(4, freeSpotIndex.nextAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    public void updateKeepsIndexInStep() {
+        freeSpotIndex.update(1, false);
+        assertEquals(2, freeSpotIndex.nextAvailable(ParkingType.CAR));
+
+        freeSpotIndex.update(1, true);
+        assertEquals(1, freeSpotIndex.nextAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void nextAvailableReturnsZeroWhenTypeIsFull() {
+        freeSpotIndex.update(4, false);
+        freeSpotIndex.update(5, false);
+
+        assertEquals(0, freeSpotIndex.nextAvailable(ParkingType.BIKE));
+        assertEquals(0, freeSpotIndex.countAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    public void updateIgnoresUnknownSpot() {
+        assertFalse(freeSpotIndex.update(6, true));
+        assertEquals(2, freeSpotIndex.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void claimTakesSpotOnlyOnce() {
+        assertTrue(freeSpotIndex.claim(2));
+        assertFalse(freeSpotIndex.claim(2));
+        assertEquals(1, freeSpotIndex.claim(ParkingType.CAR));
+        assertEquals(0, freeSpotIndex.claim(ParkingType.CAR));
+    }
+
+    @Test
+    public void concurrentClaimsNeverAllocateTheSameSpotTwice() throws InterruptedException {
+        int spotCount = 1000;
+        int gates = 16;
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for(int number = 1; number <= spotCount; number++){
+            parkingSpots.add(new ParkingSpot(number, ParkingType.CAR, true));
+        }
+        FreeSpotIndex contendedIndex = new FreeSpotIndex(parkingSpots);
+        AtomicIntegerArray allocations = new AtomicIntegerArray(spotCount + 1);
+        AtomicIntegerArray releases = new AtomicIntegerArray(spotCount + 1);
+        AtomicInteger doubleAllocations = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(gates);
+
+        for(int gate = 0; gate < gates; gate++){
+            executorService.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int number;
+                while((number = contendedIndex.claim(ParkingType.CAR)) > 0){
+                    if(allocations.incrementAndGet(number) > 1){
+                        doubleAllocations.incrementAndGet();
+                    }
+                    //churn: give back some spots so they are claimed again under contention
+                    if(number % 7 == 0 && releases.getAndIncrement(number) < 2){
+                        allocations.decrementAndGet(number);
+                        contendedIndex.update(number, true);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(0, doubleAllocations.get());
+        for(int number = 1; number <= spotCount; number++){
+            assertEquals(1, allocations.get(number), "spot " + number + " should be held exactly once");
+        }
+        assertEquals(0, contendedIndex.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void countersFollowEveryChangeOfAvailability() {
+        assertEquals(2, freeSpotIndex.countAvailable(ParkingType.CAR));
+        assertEquals(1, freeSpotIndex.countOccupied(ParkingType.CAR));
+        assertEquals(3, freeSpotIndex.countSpots(ParkingType.CAR));
+
+        freeSpotIndex.claim(ParkingType.CAR);
+        freeSpotIndex.claim(4);
+        freeSpotIndex.update(3, true);
+        //already free: nothing to count
+        freeSpotIndex.update(3, true);
+
+        assertEquals(2, freeSpotIndex.countAvailable(ParkingType.CAR));
+        assertEquals(1, freeSpotIndex.countOccupied(ParkingType.CAR));
+        assertEquals(1, freeSpotIndex.countAvailable(ParkingType.BIKE));
+        assertEquals(1, freeSpotIndex.countOccupied(ParkingType.BIKE));
+    }
+
+    @Test
+    public void listenersAreToldOfChangesOnly() {
+        List<String> changes = new ArrayList<>();
+        ParkingSpotRepository.OccupancyListener listener = (parkingType, availableSpots, totalSpots) ->
+                changes.add(parkingType + " " + availableSpots + "/" + totalSpots);
+        freeSpotIndex.addListener(listener);
+
+        freeSpotIndex.claim(ParkingType.CAR);
+        freeSpotIndex.update(1, true);
+        freeSpotIndex.update(1, true);
+        freeSpotIndex.claim(5);
+        freeSpotIndex.removeListener(listener);
+        freeSpotIndex.claim(4);
+
+        assertEquals(Arrays.asList("CAR 1/3", "CAR 2/3", "BIKE 1/2"), changes);
+    }
+}
@@ -0,0 +1,148 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.service.GateExecutor;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class GateExecutorTest {
+
+    private GateExecutor gateExecutor;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if(gateExecutor != null){
+            gateExecutor.shutdown(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testEnterRunsOnParkingService() throws Exception {
+        ParkingService parkingService = mock(ParkingService.class);
+        EntryResult entry = new EntryResult("ABCDEF", 1, ParkingType.CAR, new Date(), false);
+        when(parkingService.enter("ABCDEF", ParkingType.CAR)).thenReturn(entry);
+        gateExecutor = new GateExecutor(parkingService, 4);
+
+        assertSame(entry, gateExecutor.enter("north", "ABCDEF", ParkingType.CAR).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testEventsOfOneLaneRunInOrder() throws Exception {
+        gateExecutor = new GateExecutor(null, 8);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+        for(int i = 0; i < 200; i++){
+            final int event = i;
+            results.add(gateExecutor.submit("north", () -> {
+                order.add(event);
+                return event;
+            }));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        for(int i = 0; i < 200; i++){
+            assertEquals(i, order.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimitHoldsOnBoundedPool() throws Exception {
+        checkConcurrencyLimit(new GateExecutor(null, 3, false));
+        assertFalse(gateExecutor.isUsingVirtualThreads());
+    }
+
+    @Test
+    public void testConcurrencyLimitHoldsOnDefaultExecutor() throws Exception {
+        checkConcurrencyLimit(new GateExecutor(null, 3));
+    }
+
+    private void checkConcurrencyLimit(GateExecutor executor) throws Exception {
+        gateExecutor = executor;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+        for(int i = 0; i < 120; i++){
+            results.add(gateExecutor.submit("lane-" + (i % 12), () -> {
+                int now = running.incrementAndGet();
+                maxRunning.accumulateAndGet(now, Math::max);
+                Thread.sleep(2);
+                running.decrementAndGet();
+                return now;
+            }));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        assertTrue(maxRunning.get() <= 3);
+        assertTrue(maxRunning.get() > 1);
+    }
+
+    @Test
+    public void testFailedEventDoesNotBlockItsLane() throws Exception {
+        gateExecutor = new GateExecutor(null, 2);
+
+        CompletableFuture<Integer> failed = gateExecutor.submit("south", () -> {
+            throw new IllegalStateException("barrier jammed");
+        });
+        CompletableFuture<Integer> next = gateExecutor.submit("south", () -> 42);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals(42, next.get(5, TimeUnit.SECONDS).intValue());
+    }
+
+    @Test
+    public void testShutdownRunsQueuedEventsThenRejectsNewOnes() throws Exception {
+        gateExecutor = new GateExecutor(null, 1);
+        CompletableFuture<Integer> queued = gateExecutor.submit("east", () -> {
+            Thread.sleep(20);
+            return 1;
+        });
+
+        assertTrue(gateExecutor.shutdown(5, TimeUnit.SECONDS));
+        assertTrue(queued.isDone());
+        assertThrows(java.util.concurrent.RejectedExecutionException.class, () -> gateExecutor.submit("east", () -> 2));
+    }
+
+    @Test
+    public void testDrainedLanesAreDropped() throws Exception {
+        gateExecutor = new GateExecutor(null, 8);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+        for(int i = 0; i < 1000; i++){
+            final int event = i;
+            results.add(gateExecutor.submit("lane-" + (i % 500), () -> event));
+            //one lane drained and taken again many times, its events still in order
+            results.add(gateExecutor.submit("north", () -> {
+                order.add(event);
+                return event;
+            }));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while(gateExecutor.getLaneCount() > 0 && System.currentTimeMillis() < deadline){
+            Thread.sleep(1);
+        }
+        assertEquals(0, gateExecutor.getLaneCount());
+        for(int i = 0; i < 1000; i++){
+            assertEquals(i, order.get(i).intValue());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.GateExecutor;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryRepositoryTest {
+
+    private InMemoryParkingSpotRepository parkingSpotRepository;
+    private InMemoryTicketRepository ticketRepository;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        parkingSpotRepository = new InMemoryParkingSpotRepository(3, 2);
+        ticketRepository = new InMemoryTicketRepository();
+    }
+
+    private static Ticket newTicket(String vehicleRegNumber, int parkingNumber, ParkingType parkingType, Date outTime) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        ticket.setOutTime(outTime);
+        return ticket;
+    }
+
+    @Test
+    public void testSpotsAreClaimedByType() {
+        assertEquals(1, parkingSpotRepository.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(2, parkingSpotRepository.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(4, parkingSpotRepository.claimNextAvailableSlot(ParkingType.BIKE));
+        assertEquals(5, parkingSpotRepository.claimNextAvailableSlot(ParkingType.BIKE));
+        assertEquals(0, parkingSpotRepository.claimNextAvailableSlot(ParkingType.BIKE));
+
+        parkingSpotRepository.onSpotReleased(new ParkingSpot(4, ParkingType.BIKE, true));
+
+        assertEquals(1, parkingSpotRepository.countAvailable(ParkingType.BIKE));
+        assertTrue(parkingSpotRepository.updateParking(new ParkingSpot(2, ParkingType.CAR, false)));
+        assertEquals(3, parkingSpotRepository.getNextAvailableSlot(ParkingType.CAR));
+        assertFalse(parkingSpotRepository.updateParking(new ParkingSpot(9, ParkingType.CAR, true)));
+    }
+
+    @Test
+    public void testTicketsAreIndexedByPlateAndType() {
+        Ticket first = newTicket("ABCDEF", 1, ParkingType.CAR, new Date());
+        Ticket open = newTicket("ABCDEF", 2, ParkingType.CAR, null);
+        Ticket bike = newTicket("BIKE01", 4, ParkingType.BIKE, null);
+
+        assertTrue(ticketRepository.saveTicket(first));
+        assertEquals(first.getId(), ticketRepository.getTicket("ABCDEF").getId());
+        assertTrue(ticketRepository.saveTicket(open));
+        assertTrue(ticketRepository.saveTicket(bike));
+
+        assertNotEquals(first.getId(), open.getId());
+        assertEquals(open.getId(), ticketRepository.getTicket("ABCDEF").getId());
+        assertEquals(2, ticketRepository.getNbTicket("ABCDEF"));
+        assertEquals(0, ticketRepository.getNbTicket("NOBODY"));
+        assertNull(ticketRepository.getTicket("NOBODY"));
+        assertEquals(1, ticketRepository.countOpenTickets(ParkingType.CAR));
+        assertEquals(bike.getId(), ticketRepository.getOpenTickets(ParkingType.BIKE).get(0).getId());
+        assertFalse(ticketRepository.saveTicket(new Ticket()));
+        //one open ticket per vehicle
+        assertFalse(ticketRepository.saveTicket(newTicket("ABCDEF", 3, ParkingType.CAR, null)));
+        assertEquals(2, ticketRepository.getNbTicket("ABCDEF"));
+        assertEquals(open.getId(), ticketRepository.getTicket("ABCDEF").getId());
+    }
+
+    @Test
+    public void testUpdateTicketClosesIt() {
+        Ticket ticket = newTicket("ABCDEF", 1, ParkingType.CAR, null);
+        ticketRepository.saveTicket(ticket);
+        Ticket update = new Ticket();
+        update.setId(ticket.getId());
+        update.setPrice(1.5);
+        update.setOutTime(new Date());
+
+        assertTrue(ticketRepository.updateTicket(update));
+
+        assertEquals(1.5, ticketRepository.getTicket("ABCDEF").getPrice());
+        assertEquals(0, ticketRepository.countOpenTickets(ParkingType.CAR));
+        update.setId(ticket.getId() + 1);
+        assertFalse(ticketRepository.updateTicket(update));
+    }
+
+    @Test
+    public void testExitVehicleClosesOpenTicket() {
+        ticketRepository.saveTicket(newTicket("ABCDEF", 1, ParkingType.CAR, new Date()));
+        ticketRepository.saveTicket(newTicket("ABCDEF", 2, ParkingType.CAR, null));
+        Date outTime = new Date();
+        int[] count = new int[1];
+
+        Ticket ticket = ticketRepository.exitVehicle("ABCDEF", outTime, (exitingTicket, ticketsCount) -> {
+            count[0] = ticketsCount;
+            exitingTicket.setPrice(1.425);
+        });
+
+        assertNotNull(ticket);
+        assertEquals(2, ticket.getParkingSpot().getId());
+        assertEquals(outTime, ticket.getOutTime());
+        assertTrue(ticket.getParkingSpot().isAvailable());
+        assertEquals(2, count[0]);
+        assertNull(ticketRepository.exitVehicle("ABCDEF", outTime, (exitingTicket, ticketsCount) -> { }));
+        assertNull(ticketRepository.exitVehicle("NOBODY", outTime, (exitingTicket, ticketsCount) -> { }));
+    }
+
+    @Test
+    public void testStoredTicketsAreNotChangedByCallers() {
+        Ticket saved = newTicket("ABCDEF", 1, ParkingType.CAR, null);
+        ticketRepository.saveTicket(saved);
+        saved.setPrice(9);
+        ticketRepository.getTicket("ABCDEF").setOutTime(new Date());
+
+        Ticket ticket = ticketRepository.getTicket("ABCDEF");
+        assertEquals(0, ticket.getPrice());
+        assertNull(ticket.getOutTime());
+        assertEquals(1, ticketRepository.countOpenTickets(ParkingType.CAR));
+        //a failed pricing leaves no trace on the stored ticket
+        assertNull(ticketRepository.exitVehicle("ABCDEF", new Date(), (exitingTicket, ticketsCount) -> {
+            exitingTicket.setPrice(5);
+            throw new IllegalStateException("No fare");
+        }));
+        assertEquals(0, ticketRepository.getTicket("ABCDEF").getPrice());
+    }
+
+    @Test
+    public void testParkingServiceRunsWithoutDatabase() throws Exception {
+        parkingSpotRepository = new InMemoryParkingSpotRepository(50, 0);
+        ParkingService parkingService = new ParkingService(parkingSpotRepository, ticketRepository);
+        GateExecutor gateExecutor = new GateExecutor(parkingService, 8);
+        try {
+            List<CompletableFuture<EntryResult>> entries = new ArrayList<>();
+            for(int i = 0; i < 60; i++){
+                entries.add(gateExecutor.enter("lane" + (i % 4), "CAR" + i, ParkingType.CAR));
+            }
+            Set<Integer> parkingNumbers = new HashSet<>();
+            int full = 0;
+            for(CompletableFuture<EntryResult> entry : entries){
+                EntryResult result = entry.get(10, TimeUnit.SECONDS);
+                if(result == null){
+                    full++;
+                }else {
+                    assertTrue(parkingNumbers.add(result.getParkingNumber()));
+                }
+            }
+            assertEquals(50, parkingNumbers.size());
+            assertEquals(10, full);
+            assertEquals(0, parkingSpotRepository.countAvailable(ParkingType.CAR));
+
+            List<CompletableFuture<ExitResult>> exits = new ArrayList<>();
+            for(int i = 0; i < 60; i++){
+                exits.add(gateExecutor.exit("lane" + (i % 4), "CAR" + i));
+            }
+            int exited = 0;
+            for(CompletableFuture<ExitResult> exit : exits){
+                if(exit.get(10, TimeUnit.SECONDS) != null){
+                    exited++;
+                }
+            }
+            assertEquals(50, exited);
+            assertEquals(50, parkingSpotRepository.countAvailable(ParkingType.CAR));
+            assertEquals(0, ticketRepository.countOpenTickets(ParkingType.CAR));
+        } finally {
+            gateExecutor.shutdown(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.LotRegistry;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.LotRouter;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class LotRouterTest {
+
+    @Test
+    public void testRegistryLoadsLotsInOrder() {
+        Properties properties = new Properties();
+        properties.setProperty("lots", "north, south");
+        properties.setProperty("lot.north.url", "jdbc:mysql://db-north:3306/prod");
+        properties.setProperty("lot.south.url", "jdbc:mysql://db-south:3306/prod");
+        properties.setProperty("lot.south.user", "gate");
+
+        LotRegistry lotRegistry = LotRegistry.load(properties);
+
+        assertEquals(Arrays.asList("north", "south"), lotRegistry.getLotIds());
+        assertEquals("jdbc:mysql://db-south:3306/prod", lotRegistry.getDataBaseConfig("south").getUrl());
+        assertNull(lotRegistry.getDataBaseConfig("east"));
+    }
+
+    @Test
+    public void testRegistryRejectsLotsSharingADatabase() {
+        Properties properties = new Properties();
+        properties.setProperty("lots", "north,south");
+        properties.setProperty("lot.north.url", "jdbc:mysql://db:3306/prod");
+        properties.setProperty("lot.south.url", "jdbc:mysql://db:3306/prod");
+
+        assertThrows(IllegalArgumentException.class, () -> LotRegistry.load(properties));
+    }
+
+    @Test
+    public void testEachLotGetsItsOwnDAOsOnItsOwnDatabase() throws Exception {
+        DataBaseConfig north = mock(DataBaseConfig.class);
+        DataBaseConfig south = mock(DataBaseConfig.class);
+        when(north.getUrl()).thenReturn("jdbc:mysql://db-north:3306/prod");
+        when(south.getUrl()).thenReturn("jdbc:mysql://db-south:3306/prod");
+        when(north.getConnection()).thenThrow(new SQLException("Connection refused"));
+        LotRegistry lotRegistry = new LotRegistry();
+        lotRegistry.register("north", north);
+        lotRegistry.register("south", south);
+
+        LotRouter lotRouter = new LotRouter(lotRegistry);
+
+        assertSame(north, lotRouter.getLot("north").getParkingSpotDAO().dataBaseConfig);
+        assertSame(south, lotRouter.getLot("south").getTicketDAO().dataBaseConfig);
+        assertNotSame(lotRouter.getLot("north").getParkingSpotDAO(), lotRouter.getLot("south").getParkingSpotDAO());
+        assertNull(lotRouter.enter("north", "ABCDEF", ParkingType.CAR));
+        verify(north, atLeastOnce()).getConnection();
+        verify(south, never()).getConnection();
+        assertThrows(IllegalArgumentException.class, () -> lotRouter.exit("east", "ABCDEF"));
+    }
+}
@@ -0,0 +1,170 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.store.MappedFileStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedFileStoreTest {
+
+    private File directory;
+    private MappedFileStore store;
+
+    @BeforeEach
+    public void setUpPerTest() throws IOException {
+        directory = File.createTempFile("store", "");
+        directory.delete();
+        store = new MappedFileStore(directory.getPath(), 3, 2);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static Ticket newTicket(String vehicleRegNumber, int parkingNumber, ParkingType parkingType, Date outTime) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        ticket.setOutTime(outTime);
+        return ticket;
+    }
+
+    @Test
+    public void testSpotsAreClaimedByType() {
+        ParkingSpotRepository parkingSpotRepository = store.getParkingSpotRepository();
+
+        assertEquals(1, parkingSpotRepository.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(2, parkingSpotRepository.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(4, parkingSpotRepository.claimNextAvailableSlot(ParkingType.BIKE));
+        assertEquals(5, parkingSpotRepository.claimNextAvailableSlot(ParkingType.BIKE));
+        assertEquals(0, parkingSpotRepository.claimNextAvailableSlot(ParkingType.BIKE));
+
+        assertTrue(parkingSpotRepository.updateParking(new ParkingSpot(4, ParkingType.BIKE, true)));
+        assertEquals(1, store.getParkingSpotRepository().countAvailable(ParkingType.BIKE));
+        assertFalse(parkingSpotRepository.updateParking(new ParkingSpot(9, ParkingType.CAR, true)));
+    }
+
+    @Test
+    public void testTicketsAreIndexedByPlate() {
+        TicketRepository ticketRepository = store.getTicketRepository();
+        Ticket first = newTicket("ABCDEF", 1, ParkingType.CAR, new Date());
+        first.setPrice(1.5);
+        Ticket open = newTicket("ABCDEF", 2, ParkingType.CAR, null);
+
+        assertTrue(ticketRepository.saveTicket(first));
+        assertEquals(1.5, ticketRepository.getTicket("ABCDEF").getPrice());
+        assertTrue(ticketRepository.saveTicket(open));
+        assertTrue(ticketRepository.saveTicket(newTicket("BIKE01", 4, ParkingType.BIKE, null)));
+
+        Ticket ticket = ticketRepository.getTicket("ABCDEF");
+        assertEquals(open.getId(), ticket.getId());
+        assertEquals(2, ticket.getParkingSpot().getId());
+        assertEquals(open.getInTime(), ticket.getInTime());
+        assertNull(ticket.getOutTime());
+        assertFalse(ticketRepository.saveTicket(newTicket("ABCDEF", 3, ParkingType.CAR, null)));
+        assertEquals(2, ticketRepository.getNbTicket("ABCDEF"));
+        assertEquals(0, ticketRepository.getNbTicket("NOBODY"));
+        assertNull(ticketRepository.getTicket("NOBODY"));
+        assertFalse(ticketRepository.saveTicket(new Ticket()));
+        assertFalse(ticketRepository.saveTicket(newTicket("A-PLATE-TOO-LONG-FOR-THE-STORE", 3, ParkingType.CAR, null)));
+    }
+
+    @Test
+    public void testExitVehicleClosesTicketAndFreesSpot() {
+        TicketRepository ticketRepository = store.getTicketRepository();
+        assertEquals(1, store.getParkingSpotRepository().claimNextAvailableSlot(ParkingType.CAR));
+        ticketRepository.saveTicket(newTicket("ABCDEF", 1, ParkingType.CAR, null));
+        Date outTime = new Date();
+
+        Ticket ticket = ticketRepository.exitVehicle("ABCDEF", outTime, (exitingTicket, ticketsCount) -> exitingTicket.setPrice(1.425));
+
+        assertNotNull(ticket);
+        assertEquals(outTime, ticket.getOutTime());
+        assertTrue(ticket.getParkingSpot().isAvailable());
+        assertEquals(1.425, ticketRepository.getTicket("ABCDEF").getPrice());
+        assertEquals(3, store.getParkingSpotRepository().countAvailable(ParkingType.CAR));
+        assertNull(ticketRepository.exitVehicle("ABCDEF", outTime, (exitingTicket, ticketsCount) -> { }));
+    }
+
+    @Test
+    public void testFailedPricingLeavesTicketOpen() {
+        TicketRepository ticketRepository = store.getTicketRepository();
+        ticketRepository.saveTicket(newTicket("ABCDEF", 1, ParkingType.CAR, null));
+
+        assertNull(ticketRepository.exitVehicle("ABCDEF", new Date(), (exitingTicket, ticketsCount) -> {
+            throw new IllegalArgumentException("Unknown Parking Type");
+        }));
+
+        assertNull(ticketRepository.getTicket("ABCDEF").getOutTime());
+    }
+
+    @Test
+    public void testStoreIsReopenedWithItsData() throws IOException {
+        for(int i = 0; i < 2000; i++){
+            assertTrue(store.getTicketRepository().saveTicket(newTicket("CAR" + i, 1, ParkingType.CAR, null)));
+        }
+        store.getParkingSpotRepository().claimNextAvailableSlot(ParkingType.CAR);
+        store.close();
+
+        store = new MappedFileStore(directory.getPath(), 0, 0);
+
+        assertEquals(2, store.getParkingSpotRepository().getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(2, store.getParkingSpotRepository().countAvailable(ParkingType.BIKE));
+        for(int i = 0; i < 2000; i += 100){
+            assertEquals(i + 1, store.getTicketRepository().getTicket("CAR" + i).getId());
+        }
+        assertTrue(store.getTicketRepository().saveTicket(newTicket("CAR0", 2, ParkingType.CAR, new Date())));
+        assertEquals(2, store.getTicketRepository().getNbTicket("CAR0"));
+        assertEquals(1, store.getTicketRepository().getTicket("CAR0").getId());
+        assertTrue(store.getTicketRepository().saveTicket(newTicket("NEWCAR", 2, ParkingType.CAR, null)));
+        assertEquals(2002, store.getTicketRepository().getTicket("NEWCAR").getId());
+    }
+
+    @Test
+    public void testCommittedChangesAreRedoneAndTornOnesDropped() throws IOException {
+        store.getTicketRepository().saveTicket(newTicket("ABCDEF", 1, ParkingType.CAR, null));
+        Path log = directory.toPath().resolve("store.log");
+        byte[] committed = Files.readAllBytes(log);
+        store.close();
+
+        //the data files lost the change, the log kept it, then a torn second transaction
+        try (RandomAccessFile tickets = new RandomAccessFile(new File(directory, "tickets.dat"), "rw")) {
+            tickets.seek(8);
+            tickets.writeInt(0);
+        }
+        Files.write(log, committed);
+        Files.write(log, new byte[]{1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+        try (RandomAccessFile plates = new RandomAccessFile(new File(directory, "plates.idx"), "rw")) {
+            plates.seek(12);
+            plates.writeInt(0);
+        }
+
+        store = new MappedFileStore(directory.getPath(), 0, 0);
+
+        assertEquals(1, store.getTicketRepository().getNbTicket("ABCDEF"));
+        assertTrue(store.getTicketRepository().saveTicket(newTicket("GHIJKL", 2, ParkingType.CAR, null)));
+        assertEquals(2, store.getTicketRepository().getTicket("GHIJKL").getId());
+    }
+}
@@ -0,0 +1,89 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.MetricsReporter;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.metrics.OperationSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    public void testSnapshotCountsCallsErrorsAndRows() {
+        OperationMetrics metrics = Metrics.operation("MetricsTest.counters");
+        metrics.reset();
+
+        for(int i = 0; i < 10; i++){
+            metrics.record(System.nanoTime());
+            metrics.recordRows(2);
+        }
+        metrics.recordError();
+
+        OperationSnapshot snapshot = Metrics.snapshot("MetricsTest.counters");
+        assertEquals(10, snapshot.getCalls());
+        assertEquals(1, snapshot.getErrors());
+        assertEquals(20, snapshot.getRows());
+    }
+
+    @Test
+    public void testSnapshotPercentiles() {
+        OperationMetrics metrics = Metrics.operation("MetricsTest.percentiles");
+        metrics.reset();
+
+        //990 calls of 100us and 10 of 10ms
+        for(int i = 0; i < 990; i++){
+            metrics.recordMicros(100);
+        }
+        for(int i = 0; i < 10; i++){
+            metrics.recordMicros(TimeUnit.MILLISECONDS.toMicros(10));
+        }
+
+        OperationSnapshot snapshot = metrics.snapshot();
+        assertEquals(1000, snapshot.getCalls());
+        assertEquals(100, snapshot.getP50Micros());
+        assertEquals(100, snapshot.getP99Micros());
+        assertEquals(10000, snapshot.getP999Micros(), 10);
+        assertEquals(10000, snapshot.getMaxMicros(), 10);
+        assertEquals(199, snapshot.getMeanMicros(), 1);
+    }
+
+    @Test
+    public void testSnapshotsAreCumulativeUntilReset() {
+        OperationMetrics metrics = Metrics.operation("MetricsTest.cumulative");
+        metrics.reset();
+
+        metrics.record(System.nanoTime());
+        assertEquals(1, metrics.snapshot().getCalls());
+        metrics.record(System.nanoTime());
+        assertEquals(2, metrics.snapshot().getCalls());
+
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().getCalls());
+        assertEquals(0, metrics.snapshot().getMaxMicros());
+    }
+
+    @Test
+    public void testSameNameGivesSameMetrics() {
+        assertSame(Metrics.operation("MetricsTest.shared"), Metrics.operation("MetricsTest.shared"));
+        assertNull(Metrics.snapshot("MetricsTest.unknown"));
+    }
+
+    @Test
+    public void testReporterAppendsSnapshotsToFile() throws Exception {
+        Metrics.operation("MetricsTest.reported").record(System.nanoTime());
+        File file = File.createTempFile("metrics", ".log");
+        file.deleteOnExit();
+
+        new MetricsReporter(file.getAbsolutePath()).report();
+
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertTrue(content.contains("MetricsTest.reported calls="));
+    }
+}
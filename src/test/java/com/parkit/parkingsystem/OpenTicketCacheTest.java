@@ -0,0 +1,60 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OpenTicketCache;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpenTicketCacheTest {
+
+    private OpenTicketCache openTicketCache;
+    private Ticket ticket;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        openTicketCache = new OpenTicketCache();
+        ticket = new Ticket();
+        ticket.setId(1);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+    }
+
+    @Test
+    public void getReturnsCopyOfOpenTicket() {
+        openTicketCache.put(ticket);
+
+        Ticket cachedTicket = openTicketCache.get("ABCDEF");
+        cachedTicket.setOutTime(new Date());
+        cachedTicket.getParkingSpot().setAvailable(true);
+
+        assertEquals(1, cachedTicket.getId());
+        assertNull(openTicketCache.get("ABCDEF").getOutTime());
+        assertFalse(openTicketCache.get("ABCDEF").getParkingSpot().isAvailable());
+    }
+
+    @Test
+    public void removeOnlyEvictsTheSameTicket() {
+        openTicketCache.put(ticket);
+        Ticket olderTicket = new Ticket();
+        olderTicket.setId(0);
+        olderTicket.setVehicleRegNumber("ABCDEF");
+
+        openTicketCache.remove(olderTicket);
+        assertNotNull(openTicketCache.get("ABCDEF"));
+
+        openTicketCache.remove(ticket);
+        assertNull(openTicketCache.get("ABCDEF"));
+    }
+
+    @Test
+    public void getWithNullVehicleRegNumberReturnsNull() {
+        assertNull(openTicketCache.get(null));
+    }
+}
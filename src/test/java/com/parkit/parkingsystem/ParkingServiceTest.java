@@ -1,11 +1,16 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.journal.EventJournal;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 
+import com.parkit.parkingsystem.service.InteractiveShell;
 import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,9 +20,12 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.Date;
 
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,120 +40,257 @@ public class ParkingServiceTest {
     @Mock
     private static TicketDAO ticketDAO;
 
+    private Ticket ticket;
+
     @BeforeEach
     private void setUpPerTest() {
         try {
             lenient().when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
 
             ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR,false);
-            Ticket ticket = new Ticket();
+            ticket = new Ticket();
             ticket.setInTime(new Date(System.currentTimeMillis() - (60*60*1000)));
             ticket.setParkingSpot(parkingSpot);
             ticket.setVehicleRegNumber("ABCDEF");
-            lenient().when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
-            lenient().when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
 
             lenient().when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
 
-            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+            parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
         } catch (Exception e) {
             e.printStackTrace();
             throw  new RuntimeException("Failed to set up test mock objects");
         }
     }
 
+    //exitVehicle answers like the DAO: prices the open ticket with the visit count and returns it closed
+    private void stubExitVehicle(final int ticketsCount){
+        when(ticketDAO.exitVehicle(eq("ABCDEF"), any(Date.class), any(TicketDAO.ExitPricing.class))).thenAnswer(invocation -> {
+            ticket.setOutTime(invocation.getArgument(1));
+            TicketDAO.ExitPricing pricing = invocation.getArgument(2);
+            pricing.price(ticket, ticketsCount);
+            ticket.getParkingSpot().setAvailable(true);
+            return ticket;
+        });
+    }
+
     @Test
     public void processExitingVehicleTest(){
-        when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(1);
-        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+        stubExitVehicle(1);
 
-        parkingService.processExitingVehicle();
+        InteractiveShell.processExitingVehicle(parkingService, inputReaderUtil);
 
-        verify(ticketDAO, Mockito.times(1)).getTicket("ABCDEF");
-        verify(ticketDAO, Mockito.times(1)).getNbTicket("ABCDEF");
-        verify(ticketDAO, Mockito.times(1)).updateTicket(any(Ticket.class));
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+        verify(ticketDAO, Mockito.times(1)).exitVehicle(eq("ABCDEF"), any(Date.class), any(TicketDAO.ExitPricing.class));
+        verify(parkingSpotDAO, Mockito.times(1)).onSpotReleased(any(ParkingSpot.class));
+        verify(ticketDAO, Mockito.never()).updateTicket(any(Ticket.class));
+        verify(parkingSpotDAO, Mockito.never()).updateParking(any(ParkingSpot.class));
     }
 
     @Test
     public void testProcessIncomingVehicle(){
         when(inputReaderUtil.readSelection()).thenReturn(1);
-        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
-        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+        when(parkingSpotDAO.claimNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(1);
         when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
 
-        parkingService.processIncomingVehicle();
+        InteractiveShell.processIncomingVehicle(parkingService, inputReaderUtil);
 
         verify(inputReaderUtil, Mockito.times(1)).readSelection();
-        verify(parkingSpotDAO, Mockito.times(1)).getNextAvailableSlot(any(ParkingType.class));
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO, Mockito.times(1)).claimNextAvailableSlot(any(ParkingType.class));
+        verify(parkingSpotDAO, Mockito.never()).getNextAvailableSlot(any(ParkingType.class));
+        verify(parkingSpotDAO, Mockito.never()).updateParking(any(ParkingSpot.class));
         verify(ticketDAO, Mockito.times(1)).getNbTicket("ABCDEF");
         verify(ticketDAO, Mockito.times(1)).saveTicket(any(Ticket.class));
     }
 
+    @Test
+    public void testProcessIncomingVehicleDoesNotClaimSpotWhenRegNumberIsInvalid() throws Exception {
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenThrow(new IllegalArgumentException("Invalid input provided"));
+
+        InteractiveShell.processIncomingVehicle(parkingService, inputReaderUtil);
+
+        verify(parkingSpotDAO, Mockito.never()).claimNextAvailableSlot(any(ParkingType.class));
+        verify(ticketDAO, Mockito.never()).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    public void testEnterReturnsAllocatedSpot(){
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(2);
+        when(ticketDAO.getNbTicket("GATE01")).thenReturn(1);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        EntryResult entry = parkingService.enter("GATE01", ParkingType.CAR);
+
+        assertNotNull(entry);
+        assertEquals("GATE01", entry.getVehicleRegNumber());
+        assertEquals(2, entry.getParkingNumber());
+        assertEquals(ParkingType.CAR, entry.getParkingType());
+        assertNotNull(entry.getInTime());
+        assertTrue(entry.isRecurringUser());
+        verify(inputReaderUtil, Mockito.never()).readSelection();
+    }
+
+    @Test
+    public void testEnterReturnsNullWhenParkingIsFull(){
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.BIKE)).thenReturn(0);
+
+        assertNull(parkingService.enter("GATE01", ParkingType.BIKE));
+        verify(ticketDAO, Mockito.never()).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    public void testEnterReleasesSpotWhenTicketCannotBeSaved(){
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenThrow(new IllegalStateException("Write-behind queue is closed"));
+
+        assertThrows(IllegalStateException.class, () -> parkingService.enter("GATE01", ParkingType.CAR));
+        verify(parkingSpotDAO, Mockito.times(1)).updateParking(argThat(ParkingSpot::isAvailable));
+    }
+
+    @Test
+    public void testEnterReleasesSpotWhenTicketIsNotSaved(){
+        EventJournal eventJournal = mock(EventJournal.class);
+        parkingService.setEventJournal(eventJournal);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(false);
+
+        assertNull(parkingService.enter("GATE01", ParkingType.CAR));
+        verify(parkingSpotDAO, Mockito.times(1)).updateParking(argThat(ParkingSpot::isAvailable));
+        verify(eventJournal, Mockito.never()).entry(anyString(), anyInt(), any(ParkingType.class), anyLong());
+        verify(eventJournal, Mockito.times(1)).spotChange(1, ParkingType.CAR, true);
+    }
+
+    @Test
+    public void testEnterRejectsBlankRegNumber(){
+        assertThrows(IllegalArgumentException.class, () -> parkingService.enter(" ", ParkingType.CAR));
+        verify(parkingSpotDAO, Mockito.never()).claimNextAvailableSlot(any(ParkingType.class));
+    }
+
+    @Test
+    public void testExitReturnsFare(){
+        stubExitVehicle(2);
+
+        ExitResult exit = parkingService.exit("ABCDEF");
+
+        assertNotNull(exit);
+        assertEquals(1, exit.getParkingNumber());
+        assertTrue(exit.isDiscountApplied());
+        assertEquals(0.95 * Fare.CAR_RATE_PER_HOUR, exit.getPrice(), 0.01);
+        assertNotNull(exit.getOutTime());
+        verify(parkingSpotDAO, Mockito.times(1)).onSpotReleased(argThat(ParkingSpot::isAvailable));
+    }
+
+    @Test
+    public void testExitReturnsNullWithoutTicket(){
+        when(ticketDAO.exitVehicle(eq("GATE01"), any(Date.class), any(TicketDAO.ExitPricing.class))).thenReturn(null);
+
+        assertNull(parkingService.exit("GATE01"));
+        verify(parkingSpotDAO, Mockito.never()).onSpotReleased(any(ParkingSpot.class));
+    }
+
+    @Test
+    public void testEnterAndExitAreJournaled(){
+        EventJournal eventJournal = mock(EventJournal.class);
+        parkingService.setEventJournal(eventJournal);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+        stubExitVehicle(2);
+
+        parkingService.enter("ABCDEF", ParkingType.CAR);
+        parkingService.exit("ABCDEF");
+
+        verify(eventJournal, Mockito.times(1)).entry(eq("ABCDEF"), eq(1), eq(ParkingType.CAR), anyLong());
+        verify(eventJournal, Mockito.times(1)).exit(eq("ABCDEF"), eq(1), eq(ParkingType.CAR), eq(ticket.getInTime().getTime()),
+                anyLong(), eq(1425L), eq(true));
+    }
+
+    @Test
+    public void testSpotGivenBackAfterFailedEntryIsJournaled(){
+        EventJournal eventJournal = mock(EventJournal.class);
+        parkingService.setEventJournal(eventJournal);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenThrow(new IllegalStateException("Write-behind queue is closed"));
+
+        assertThrows(IllegalStateException.class, () -> parkingService.enter("GATE01", ParkingType.CAR));
+        verify(eventJournal, Mockito.times(1)).spotChange(1, ParkingType.CAR, true);
+        verify(eventJournal, Mockito.never()).entry(anyString(), anyInt(), any(ParkingType.class), anyLong());
+    }
+
     @Test
     public void processExitingVehicleTestUnableUpdate(){
-        when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(1);
-        when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(false);
+        when(ticketDAO.exitVehicle(eq("ABCDEF"), any(Date.class), any(TicketDAO.ExitPricing.class))).thenReturn(null);
 
-        parkingService.processExitingVehicle();
+        InteractiveShell.processExitingVehicle(parkingService, inputReaderUtil);
 
-        verify(ticketDAO, Mockito.times(1)).getTicket("ABCDEF");
-        verify(ticketDAO, Mockito.times(1)).getNbTicket("ABCDEF");
-        verify(ticketDAO, Mockito.times(1)).updateTicket(any(Ticket.class));
+        verify(ticketDAO, Mockito.times(1)).exitVehicle(eq("ABCDEF"), any(Date.class), any(TicketDAO.ExitPricing.class));
+        verify(parkingSpotDAO, Mockito.never()).onSpotReleased(any(ParkingSpot.class));
     }
 
     @Test
     public void testGetNextParkingNumberIfAvailable(){
-        when(inputReaderUtil.readSelection()).thenReturn(1);
         when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
 
-        parkingService.getNextParkingNumberIfAvailable();
+        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable(ParkingType.CAR);
 
-        verify(inputReaderUtil,Mockito.times(1)).readSelection();
-        verify(parkingSpotDAO, Mockito.times(1)).getNextAvailableSlot(any(ParkingType.class));
+        assertEquals(1, parkingSpot.getId());
+        verify(parkingSpotDAO, Mockito.times(1)).getNextAvailableSlot(ParkingType.CAR);
     }
 
     @Test
     public void testGetNextParkingNumberIfAvailableParkingNumberNotFound(){
-        when(inputReaderUtil.readSelection()).thenReturn(1);
         when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(0);
 
-        parkingService.getNextParkingNumberIfAvailable();
+        assertNull(parkingService.getNextParkingNumberIfAvailable(ParkingType.CAR));
 
-        verify(inputReaderUtil, Mockito.times(1)).readSelection();
         verify(parkingSpotDAO, Mockito.times(1)).getNextAvailableSlot(any(ParkingType.class));
     }
 
     @Test
-    public void testGetNextParkingNumberIfAvailableParkingNumberWrongArgument(){
+    public void testProcessIncomingVehicleWrongVehicleType(){
         when(inputReaderUtil.readSelection()).thenReturn(3);
 
-        parkingService.getNextParkingNumberIfAvailable();
+        assertNull(InteractiveShell.processIncomingVehicle(parkingService, inputReaderUtil));
 
         verify(inputReaderUtil, Mockito.times(1)).readSelection();
+        verify(parkingSpotDAO, Mockito.never()).claimNextAvailableSlot(any(ParkingType.class));
+    }
+
+    @Test
+    public void testProcessIncomingVehicleTellsWhenNoSpotIsGiven(){
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(parkingSpotDAO.claimNextAvailableSlot(any(ParkingType.class))).thenReturn(0);
+        PrintStream console = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output));
+        try {
+            assertNull(InteractiveShell.processIncomingVehicle(parkingService, inputReaderUtil));
+        } finally {
+            System.setOut(console);
+        }
+
+        assertTrue(output.toString().contains("Unable to allocate a parking spot"));
     }
+
     @Test
     public void processIncomingVehicle_ShouldProcessWhenParkingSpotIsValid() throws Exception {
     	when(inputReaderUtil.readSelection()).thenReturn(1);
-        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
+        when(parkingSpotDAO.claimNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(1);
 
-        parkingService.processIncomingVehicle();
+        InteractiveShell.processIncomingVehicle(parkingService, inputReaderUtil);
 
         
-        verify(parkingSpotDAO, times(1)).getNextAvailableSlot(ParkingType.CAR); // Vérifie que la méthode est appelée une fois avec le type CAR
+        verify(parkingSpotDAO, times(1)).claimNextAvailableSlot(ParkingType.CAR); // Vérifie que la méthode est appelée une fois avec le type CAR
         verify(ticketDAO, times(1)).getNbTicket("ABCDEF"); // Vérifie que la méthode getNbTicket est appelée une fois avec le numéro d'immatriculation ABCDEF
     }
 
     @Test
     public void processIncomingVehicle_ShouldDisplayWelcomeMessageForRegularUser() throws Exception {
     	when(inputReaderUtil.readSelection()).thenReturn(1);
-        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
+        when(parkingSpotDAO.claimNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(5);
 
-        parkingService.processIncomingVehicle();
+        InteractiveShell.processIncomingVehicle(parkingService, inputReaderUtil);
 
         verify(ticketDAO, times(1)).getNbTicket("ABCDEF"); // Vérifie que la méthode getNbTicket est appelée une fois avec le numéro d'immatriculation ABCDEF
         System.out.println("Happy to see you again ! As a regular user of\n" +
@@ -155,16 +300,15 @@ public class ParkingServiceTest {
     public void processIncomingVehicle_ShouldProcessWhenParkingSpotIsBike() throws Exception {
         // Given
         when(inputReaderUtil.readSelection()).thenReturn(2); // Sélection du type BIKE
-        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(4); // Emplacement de parking disponible
+        when(parkingSpotDAO.claimNextAvailableSlot(any(ParkingType.class))).thenReturn(4); // Emplacement de parking disponible
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(0); // Nombre de tickets pour le numéro d'immatriculation
 
         // When
-        parkingService.processIncomingVehicle();
+        InteractiveShell.processIncomingVehicle(parkingService, inputReaderUtil);
 
         // Then
-        verify(parkingSpotDAO, times(1)).getNextAvailableSlot(ParkingType.BIKE); // Vérifie que la méthode getNextAvailableSlot est appelée avec le type BIKE
+        verify(parkingSpotDAO, times(1)).claimNextAvailableSlot(ParkingType.BIKE); // Vérifie que la place BIKE est réservée en une seule opération
         verify(ticketDAO, times(1)).saveTicket(any(Ticket.class)); // Vérifie que la méthode saveTicket est appelée pour enregistrer le ticket
-        verify(parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class)); // Vérifie que la méthode updateParking est appelée pour mettre à jour l'état du parking
         verify(inputReaderUtil, times(1)).readVehicleRegistrationNumber(); // Vérifie que la méthode readVehicleRegistrationNumber est appelée pour obtenir le numéro d'immatriculation
     }
  
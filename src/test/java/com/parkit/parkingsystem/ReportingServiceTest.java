@@ -0,0 +1,103 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.service.ReportingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReportingServiceTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    //2023-11-14T22:00Z
+    private static final long HOUR_START = 1700000000000L - 1700000000000L % (60 * MINUTE);
+
+    private DataBaseConfig dataBaseConfig;
+    private PreparedStatement readTickets;
+    private ResultSet tickets;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement countSpots = mock(PreparedStatement.class);
+        ResultSet spots = mock(ResultSet.class);
+        readTickets = mock(PreparedStatement.class);
+        tickets = mock(ResultSet.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.COUNT_PARKING_SPOTS_BY_TYPE)).thenReturn(countSpots);
+        when(connection.prepareStatement(DBConstants.GET_CLOSED_TICKETS_BY_OUT_TIME)).thenReturn(readTickets);
+        PreparedStatement readArchive = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.GET_ARCHIVED_TICKETS_BY_OUT_TIME)).thenReturn(readArchive);
+        when(readArchive.executeQuery()).thenReturn(mock(ResultSet.class));
+        when(countSpots.executeQuery()).thenReturn(spots);
+        when(spots.next()).thenReturn(true, true, false);
+        when(spots.getString(1)).thenReturn("CAR", "BIKE");
+        when(spots.getInt(2)).thenReturn(4, 2);
+        when(readTickets.executeQuery()).thenReturn(tickets);
+
+        //in exit order: two cars and a bike in the first hour, a car two hours later
+        when(tickets.next()).thenReturn(true, true, true, true, false);
+        when(tickets.getTimestamp(1)).thenReturn(at(-60), at(-30), at(0), at(90));
+        when(tickets.getTimestamp(2)).thenReturn(at(10), at(20), at(30), at(150));
+        when(tickets.getDouble(3)).thenReturn(1.5, 0.0, 0.5, 1.425);
+        when(tickets.getString(4)).thenReturn("CAR", "CAR", "BIKE", "CAR");
+    }
+
+    private static Timestamp at(int minutes) {
+        return new Timestamp(HOUR_START + minutes * MINUTE);
+    }
+
+    @Test
+    public void testCsvReportPerHour() throws SQLException {
+        StringWriter csv = new StringWriter();
+        ReportingService reportingService = new ReportingService(dataBaseConfig, ZoneOffset.UTC, 500);
+
+        assertEquals(4, reportingService.writeCsv(new Date(HOUR_START), new Date(HOUR_START + 240 * MINUTE),
+                ReportingService.Granularity.HOUR, csv));
+
+        assertEquals(ReportingService.CSV_HEADER + "\n"
+                + "2023-11-14T22:00:00Z,CAR,2,1.5,60.0,0.50\n"
+                + "2023-11-14T22:00:00Z,BIKE,1,0.5,30.0,0.50\n"
+                + "2023-11-15T00:00:00Z,CAR,1,1.425,60.0,0.25\n", csv.toString());
+        verify(readTickets).setFetchSize(500);
+    }
+
+    @Test
+    public void testReportPerDayAddsUpTheDay() {
+        long[] totals = new long[3];
+
+        assertEquals(4, new ReportingService(dataBaseConfig, ZoneOffset.UTC).report(new Date(0), new Date(),
+                ReportingService.Granularity.DAY, (bucketStart, parkingType, ticketCount, revenueMinorUnits, totalStayMillis, spots) -> {
+                    totals[0]++;
+                    totals[1] += ticketCount;
+                    totals[2] += revenueMinorUnits;
+                }));
+
+        //22:00 and 00:30 fall on two days, the bike and the cars of the first day are two rows
+        assertEquals(3, totals[0]);
+        assertEquals(4, totals[1]);
+        assertEquals(3425, totals[2]);
+    }
+
+    @Test
+    public void testReportFailsOnDatabaseError() throws Exception {
+        when(tickets.next()).thenThrow(new SQLException("Lost connection"));
+
+        assertEquals(-1, new ReportingService(dataBaseConfig, ZoneOffset.UTC).writeCsv(new Date(0), new Date(),
+                ReportingService.Granularity.DAY, new StringWriter()));
+        verify(dataBaseConfig).closeConnection(any(Connection.class));
+    }
+}
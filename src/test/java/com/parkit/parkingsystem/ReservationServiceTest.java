@@ -0,0 +1,155 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ReservationServiceTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private List<ParkingSpot> parkingSpots;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        //two car spots and a bike spot, all free
+        parkingSpots = new ArrayList<>();
+        parkingSpots.add(new ParkingSpot(1, ParkingType.CAR, true));
+        parkingSpots.add(new ParkingSpot(2, ParkingType.CAR, true));
+        parkingSpots.add(new ParkingSpot(3, ParkingType.BIKE, true));
+    }
+
+    private static Date hour(int hours) {
+        return new Date(1700000000000L + hours * HOUR);
+    }
+
+    @Test
+    public void testOverlappingBookingsGoToOtherSpots() {
+        ReservationService reservationService = new ReservationService(null);
+        assertTrue(reservationService.load(parkingSpots));
+
+        Reservation first = reservationService.reserve("ABCDEF", ParkingType.BIKE, hour(10), hour(12));
+        assertEquals(3, first.getParkingNumber());
+        assertNull(reservationService.reserve("GHIJKL", ParkingType.BIKE, hour(11), hour(13)));
+        //back to back is not an overlap
+        assertEquals(3, reservationService.reserve("GHIJKL", ParkingType.BIKE, hour(12), hour(13)).getParkingNumber());
+        assertTrue(reservationService.isFree(3, hour(9), hour(10)));
+        assertFalse(reservationService.isFree(3, hour(9), hour(11)));
+
+        assertEquals(1, reservationService.reserve("MNOPQR", ParkingType.CAR, hour(10), hour(12)).getParkingNumber());
+        assertEquals(2, reservationService.reserve("STUVWX", ParkingType.CAR, hour(11), hour(13)).getParkingNumber());
+
+        assertTrue(reservationService.cancel(first));
+        assertEquals(3, reservationService.reserve("GHIJKL", ParkingType.BIKE, hour(11), hour(12)).getParkingNumber());
+    }
+
+    @Test
+    public void testEntryKeepsBookedSpotForItsVehicle() {
+        ReservationService reservationService = new ReservationService(null);
+        reservationService.load(parkingSpots);
+        long now = System.currentTimeMillis();
+        assertEquals(1, reservationService.reserve("BOOKED", ParkingType.CAR, new Date(now - HOUR), new Date(now + HOUR)).getParkingNumber());
+        ParkingService parkingService = new ParkingService(new InMemoryParkingSpotRepository(parkingSpots), new InMemoryTicketRepository());
+        parkingService.setReservationService(reservationService);
+
+        assertEquals(2, parkingService.enter("WALKIN", ParkingType.CAR).getParkingNumber());
+        assertNull(parkingService.enter("OTHER", ParkingType.CAR));
+        assertEquals(1, parkingService.enter("BOOKED", ParkingType.CAR).getParkingNumber());
+    }
+
+    @Test
+    public void testBookingNotSavedIsReleased() {
+        ReservationDAO reservationDAO = mock(ReservationDAO.class);
+        when(reservationDAO.getReservationsEndingAfter(any(Date.class))).thenReturn(new ArrayList<Reservation>());
+        when(reservationDAO.saveReservation(any(Reservation.class))).thenReturn(false);
+        ReservationService reservationService = new ReservationService(reservationDAO);
+        assertTrue(reservationService.load(parkingSpots));
+
+        assertNull(reservationService.reserve("ABCDEF", ParkingType.BIKE, hour(10), hour(12)));
+        assertTrue(reservationService.isFree(3, hour(10), hour(12)));
+    }
+
+    @Test
+    public void testPeriodBetweenTwoBookingsIsUsedWhenNoSpotIsClear() {
+        ReservationService reservationService = new ReservationService(null);
+        reservationService.load(parkingSpots);
+
+        assertEquals(1, reservationService.reserve("AAAAAA", ParkingType.CAR, hour(10), hour(11)).getParkingNumber());
+        assertEquals(1, reservationService.reserve("BBBBBB", ParkingType.CAR, hour(13), hour(14)).getParkingNumber());
+        //spot 1 has bookings on both sides of the period, spot 2 none
+        assertEquals(2, reservationService.reserve("CCCCCC", ParkingType.CAR, hour(11), hour(13)).getParkingNumber());
+        assertEquals(1, reservationService.reserve("DDDDDD", ParkingType.CAR, hour(11), hour(13)).getParkingNumber());
+        assertNull(reservationService.reserve("EEEEEE", ParkingType.CAR, hour(12), hour(13)));
+    }
+
+    @Test
+    public void testBookingStartingSoonSkipsOccupiedSpots() {
+        InMemoryParkingSpotRepository parkingSpotRepository = new InMemoryParkingSpotRepository(parkingSpots);
+        assertEquals(1, parkingSpotRepository.claimSlot(1));
+        ReservationService reservationService = new ReservationService(null, ReservationService.DEFAULT_HOLD_MILLIS, parkingSpotRepository);
+        reservationService.load(parkingSpots);
+        long now = System.currentTimeMillis();
+
+        assertEquals(2, reservationService.reserve("SOON", ParkingType.CAR, new Date(now + 60000), new Date(now + HOUR)).getParkingNumber());
+        assertNull(reservationService.reserve("ALSOSOON", ParkingType.CAR, new Date(now + 60000), new Date(now + HOUR)));
+        //the parked vehicle is expected to have left by then
+        assertEquals(1, reservationService.reserve("LATER", ParkingType.CAR, new Date(now + 24 * HOUR), new Date(now + 25 * HOUR)).getParkingNumber());
+    }
+
+    @Test
+    public void testBookingsOfManySpotsNeverOverlap() {
+        List<ParkingSpot> lot = new ArrayList<>();
+        for(int number = 1; number <= 40; number++){
+            lot.add(new ParkingSpot(number, ParkingType.CAR, true));
+        }
+        ReservationService reservationService = new ReservationService(null);
+        reservationService.load(lot);
+        List<Reservation> booked = new ArrayList<>();
+        Random random = new Random(7);
+
+        for(int i = 0; i < 2000; i++){
+            int startHour = random.nextInt(200);
+            Date start = hour(startHour);
+            Date end = hour(startHour + 1 + random.nextInt(6));
+            Reservation reservation = reservationService.reserve("V" + i, ParkingType.CAR, start, end);
+            int firstFree = 0;
+            for(int number = 40; number >= 1; number--){
+                if(isFree(booked, number, start, end)){
+                    firstFree = number;
+                }
+            }
+            if(reservation == null){
+                assertEquals(0, firstFree);
+            }else {
+                assertTrue(isFree(booked, reservation.getParkingNumber(), start, end));
+                booked.add(reservation);
+            }
+        }
+    }
+
+    private static boolean isFree(List<Reservation> booked, int parkingNumber, Date start, Date end) {
+        for(Reservation reservation : booked){
+            if(reservation.getParkingNumber() == parkingNumber && reservation.getStartMillis() < end.getTime()
+                    && start.getTime() < reservation.getEndMillis()){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,110 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SchemaMigratorTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private Statement statement;
+    private ResultSet versionResult;
+    private PreparedStatement saveVersion;
+    private ResultSet ticketColumns;
+
+    private final List<SchemaMigrator.Migration> migrations = Arrays.asList(
+            new SchemaMigrator.Migration(2, "second", "alter table ticket add column B int"),
+            new SchemaMigrator.Migration(1, "first", "alter table ticket add column A int"),
+            new SchemaMigrator.Migration(3, "third", "alter table ticket add column C int"));
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        statement = mock(Statement.class);
+        versionResult = mock(ResultSet.class);
+        saveVersion = mock(PreparedStatement.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(versionResult);
+        when(connection.prepareStatement(anyString())).thenReturn(saveVersion);
+        when(versionResult.next()).thenReturn(true);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        ticketColumns = mock(ResultSet.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumns(any(), any(), anyString(), any())).thenReturn(mock(ResultSet.class));
+        when(metaData.getColumns(any(), any(), eq("ticket"), any())).thenReturn(ticketColumns);
+    }
+
+    @Test
+    public void pendingMigrationsAreAppliedInVersionOrder() throws SQLException {
+        when(versionResult.getInt(1)).thenReturn(1);
+
+        assertTrue(new SchemaMigrator(dataBaseConfig, migrations).migrate());
+
+        verify(statement, never()).execute("alter table ticket add column A int");
+        verify(statement, times(1)).execute("alter table ticket add column B int");
+        verify(statement, times(1)).execute("alter table ticket add column C int");
+        verify(saveVersion, times(1)).setInt(1, 2);
+        verify(saveVersion, times(1)).setInt(1, 3);
+        verify(saveVersion, times(2)).execute();
+    }
+
+    @Test
+    public void upToDateSchemaIsLeftAlone() throws SQLException {
+        when(versionResult.getInt(1)).thenReturn(3);
+
+        assertTrue(new SchemaMigrator(dataBaseConfig, migrations).migrate());
+
+        verify(statement, never()).execute(startsWith("alter"));
+        verify(saveVersion, never()).execute();
+    }
+
+    @Test
+    public void failedMigrationIsNotRecorded() throws SQLException {
+        when(versionResult.getInt(1)).thenReturn(0);
+        when(statement.execute("alter table ticket add column B int")).thenThrow(new SQLException("duplicate column"));
+
+        assertFalse(new SchemaMigrator(dataBaseConfig, migrations).migrate());
+
+        verify(saveVersion, times(1)).setInt(1, 1);
+        verify(saveVersion, never()).setInt(1, 2);
+        verify(statement, never()).execute("alter table ticket add column C int");
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void columnsAddedByAFailedRunAreSkipped() throws SQLException {
+        when(versionResult.getInt(1)).thenReturn(1);
+        //the previous run added B and failed before recording version 2
+        when(ticketColumns.next()).thenReturn(true, true, false, true, true, false);
+        when(ticketColumns.getString("COLUMN_NAME")).thenReturn("ID", "B", "ID", "B");
+
+        assertTrue(new SchemaMigrator(dataBaseConfig, migrations).migrate());
+
+        verify(statement, never()).execute("alter table ticket add column B int");
+        verify(statement, times(1)).execute("alter table ticket add column C int");
+        verify(saveVersion, times(1)).setInt(1, 2);
+        verify(saveVersion, times(1)).setInt(1, 3);
+    }
+
+    @Test
+    public void latestVersionIsTheHighestMigration() {
+        assertEquals(3, new SchemaMigrator(dataBaseConfig, migrations).getLatestVersion());
+        assertTrue(new SchemaMigrator(dataBaseConfig).getLatestVersion() >= 1);
+    }
+}
@@ -0,0 +1,104 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.allocation.LeastRecentlyUsedStrategy;
+import com.parkit.parkingsystem.allocation.SpotAllocationStrategy;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpotAllocationStrategyTest {
+
+    private List<ParkingSpot> parkingSpots;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        //car spots 1 to 3 on level 0 and 4 to 6 on level 1, spot 5 next to the entrance, then a bike spot
+        int[] distances = {0, 40, 50, 60, 20, 10, 30, 5};
+        parkingSpots = new ArrayList<>();
+        for(int number = 1; number <= 7; number++){
+            ParkingSpot parkingSpot = new ParkingSpot(number, number <= 6 ? ParkingType.CAR : ParkingType.BIKE, true);
+            parkingSpot.setLevel(number <= 3 ? 0 : 1);
+            parkingSpot.setDistance(distances[number]);
+            parkingSpots.add(parkingSpot);
+        }
+    }
+
+    private SpotAllocationStrategy load(String name) {
+        SpotAllocationStrategy strategy = SpotAllocationStrategy.forName(name);
+        strategy.load(parkingSpots);
+        return strategy;
+    }
+
+    @Test
+    public void testLowestNumber() {
+        SpotAllocationStrategy strategy = load("lowest-number");
+
+        assertEquals(1, strategy.take(ParkingType.CAR, null));
+        assertEquals(2, strategy.take(ParkingType.CAR, null));
+        strategy.release(1);
+        assertEquals(1, strategy.peek(ParkingType.CAR));
+        assertEquals(1, strategy.take(ParkingType.CAR, null));
+        assertEquals(7, strategy.take(ParkingType.BIKE, null));
+        assertEquals(0, strategy.take(ParkingType.BIKE, null));
+    }
+
+    @Test
+    public void testNearestToEntrance() {
+        SpotAllocationStrategy strategy = load("nearest");
+
+        assertEquals(5, strategy.take(ParkingType.CAR, null));
+        assertEquals(4, strategy.take(ParkingType.CAR, null));
+        //skipped spots stay free
+        assertEquals(1, strategy.take(ParkingType.CAR, number -> number != 6));
+        assertEquals(6, strategy.take(ParkingType.CAR, null));
+    }
+
+    @Test
+    public void testLevelBalancing() {
+        SpotAllocationStrategy strategy = load("level-balancing");
+
+        assertEquals(1, strategy.take(ParkingType.CAR, null));
+        assertEquals(4, strategy.take(ParkingType.CAR, null));
+        assertEquals(2, strategy.take(ParkingType.CAR, null));
+        assertEquals(5, strategy.take(ParkingType.CAR, null));
+        strategy.release(4);
+        strategy.release(5);
+        assertEquals(4, strategy.take(ParkingType.CAR, null));
+        strategy.taken(5);
+        assertEquals(3, strategy.take(ParkingType.CAR, null));
+    }
+
+    @Test
+    public void testLeastRecentlyUsed() {
+        SpotAllocationStrategy strategy = new LeastRecentlyUsedStrategy();
+        strategy.load(parkingSpots.subList(0, 3));
+
+        assertEquals(1, strategy.take(ParkingType.CAR, null));
+        assertEquals(2, strategy.take(ParkingType.CAR, null));
+        strategy.release(2);
+        strategy.release(1);
+        assertEquals(3, strategy.take(ParkingType.CAR, null));
+        assertEquals(2, strategy.take(ParkingType.CAR, null));
+        assertEquals(1, strategy.take(ParkingType.CAR, null));
+    }
+
+    @Test
+    public void testEntryUsesTheStrategyAndExitGivesTheSpotBack() {
+        ParkingService parkingService = new ParkingService(new InMemoryParkingSpotRepository(parkingSpots), new InMemoryTicketRepository());
+        parkingService.setAllocationStrategy(load("nearest"));
+
+        assertEquals(5, parkingService.enter("ABCDEF", ParkingType.CAR).getParkingNumber());
+        assertEquals(4, parkingService.enter("GHIJKL", ParkingType.CAR).getParkingNumber());
+        assertNotNull(parkingService.exit("ABCDEF"));
+        assertEquals(5, parkingService.enter("MNOPQR", ParkingType.CAR).getParkingNumber());
+    }
+}
@@ -0,0 +1,89 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.StartupWarmUp;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class StartupWarmUpTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+    private List<Connection> connections;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        parkingSpotDAO = mock(ParkingSpotDAO.class);
+        ticketDAO = mock(TicketDAO.class);
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        connections = new CopyOnWriteArrayList<>();
+        when(dataBaseConfig.getConnection()).thenAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+            when(connection.prepareStatement(anyString(), anyInt())).thenReturn(mock(PreparedStatement.class));
+            connections.add(connection);
+            return connection;
+        });
+        when(parkingSpotDAO.loadFreeSpotIndex()).thenReturn(true);
+        when(ticketDAO.loadOpenTickets()).thenReturn(true);
+    }
+
+    @Test
+    public void testWarmUpPrimesDistinctConnectionsAndLoadsCaches() throws Exception {
+        StartupWarmUp.Summary summary = new StartupWarmUp(parkingSpotDAO, ticketDAO, 3).run();
+
+        assertTrue(summary.isComplete());
+        assertEquals(3, summary.getConnectionsPrimed());
+        assertEquals(27, summary.getStatementsPrepared());
+        assertEquals(3, connections.size());
+        for(Connection connection : connections){
+            verify(connection, times(8)).prepareStatement(anyString());
+            verify(connection).prepareStatement(anyString(), anyInt());
+            verify(dataBaseConfig).closeConnection(connection);
+        }
+        verify(parkingSpotDAO).loadFreeSpotIndex();
+        verify(ticketDAO).loadOpenTickets();
+    }
+
+    @Test
+    public void testWarmUpLeavesPoolConnectionsToTheLoads() throws Exception {
+        ConnectionPool pool = mock(ConnectionPool.class);
+        when(pool.getMaxSize()).thenReturn(4);
+        when(dataBaseConfig.getConnectionPool()).thenReturn(pool);
+
+        StartupWarmUp.Summary summary = new StartupWarmUp(parkingSpotDAO, ticketDAO, 10).run();
+
+        assertTrue(summary.isComplete());
+        assertEquals(2, summary.getConnectionsPrimed());
+        assertEquals(2, connections.size());
+    }
+
+    @Test
+    public void testWarmUpReportsFailedSteps() throws Exception {
+        when(dataBaseConfig.getConnection()).thenThrow(new SQLException("Connection refused"));
+        when(ticketDAO.loadOpenTickets()).thenReturn(false);
+
+        StartupWarmUp.Summary summary = new StartupWarmUp(parkingSpotDAO, ticketDAO, 2).run();
+
+        assertFalse(summary.isComplete());
+        assertEquals(0, summary.getConnectionsPrimed());
+        assertTrue(summary.isParkingSpotsLoaded());
+        assertFalse(summary.isOpenTicketsLoaded());
+    }
+}
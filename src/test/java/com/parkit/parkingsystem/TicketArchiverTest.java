@@ -0,0 +1,78 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.service.TicketArchiver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TicketArchiverTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement archiveTicket;
+    private PreparedStatement addPlateVisits;
+    private PreparedStatement deleteTicket;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        PreparedStatement readTickets = mock(PreparedStatement.class);
+        ResultSet tickets = mock(ResultSet.class);
+        archiveTicket = mock(PreparedStatement.class);
+        addPlateVisits = mock(PreparedStatement.class);
+        deleteTicket = mock(PreparedStatement.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.GET_TICKETS_TO_ARCHIVE)).thenReturn(readTickets);
+        when(connection.prepareStatement(DBConstants.ARCHIVE_TICKET)).thenReturn(archiveTicket);
+        when(connection.prepareStatement(DBConstants.ADD_PLATE_VISITS)).thenReturn(addPlateVisits);
+        when(connection.prepareStatement(DBConstants.DELETE_TICKET)).thenReturn(deleteTicket);
+        when(readTickets.executeQuery()).thenReturn(tickets);
+
+        //three old tickets, two of them for the same plate
+        when(tickets.next()).thenReturn(true, true, true, false);
+        when(tickets.getInt(1)).thenReturn(1, 2, 3);
+        when(tickets.getInt(2)).thenReturn(1, 2, 1);
+        when(tickets.getString(3)).thenReturn("ABCDEF", "GHIJKL", "ABCDEF");
+        when(tickets.getDouble(4)).thenReturn(1.5, 0.0, 3.0);
+        when(tickets.getTimestamp(5)).thenReturn(new Timestamp(1000), new Timestamp(2000), new Timestamp(5000));
+        when(tickets.getTimestamp(6)).thenReturn(new Timestamp(3000), new Timestamp(4000), new Timestamp(6000));
+    }
+
+    @Test
+    public void testArchiveChunkMovesTicketsAndRollsUpPlates() throws Exception {
+        assertEquals(3, new TicketArchiver(dataBaseConfig, 0, 10, 0).archiveChunk(new Date()));
+
+        verify(archiveTicket, times(3)).addBatch();
+        verify(addPlateVisits, times(2)).addBatch();
+        verify(addPlateVisits).setInt(2, 2);
+        verify(addPlateVisits).setTimestamp(3, new Timestamp(1000));
+        verify(addPlateVisits).setTimestamp(4, new Timestamp(6000));
+        verify(deleteTicket, times(3)).addBatch();
+        verify(connection).commit();
+        verify(connection, never()).rollback();
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    public void testArchiveChunkRollsBackOnError() throws Exception {
+        when(deleteTicket.executeBatch()).thenThrow(new SQLException("Lock wait timeout exceeded"));
+
+        assertEquals(-1, new TicketArchiver(dataBaseConfig, 0, 10, 0).archiveChunk(new Date()));
+
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+}
@@ -0,0 +1,93 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TicketDAOPlateStripeTest {
+
+    private PreparedStatement insertStatement;
+    private PreparedStatement countStatement;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        insertStatement = mock(PreparedStatement.class);
+        countStatement = mock(PreparedStatement.class);
+        ResultSet generatedKeys = mock(ResultSet.class);
+        ResultSet count = mock(ResultSet.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.SAVE_OPEN_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(insertStatement);
+        when(connection.prepareStatement(DBConstants.COUNT_TICKET)).thenReturn(countStatement);
+        when(insertStatement.getGeneratedKeys()).thenReturn(generatedKeys);
+        when(generatedKeys.next()).thenReturn(true);
+        when(generatedKeys.getInt(1)).thenReturn(7);
+        when(countStatement.executeQuery()).thenReturn(count);
+        when(count.next()).thenReturn(true);
+        when(count.getInt(1)).thenReturn(3);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    private static Ticket newTicket() {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date());
+        return ticket;
+    }
+
+    @Test
+    public void countIsNotHeldUpNorSeededByAnInsertInProgress() throws Exception {
+        CountDownLatch insertStarted = new CountDownLatch(1);
+        CountDownLatch insertMayFinish = new CountDownLatch(1);
+        when(insertStatement.executeUpdate()).thenAnswer(invocation -> {
+            insertStarted.countDown();
+            insertMayFinish.await();
+            return 1;
+        });
+        Thread gate = new Thread(() -> ticketDAO.saveTicket(newTicket()));
+        gate.start();
+        assertTrue(insertStarted.await(5, TimeUnit.SECONDS));
+
+        //the insert is still waiting on the database
+        assertEquals(3, (int) assertTimeoutPreemptively(Duration.ofSeconds(5), () -> ticketDAO.getNbTicket("ABCDEF")));
+
+        insertMayFinish.countDown();
+        gate.join(5000);
+        //the count may or may not have included the insert, so it was not kept
+        assertEquals(3, ticketDAO.getNbTicket("ABCDEF"));
+        verify(countStatement, times(2)).executeQuery();
+    }
+
+    @Test
+    public void countReadWithoutInsertsIsSeededAndIncremented() throws SQLException {
+        when(insertStatement.executeUpdate()).thenReturn(1);
+
+        assertEquals(3, ticketDAO.getNbTicket("ABCDEF"));
+        assertTrue(ticketDAO.saveTicket(newTicket()));
+
+        assertEquals(4, ticketDAO.getNbTicket("ABCDEF"));
+        verify(countStatement, times(1)).executeQuery();
+    }
+}
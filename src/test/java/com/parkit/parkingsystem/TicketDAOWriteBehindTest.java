@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TicketDAOWriteBehindTest {
+
+    private PreparedStatement insertStatement;
+    private PreparedStatement openTicketStatement;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        insertStatement = mock(PreparedStatement.class);
+        openTicketStatement = mock(PreparedStatement.class);
+        ResultSet generatedKeys = mock(ResultSet.class);
+        ResultSet noOpenTicket = mock(ResultSet.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(insertStatement);
+        when(connection.prepareStatement(DBConstants.GET_OPEN_TICKET_FOR_UPDATE)).thenReturn(openTicketStatement);
+        when(insertStatement.getGeneratedKeys()).thenReturn(generatedKeys);
+        when(generatedKeys.next()).thenReturn(true, false);
+        when(generatedKeys.getInt(1)).thenReturn(7);
+        when(openTicketStatement.executeQuery()).thenReturn(noOpenTicket);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.enableWriteBehind(100, 60000, null);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ticketDAO.disableWriteBehind();
+    }
+
+    private static Ticket newTicket() {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        return ticket;
+    }
+
+    @Test
+    public void committedTicketGetsItsIdInTheCache() throws SQLException {
+        Ticket ticket = newTicket();
+
+        assertTrue(ticketDAO.saveTicket(ticket));
+        assertEquals(0, ticketDAO.getTicket("ABCDEF").getId());
+        assertTrue(ticketDAO.flushWrites());
+
+        assertEquals(7, ticket.getId());
+        assertEquals(7, ticketDAO.getTicket("ABCDEF").getId());
+        verify(insertStatement, times(1)).executeBatch();
+    }
+
+    @Test
+    public void ticketGivenUpIsNoLongerOpen() throws SQLException {
+        when(insertStatement.executeBatch()).thenThrow(new SQLException("Database is down"));
+
+        assertTrue(ticketDAO.saveTicket(newTicket()));
+        assertFalse(ticketDAO.flushWrites());
+
+        assertNull(ticketDAO.getTicket("ABCDEF"));
+        //a new entry of the vehicle is not refused because of the ticket that was never written
+        assertTrue(ticketDAO.saveTicket(newTicket()));
+    }
+
+    @Test
+    public void exitWaitsForTheQueuedInsertOfItsPlate() throws SQLException {
+        when(insertStatement.executeBatch()).thenThrow(new SQLException("Database is down"));
+        assertTrue(ticketDAO.saveTicket(newTicket()));
+
+        assertNull(ticketDAO.exitVehicle("ABCDEF", new Date(), (ticket, ticketsCount) -> ticket.setPrice(1.5)));
+
+        verify(insertStatement, times(3)).executeBatch();
+        //the failed insert left nothing cached, so the exit looked for the ticket in the database
+        verify(openTicketStatement, times(1)).executeQuery();
+    }
+}
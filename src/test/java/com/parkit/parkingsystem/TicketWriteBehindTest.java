@@ -0,0 +1,263 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketWriteBehind;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class TicketWriteBehindTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement insertStatement;
+    private PreparedStatement updateStatement;
+    private List<Ticket> flushedTickets;
+    private TicketWriteBehind writeBehind;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        insertStatement = mock(PreparedStatement.class);
+        updateStatement = mock(PreparedStatement.class);
+        ResultSet generatedKeys = mock(ResultSet.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(insertStatement);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(updateStatement);
+        when(insertStatement.getGeneratedKeys()).thenReturn(generatedKeys);
+        when(generatedKeys.next()).thenReturn(true, true, true, false);
+        when(generatedKeys.getInt(1)).thenReturn(10, 11, 12);
+        flushedTickets = new ArrayList<>();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if(writeBehind != null){
+            writeBehind.close();
+        }
+    }
+
+    private TicketWriteBehind newWriteBehind(int batchSize, long maxDelayMillis) {
+        return new TicketWriteBehind(dataBaseConfig, batchSize, maxDelayMillis, new TicketWriteBehind.FlushListener() {
+            @Override
+            public void onFlushed(List<Ticket> tickets) {
+                flushedTickets.addAll(tickets);
+            }
+
+            @Override
+            public void onFlushFailed(List<Ticket> tickets, Exception e) {
+                fail(e);
+            }
+        });
+    }
+
+    private Ticket newTicket(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        return ticket;
+    }
+
+    @Test
+    public void queuedInsertsAreCommittedAsOneBatch() throws SQLException {
+        writeBehind = newWriteBehind(100, 60000);
+        Ticket first = newTicket("AAA");
+        Ticket second = newTicket("BBB");
+        Ticket third = newTicket("CCC");
+
+        writeBehind.enqueueInsert(first);
+        writeBehind.enqueueInsert(second);
+        writeBehind.enqueueInsert(third);
+        writeBehind.flush();
+
+        verify(insertStatement, times(3)).addBatch();
+        verify(insertStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
+        assertEquals(3, flushedTickets.size());
+        assertEquals(10, first.getId());
+        assertEquals(12, third.getId());
+        assertFalse(writeBehind.hasPendingInsert("AAA"));
+    }
+
+    @Test
+    public void pendingInsertIsTrackedPerPlateUntilCommitted() {
+        writeBehind = newWriteBehind(100, 60000);
+        writeBehind.enqueueInsert(newTicket("AAA"));
+
+        assertTrue(writeBehind.hasPendingInsert("AAA"));
+        assertFalse(writeBehind.hasPendingInsert("BBB"));
+        writeBehind.flush();
+        assertFalse(writeBehind.hasPendingInsert("AAA"));
+    }
+
+    @Test
+    public void failedBatchIsRetried() throws SQLException {
+        writeBehind = newWriteBehind(100, 60000);
+        when(insertStatement.executeBatch()).thenThrow(new SQLException("Deadlock")).thenReturn(new int[]{1});
+        Ticket ticket = newTicket("AAA");
+        writeBehind.enqueueInsert(ticket);
+
+        assertTrue(writeBehind.flush());
+        verify(connection, times(1)).rollback();
+        verify(connection, times(1)).commit();
+        assertEquals(10, ticket.getId());
+        assertEquals(1, flushedTickets.size());
+    }
+
+    @Test
+    public void onlyTheFailingRowOfABatchIsGivenUp() throws SQLException {
+        final List<Ticket> failedTickets = new ArrayList<>();
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 60000, new TicketWriteBehind.FlushListener() {
+            @Override
+            public void onFlushed(List<Ticket> tickets) {
+                flushedTickets.addAll(tickets);
+            }
+
+            @Override
+            public void onFlushFailed(List<Ticket> tickets, Exception e) {
+                failedTickets.addAll(tickets);
+            }
+        });
+        //the batch holding plate BAD fails, every row of the others gets the next ID
+        final List<String> batchPlates = new ArrayList<>();
+        final int[] nextId = {10};
+        doAnswer(invocation -> batchPlates.add(invocation.getArgument(1))).when(insertStatement).setString(eq(2), anyString());
+        doAnswer(invocation -> {
+            if(batchPlates.contains("BAD")){
+                batchPlates.clear();
+                throw new SQLException("Data too long for column VEHICLE_REG_NUMBER");
+            }
+            return new int[batchPlates.size()];
+        }).when(insertStatement).executeBatch();
+        when(insertStatement.getGeneratedKeys()).thenAnswer(invocation -> {
+            ResultSet keys = mock(ResultSet.class);
+            final int rows = batchPlates.size();
+            final int[] row = {0};
+            when(keys.next()).thenAnswer(next -> row[0]++ < rows);
+            when(keys.getInt(1)).thenAnswer(getInt -> nextId[0]++);
+            batchPlates.clear();
+            return keys;
+        });
+        Ticket first = newTicket("AAA");
+        Ticket bad = newTicket("BAD");
+        Ticket last = newTicket("CCC");
+
+        writeBehind.enqueueInsert(first);
+        writeBehind.enqueueInsert(bad);
+        writeBehind.enqueueInsert(last);
+
+        assertFalse(writeBehind.flush());
+        assertEquals(1, failedTickets.size());
+        assertEquals("BAD", failedTickets.get(0).getVehicleRegNumber());
+        assertEquals(2, flushedTickets.size());
+        assertTrue(first.getId() > 0);
+        assertTrue(last.getId() > 0);
+        assertEquals(0, bad.getId());
+    }
+
+    @Test
+    public void batchIsGivenUpAfterMaxAttempts() throws SQLException {
+        final List<Ticket> failedTickets = new ArrayList<>();
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 60000, new TicketWriteBehind.FlushListener() {
+            @Override
+            public void onFlushed(List<Ticket> tickets) {
+                flushedTickets.addAll(tickets);
+            }
+
+            @Override
+            public void onFlushFailed(List<Ticket> tickets, Exception e) {
+                failedTickets.addAll(tickets);
+            }
+        });
+        when(insertStatement.executeBatch()).thenThrow(new SQLException("Database is down"));
+        Ticket ticket = newTicket("AAA");
+        writeBehind.enqueueInsert(ticket);
+
+        assertFalse(writeBehind.flush());
+        verify(insertStatement, times(TicketWriteBehind.MAX_ATTEMPTS)).executeBatch();
+        assertEquals(1, failedTickets.size());
+        assertEquals(0, failedTickets.get(0).getId());
+        assertEquals(0, ticket.getId());
+        assertFalse(writeBehind.hasPendingInsert("AAA"));
+        //later writes are not reported as failed
+        doReturn(new int[]{1}).when(insertStatement).executeBatch();
+        writeBehind.enqueueInsert(newTicket("BBB"));
+        assertTrue(writeBehind.flush());
+    }
+
+    @Test
+    public void updateOfUnwrittenInsertIsMergedIntoIt() throws SQLException {
+        writeBehind = newWriteBehind(100, 60000);
+        Ticket ticket = newTicket("AAA");
+        writeBehind.enqueueInsert(ticket);
+
+        Ticket exit = newTicket("AAA");
+        exit.setOutTime(new Date());
+        exit.setPrice(1.5);
+        writeBehind.enqueueUpdate(exit);
+        writeBehind.flush();
+
+        verify(insertStatement, times(1)).addBatch();
+        verify(insertStatement, times(1)).setDouble(3, 1.5);
+        verify(connection, never()).prepareStatement(DBConstants.UPDATE_TICKET);
+    }
+
+    @Test
+    public void updateOfWrittenInsertUsesItsGeneratedId() throws SQLException {
+        writeBehind = newWriteBehind(100, 60000);
+        Ticket ticket = newTicket("AAA");
+        writeBehind.enqueueInsert(ticket);
+        writeBehind.flush();
+
+        //a copy read before the commit cannot be resolved by the queue any more
+        Ticket staleCopy = newTicket("AAA");
+        staleCopy.setOutTime(new Date());
+        assertFalse(writeBehind.enqueueUpdate(staleCopy));
+        ticket.setOutTime(new Date());
+        assertTrue(writeBehind.enqueueUpdate(ticket));
+        writeBehind.flush();
+
+        verify(updateStatement, times(1)).setInt(3, 10);
+        verify(updateStatement, times(1)).executeBatch();
+        verify(connection, times(2)).commit();
+    }
+
+    @Test
+    public void batchIsWrittenOnceSizeThresholdIsReached() throws Exception {
+        writeBehind = newWriteBehind(2, 60000);
+
+        writeBehind.enqueueInsert(newTicket("AAA"));
+        writeBehind.enqueueInsert(newTicket("BBB"));
+
+        verify(connection, timeout(5000).times(1)).commit();
+    }
+
+    @Test
+    public void batchIsWrittenOnceDelayHasElapsed() throws Exception {
+        writeBehind = newWriteBehind(100, 50);
+
+        writeBehind.enqueueInsert(newTicket("AAA"));
+
+        verify(connection, timeout(5000).times(1)).commit();
+        assertEquals(0, writeBehind.getPendingCount());
+    }
+}
@@ -0,0 +1,56 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.VisitCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VisitCounterTest {
+
+    private VisitCounter visitCounter;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        visitCounter = new VisitCounter();
+    }
+
+    @Test
+    public void unknownPlateIsNotCounted() {
+        visitCounter.incrementIfPresent("ABCDEF");
+
+        assertEquals(VisitCounter.UNKNOWN, visitCounter.get("ABCDEF"));
+    }
+
+    @Test
+    public void seededPlateIsIncremented() {
+        visitCounter.seed("ABCDEF", 2);
+        visitCounter.incrementIfPresent("ABCDEF");
+
+        assertEquals(3, visitCounter.get("ABCDEF"));
+        assertEquals(VisitCounter.UNKNOWN, visitCounter.get("GHIJKL"));
+    }
+
+    @Test
+    public void forgottenPlateIsUnknownUntilSeededAgain() {
+        visitCounter.seed("ABCDEF", 2);
+        visitCounter.forget("ABCDEF");
+        visitCounter.incrementIfPresent("ABCDEF");
+
+        assertEquals(VisitCounter.UNKNOWN, visitCounter.get("ABCDEF"));
+        visitCounter.seed("ABCDEF", 1);
+        assertEquals(1, visitCounter.get("ABCDEF"));
+    }
+
+    @Test
+    public void countsSurviveResize() {
+        for(int i = 0; i < 5000; i++){
+            visitCounter.seed("PLATE" + i, i);
+        }
+
+        assertEquals(5000, visitCounter.size());
+        for(int i = 0; i < 5000; i++){
+            assertEquals(i, visitCounter.get("PLATE" + i));
+        }
+    }
+}
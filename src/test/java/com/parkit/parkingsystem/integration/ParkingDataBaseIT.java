@@ -10,6 +10,7 @@ import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.InteractiveShell;
 import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.*;
@@ -47,6 +48,7 @@ public class ParkingDataBaseIT {
         ticketDAO = new TicketDAO();
         ticketDAO.dataBaseConfig = dataBaseTestConfig;
         dataBasePrepareService = new DataBasePrepareService();
+        dataBasePrepareService.migrateSchema();
     }
 
     @BeforeEach
@@ -54,6 +56,9 @@ public class ParkingDataBaseIT {
         lenient().when(inputReaderUtil.readSelection()).thenReturn(1);
         lenient().when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         dataBasePrepareService.clearDataBaseEntries();
+        parkingSpotDAO.loadFreeSpotIndex();
+        ticketDAO.loadOpenTickets();
+        ticketDAO.clearVisitCounts();
     }
 
     @AfterAll
@@ -63,9 +68,9 @@ public class ParkingDataBaseIT {
 
     @Test
     public void testParkingACar(){
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
 
-        parkingService.processIncomingVehicle();
+        InteractiveShell.processIncomingVehicle(parkingService, inputReaderUtil);
 
         Ticket ticket = ticketDAO.getTicket("ABCDEF");
 
@@ -80,7 +85,7 @@ public class ParkingDataBaseIT {
     public void testParkingLotExit(){
         //testParkingACar();
 
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
 
         Date currentTime = new Date();
         Ticket ticket = new Ticket();
@@ -89,7 +94,7 @@ public class ParkingDataBaseIT {
         ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR,false));
         ticketDAO.saveTicket(ticket);
 
-        parkingService.processExitingVehicle();
+        InteractiveShell.processExitingVehicle(parkingService, inputReaderUtil);
 
         ticket = ticketDAO.getTicket(vehicleRegNumber);
 
@@ -101,7 +106,7 @@ public class ParkingDataBaseIT {
     @Test
     public void testParkingLotExitRecurringUser(){
 
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
 
         Date currentTime = new Date();
         Ticket firstTicket = new Ticket();
@@ -111,7 +116,7 @@ public class ParkingDataBaseIT {
         firstTicket.setOutTime(new Date(currentTime.getTime() - hourInMillis));
         ticketDAO.saveTicket(firstTicket);
 
-        parkingService.processIncomingVehicle();
+        InteractiveShell.processIncomingVehicle(parkingService, inputReaderUtil);
 
         Ticket secondTicket = ticketDAO.getTicket(vehicleRegNumber);
         currentTime.setTime(System.currentTimeMillis());
@@ -119,7 +124,7 @@ public class ParkingDataBaseIT {
         secondTicket.setOutTime(new Date(currentTime.getTime() - hourInMillis));
         ticketDAO.updateTicket(secondTicket);
 
-        parkingService.processExitingVehicle();
+        InteractiveShell.processExitingVehicle(parkingService, inputReaderUtil);
 
         secondTicket = ticketDAO.getTicket(vehicleRegNumber);
         long duration = (secondTicket.getOutTime().getTime() - secondTicket.getInTime().getTime())/hourInMillis;
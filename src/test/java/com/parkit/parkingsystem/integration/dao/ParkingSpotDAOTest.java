@@ -3,7 +3,9 @@ package com.parkit.parkingsystem.integration.dao;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -16,6 +18,12 @@ public class ParkingSpotDAOTest {
 
     private ParkingSpotDAO parkingSpotDAO;
 
+    @BeforeAll
+    public static void setUpSchema(){
+        //run against the migrated schema, as the app does
+        new DataBasePrepareService().migrateSchema();
+    }
+
     @BeforeEach
     public void setUp(){
         DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
@@ -48,4 +56,10 @@ public class ParkingSpotDAOTest {
         ParkingSpot parkingSpot = new ParkingSpot(6, ParkingType.CAR,true);
         assertFalse(parkingSpotDAO.updateParking(parkingSpot));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testClaimNextAvailableSlotForCar(){
+        assertEquals(1, parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+}
@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.integration.service;
 
+import com.parkit.parkingsystem.config.SchemaMigrator;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 
 import java.sql.Connection;
@@ -8,6 +9,10 @@ public class DataBasePrepareService {
 
     DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
 
+    public boolean migrateSchema(){
+        return new SchemaMigrator(dataBaseTestConfig).migrate();
+    }
+
     public void clearDataBaseEntries(){
         Connection connection = null;
         try{
@@ -19,6 +24,11 @@ public class DataBasePrepareService {
             //clear ticket entries;
             connection.prepareStatement("truncate table ticket").execute();
 
+            //clear the archived tickets, the visit counts kept for them and the reservations
+            connection.prepareStatement("truncate table ticket_archive").execute();
+            connection.prepareStatement("truncate table plate_visits").execute();
+            connection.prepareStatement("truncate table reservation").execute();
+
         }catch(Exception e){
             e.printStackTrace();
         }finally {